@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.core;
+
+import java.util.Random;
+
+/**
+ * Fixed set of positions used by the benchmarks.
+ * <p/>
+ * The positions come from random games played with a fixed seed, so every run and every benchmark sees the
+ * same positions, spread over all stages of the game. Every position has a legal move for the mover.
+ */
+final class Corpus {
+    /**
+     * Number of positions in the corpus. Benchmarks process every position in each invocation.
+     */
+    static final int SIZE = 4096;
+
+    private static final long SEED = 20140301;
+
+    final long[] movers = new long[SIZE];
+    final long[] empties = new long[SIZE];
+    final CBitBoard[] boards = new CBitBoard[SIZE];
+    final CQPosition[] positions = new CQPosition[SIZE];
+    /**
+     * A legal move in each position
+     */
+    final int[] moves = new int[SIZE];
+
+    Corpus() {
+        final Random random = new Random(SEED);
+        final CQPosition pos = new CQPosition();
+        for (int i = 0; i < SIZE; ) {
+            long legal = pos.CalcMovesAndPass();
+            if (legal == 0) {
+                pos.Initialize();
+                continue;
+            }
+            for (int n = random.nextInt(Long.bitCount(legal)); n > 0; n--) {
+                legal &= legal - 1;
+            }
+            final CBitBoard bb = pos.BitBoard();
+            movers[i] = bb.mover;
+            empties[i] = bb.empty;
+            boards[i] = new CBitBoard(bb);
+            positions[i] = new CQPosition(pos);
+            moves[i] = Long.numberOfTrailingZeros(legal);
+            pos.MakeMove(moves[i]);
+            i++;
+        }
+    }
+}
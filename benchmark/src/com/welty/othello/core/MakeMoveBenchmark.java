@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.core;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for making moves.
+ * <p/>
+ * Each move is made on a copy of a corpus position; {@link #initialize()} measures the cost of the copy alone.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MakeMoveBenchmark {
+    private Corpus corpus;
+    private final CQPosition pos = new CQPosition();
+
+    @Setup public void setUp() {
+        corpus = new Corpus();
+    }
+
+    @Benchmark @OperationsPerInvocation(Corpus.SIZE)
+    public int initialize() {
+        int result = 0;
+        for (int i = 0; i < Corpus.SIZE; i++) {
+            pos.Initialize(corpus.positions[i]);
+            result += pos.NEmpty();
+        }
+        return result;
+    }
+
+    @Benchmark @OperationsPerInvocation(Corpus.SIZE)
+    public int makeMove() {
+        int result = 0;
+        for (int i = 0; i < Corpus.SIZE; i++) {
+            pos.Initialize(corpus.positions[i]);
+            pos.MakeMove(corpus.moves[i]);
+            result ^= (int) pos.BitBoard().mover;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.core;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Perft from the start position, single-threaded and with one thread per processor.
+ * <p/>
+ * Each benchmark checks its count, so a broken move generator fails the run instead of reporting a time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PerftBenchmark {
+    private static final int DEPTH = 9;
+
+    private final Perft single = new Perft(1);
+    private final Perft multi = new Perft(Runtime.getRuntime().availableProcessors());
+
+    @Benchmark public long singleThreaded() {
+        return check(single.count(new CQPosition(), DEPTH));
+    }
+
+    @Benchmark public long multiThreaded() {
+        return check(multi.count(new CQPosition(), DEPTH));
+    }
+
+    private static long check(Perft.Result result) {
+        if (result.nLeaves != Perft.START_POSITION_COUNTS[DEPTH]) {
+            throw new IllegalStateException("perft(" + DEPTH + ") = " + result.nLeaves + ", expected "
+                    + Perft.START_POSITION_COUNTS[DEPTH]);
+        }
+        return result.nLeaves;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.core;
+
+import gnu.trove.map.hash.TObjectIntHashMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link PositionMap} with the Trove map keyed by CBitBoard that it replaced.
+ * <p/>
+ * Half the corpus is stored in each map, so lookups are a mix of hits and misses.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PositionMapBenchmark {
+    private Corpus corpus;
+    private PositionMap positionMap;
+    private TObjectIntHashMap<CBitBoard> troveMap;
+
+    @Setup public void setUp() {
+        corpus = new Corpus();
+        positionMap = new PositionMap();
+        troveMap = new TObjectIntHashMap<>();
+        for (int i = 0; i < Corpus.SIZE; i += 2) {
+            positionMap.put(corpus.movers[i], corpus.empties[i], i);
+            troveMap.put(corpus.boards[i], i);
+        }
+    }
+
+    @Benchmark @OperationsPerInvocation(Corpus.SIZE)
+    public int positionMapGet() {
+        int result = 0;
+        for (int i = 0; i < Corpus.SIZE; i++) {
+            result += positionMap.get(corpus.movers[i], corpus.empties[i], -1);
+        }
+        return result;
+    }
+
+    @Benchmark @OperationsPerInvocation(Corpus.SIZE)
+    public int troveGet() {
+        int result = 0;
+        for (int i = 0; i < Corpus.SIZE; i++) {
+            final CBitBoard bb = corpus.boards[i];
+            result += troveMap.contains(bb) ? troveMap.get(bb) : -1;
+        }
+        return result;
+    }
+
+    @Benchmark @OperationsPerInvocation(Corpus.SIZE)
+    public PositionMap positionMapBuild() {
+        final PositionMap map = new PositionMap();
+        for (int i = 0; i < Corpus.SIZE; i++) {
+            map.put(corpus.movers[i], corpus.empties[i], i);
+        }
+        return map;
+    }
+
+    @Benchmark @OperationsPerInvocation(Corpus.SIZE)
+    public TObjectIntHashMap<CBitBoard> troveBuild() {
+        final TObjectIntHashMap<CBitBoard> map = new TObjectIntHashMap<>();
+        for (int i = 0; i < Corpus.SIZE; i++) {
+            map.put(corpus.boards[i], i);
+        }
+        return map;
+    }
+}
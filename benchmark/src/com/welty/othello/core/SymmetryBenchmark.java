@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.core;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for board symmetries.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SymmetryBenchmark {
+    private Corpus corpus;
+
+    @Setup public void setUp() {
+        corpus = new Corpus();
+    }
+
+    @Benchmark @OperationsPerInvocation(Corpus.SIZE)
+    public long flipDiagonal() {
+        long result = 0;
+        for (int i = 0; i < Corpus.SIZE; i++) {
+            result ^= BitBoardBlock.flipDiagonal(corpus.movers[i]);
+        }
+        return result;
+    }
+
+    /**
+     * All 8 symmetries of each position's mover bitboard
+     */
+    @Benchmark @OperationsPerInvocation(Corpus.SIZE)
+    public long symmetry() {
+        long result = 0;
+        for (int i = 0; i < Corpus.SIZE; i++) {
+            for (int sym = 0; sym < 8; sym++) {
+                result ^= BitBoardBlock.symmetry(corpus.movers[i], sym);
+            }
+        }
+        return result;
+    }
+
+    @Benchmark @OperationsPerInvocation(Corpus.SIZE)
+    public long minimalReflection() {
+        long result = 0;
+        for (int i = 0; i < Corpus.SIZE; i++) {
+            result ^= corpus.boards[i].MinimalReflection().mover;
+        }
+        return result;
+    }
+
+    private final CanonicalForm canonical = new CanonicalForm();
+
+    @Benchmark @OperationsPerInvocation(Corpus.SIZE)
+    public long canonicalForm() {
+        long result = 0;
+        for (int i = 0; i < Corpus.SIZE; i++) {
+            result ^= canonical.set(corpus.movers[i], corpus.empties[i]).mover;
+        }
+        return result;
+    }
+}
@@ -23,63 +23,40 @@ package com.welty.othello.core;
  * To change this template use File | Settings | File Templates.
  */
 class BitBoardBlock {
-    private static final long hflipmask4 = 0x0F0F0F0F0F0F0F0FL;
-    private static final long hflipmask2 = 0x3333333333333333L;
-    private static final long hflipmask1 = 0x5555555555555555L;
+    /**
+     * Swap the bits of x selected by mask with the bits delta positions higher.
+     * <p/>
+     * mask and mask << delta must not overlap.
+     */
+    static long deltaSwap(long x, long mask, int delta) {
+        final long t = ((x >>> delta) ^ x) & mask;
+        return x ^ t ^ (t << delta);
+    }
 
+    /**
+     * Mirror the board left-to-right by reversing the bits within each row
+     */
     public static long flipHorizontal(long rows) {
-        long templ, tempr;
-
-        templ = rows & hflipmask4;
-        tempr = rows & ~hflipmask4;
-        rows = (templ << 4) | (tempr >>> 4);
-
-        templ = rows & hflipmask2;
-        tempr = rows & ~hflipmask2;
-        rows = (templ << 2) | (tempr >>> 2);
-
-        templ = rows & hflipmask1;
-        tempr = rows & ~hflipmask1;
-        rows = (templ << 1) | (tempr >>> 1);
-
+        rows = deltaSwap(rows, 0x5555555555555555L, 1);
+        rows = deltaSwap(rows, 0x3333333333333333L, 2);
+        rows = deltaSwap(rows, 0x0F0F0F0F0F0F0F0FL, 4);
         return rows;
     }
 
-    private static final long vflipmask4 = 0x00000000FFFFFFFFL;
-    private static final long vflipmask2 = 0x0000FFFF0000FFFFL;
-    private static final long vflipmask1 = 0x00FF00FF00FF00FFL;
-
+    /**
+     * Mirror the board top-to-bottom by reversing the order of the rows
+     */
     public static long flipVertical(long rows) {
-        long templ, tempr;
-
-        templ = rows & vflipmask4;
-        tempr = rows & ~vflipmask4;
-        rows = (templ << 32) | (tempr >>> 32);
-
-        templ = rows & vflipmask2;
-        tempr = rows & ~vflipmask2;
-        rows = (templ << 16) | (tempr >>> 16);
-
-        templ = rows & vflipmask1;
-        tempr = rows & ~vflipmask1;
-        rows = (templ << 8) | (tempr >>> 8);
-
-        return rows;
+        return Long.reverseBytes(rows);
     }
 
+    /**
+     * Mirror the board about the a1-h8 diagonal
+     */
     public static long flipDiagonal(long rows) {
-        rows = flipDiagonalBlock(rows, 0x5500550055005500L, 0x00AA00AA00AA00AAL, 7);         // flip 1x1 blocks within 2x2 blocks
-        rows = flipDiagonalBlock(rows, 0x3333000033330000L, 0x0000CCCC0000CCCCL, 14);         // flip 2x2 blocks within 4x4 blocks
-        rows = flipDiagonalBlock(rows, 0x0F0F0F0F00000000L, 0x00000000F0F0F0F0L, 28);         // flip 4x4 blocks within 8x8 blocks
-        return rows;
-    }
-
-    private static long flipDiagonalBlock(long rows, long maskR, long maskL, int move) {
-        final long templ = maskL & rows;
-        final long tempr = maskR & rows;
-        rows ^= (templ | tempr);
-        rows |= (templ << move) | (tempr >>> move);
-
+        rows = deltaSwap(rows, 0x00AA00AA00AA00AAL, 7);         // flip 1x1 blocks within 2x2 blocks
+        rows = deltaSwap(rows, 0x0000CCCC0000CCCCL, 14);        // flip 2x2 blocks within 4x4 blocks
+        rows = deltaSwap(rows, 0x00000000F0F0F0F0L, 28);        // flip 4x4 blocks within 8x8 blocks
         return rows;
     }
 
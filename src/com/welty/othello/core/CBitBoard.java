@@ -193,24 +193,11 @@ public class CBitBoard implements Comparable<CBitBoard>, ReadWrite {
     }
 
 
+    /**
+     * @return the minimal reflection of this bitboard. To avoid allocation, see {@link CanonicalForm}.
+     */
     public CBitBoard MinimalReflection() {
-        CBitBoard result, temp;
-        int i, j, k;
-
-        temp = new CBitBoard(this);
-        result = new CBitBoard(this);
-        for (i = 0; i < 2; i++) {
-            for (j = 0; j < 2; j++) {
-                for (k = 0; k < 2; k++) {
-                    if (temp.compareTo(result) < 0)
-                        result.Initialize(temp);
-                    temp.FlipVertical();
-                }
-                temp.FlipHorizontal();
-            }
-            temp.FlipDiagonal();
-        }
-        return result;
+        return new CanonicalForm().set(mover, empty).toBitBoard();
     }
 
     public void Print(boolean fBlackMove) {
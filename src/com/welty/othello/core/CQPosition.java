@@ -54,11 +54,7 @@ public class CQPosition {
     }
 
     public CQPosition(final COsGame game, int iMove) {
-        this(game.getStartPosition());
-        for (int i = 0; i < iMove && i < game.nMoves(); i++) {
-            CMove mv = new CMove(game.getMli(i).move);
-            MakeMove(mv);
-        }
+        this(game.PosAtMove(iMove));
     }
 
     private CQPosition(final COsPosition position) {
@@ -146,52 +142,32 @@ public class CQPosition {
 // Moving routines
 /////////////////////////////////////////
 
-    private static boolean ValidSquare(int col, int row) {
-        return (col & 7) == col && (row & 7) == row;
-    }
-
-    boolean NonmoverSquare(int col, int row) {
-        return ValidSquare(col, row) && m_bb.isEnemySquare(Utils.Square(row, col));
-    }
-
-    void FlipInDirection(int square, int dCol, int dRow) {
-        int col = Utils.Col(square);
-        int row = Utils.Row(square);
-
-        for (col += dCol, row += dRow; NonmoverSquare(col, row); col += dCol, row += dRow) {
-        }
-        if (ValidSquare(col, row) && m_bb.isMoverSquare(Utils.Square(row, col))) {
-            for (col -= dCol, row -= dRow; !m_bb.isEmptySquare(Utils.Square(row, col)); col -= dCol, row -= dRow) {
-                m_bb.flipMoverBit(Utils.Square(row, col));
-                nMover++;
-            }
-        }
-    }
-
     // Set down a piece and flip opposing pieces. Change m_bb.blacks.
     public void MakeMove(CMove move) {
-        if (!move.IsPass()) {
-            Require.eq(~m_bb.getEmpty() & move.mask(), "move location is empty", 0);
-            final int sq = move.Square();
-
-            FlipInDirection(sq, 0, 1);
-            FlipInDirection(sq, 1, 1);
-            FlipInDirection(sq, 1, 0);
-            FlipInDirection(sq, 1, -1);
-            FlipInDirection(sq, 0, -1);
-            FlipInDirection(sq, -1, -1);
-            FlipInDirection(sq, -1, 0);
-            FlipInDirection(sq, -1, 1);
-
-            // set down the piece
-            m_bb.flipMoverBit(sq);
-            nMover++;
-            m_bb.flipEmptyBit(sq);
-            nEmpty--;
+        if (move.IsPass()) {
+            Pass();
+        } else {
+            MakeMove(move.Square());
         }
+    }
 
-        // switch player to move
-        Pass();
+    /**
+     * Set down a piece, flip opposing pieces, and switch the player to move.
+     * <p/>
+     * Unlike {@link #MakeMove(CMove)} this does no allocation, so it is suitable for replaying large numbers of games.
+     *
+     * @param sq square of the new piece, 0..63. To pass, call {@link #Pass()}.
+     */
+    public void MakeMove(int sq) {
+        final long mask = 1L << sq;
+        Require.eq(~m_bb.getEmpty() & mask, "move location is empty", 0);
+        final long flips = Mobility.calcFlips(m_bb.getMover(), m_bb.getEmpty(), sq);
+
+        // CBitBoard.MakeMove also switches the player to move
+        m_bb.MakeMove(mask, flips);
+        nEmpty--;
+        nMover = 64 - nEmpty - (nMover + Long.bitCount(flips) + 1);
+        fBlackMove = !fBlackMove;
     }
 
 // Values of interest
@@ -214,16 +190,8 @@ public class CQPosition {
      * @return number of available moves
      */
     public int Mobility(boolean playerToMove) {
-        CMoves moves = new CMoves();
-
-        if (playerToMove) {
-            CalcMoves(moves);
-        } else {
-            CQPosition next = new CQPosition(this);
-            next.Pass();
-            next.CalcMoves(moves);
-        }
-        return moves.NMoves();
+        final long player = playerToMove ? m_bb.getMover() : m_bb.getEnemy();
+        return Long.bitCount(Mobility.calcMoves(player, m_bb.getEmpty()));
     }
 
     /**
@@ -258,6 +226,22 @@ public class CQPosition {
         }
     }
 
+    /**
+     * Calc moves, and pass if the mover has no legal move.
+     * <p/>
+     * This is the same as {@link #CalcMovesAndPass(CMoves)} except that it does not allocate.
+     *
+     * @return bitboard of legal moves for the player to move after any pass. 0 if the game is over.
+     */
+    public long CalcMovesAndPass() {
+        final long moves = Mobility.calcMoves(m_bb.getMover(), m_bb.getEmpty());
+        if (moves != 0) {
+            return moves;
+        }
+        Pass();
+        return Mobility.calcMoves(m_bb.getMover(), m_bb.getEmpty());
+    }
+
     /**
      * Make a move, then pass if the opponent must pass. Return pass code.
      *
@@ -266,8 +250,11 @@ public class CQPosition {
      */
     public int MakeMoveAndPass(CMove move) {
         MakeMove(move);
-        CMoves moves = new CMoves();
-        return CalcMovesAndPass(moves);
+        if (Mobility(true) != 0) {
+            return 0;
+        }
+        Pass();
+        return Mobility(true) != 0 ? 1 : 2;
     }
 
     public void Print() {
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.core;
+
+/**
+ * Minimal reflection of a position, calculated without allocating.
+ * <p/>
+ * The minimal reflection is the same as {@link CBitBoard#MinimalReflection()}. In addition this records
+ * the symmetry that takes the position to its minimal reflection, as used by {@link CBitBoard#Symmetry(int)}.
+ * <p/>
+ * A CanonicalForm is meant to be reused: call {@link #set(long, long)} for each position and read the fields.
+ * It is not thread-safe.
+ */
+public final class CanonicalForm {
+    /**
+     * Mover bitboard of the minimal reflection
+     */
+    public long mover;
+    /**
+     * Empty bitboard of the minimal reflection
+     */
+    public long empty;
+    /**
+     * Symmetry that takes the position to its minimal reflection. If several symmetries do, this is the lowest.
+     */
+    public int sym;
+
+    /**
+     * Set this to the minimal reflection of the position
+     *
+     * @return this
+     */
+    public CanonicalForm set(long mover, long empty) {
+        // the eight symmetries are built from flips in the same order as BitBoardBlock.symmetry():
+        // vertical (sym & 1), then horizontal (sym & 2), then diagonal (sym & 4).
+        final long mv = BitBoardBlock.flipVertical(mover);
+        final long ev = BitBoardBlock.flipVertical(empty);
+        final long mh = BitBoardBlock.flipHorizontal(mover);
+        final long eh = BitBoardBlock.flipHorizontal(empty);
+        final long mvh = BitBoardBlock.flipHorizontal(mv);
+        final long evh = BitBoardBlock.flipHorizontal(ev);
+
+        this.mover = mover;
+        this.empty = empty;
+        sym = 0;
+        consider(mv, ev, 1);
+        consider(mh, eh, 2);
+        consider(mvh, evh, 3);
+        consider(BitBoardBlock.flipDiagonal(mover), BitBoardBlock.flipDiagonal(empty), 4);
+        consider(BitBoardBlock.flipDiagonal(mv), BitBoardBlock.flipDiagonal(ev), 5);
+        consider(BitBoardBlock.flipDiagonal(mh), BitBoardBlock.flipDiagonal(eh), 6);
+        consider(BitBoardBlock.flipDiagonal(mvh), BitBoardBlock.flipDiagonal(evh), 7);
+        return this;
+    }
+
+    /**
+     * Set this to the minimal reflection of the position
+     *
+     * @return this
+     */
+    public CanonicalForm set(CBitBoard bb) {
+        return set(bb.mover, bb.empty);
+    }
+
+    private void consider(long candidateMover, long candidateEmpty, int candidateSym) {
+        if (isLess(candidateMover, candidateEmpty, mover, empty)) {
+            mover = candidateMover;
+            empty = candidateEmpty;
+            sym = candidateSym;
+        }
+    }
+
+    /**
+     * @return true if (mover1, empty1) is less than (mover2, empty2) in the order used by {@link CBitBoard#compareTo(CBitBoard)}
+     */
+    static boolean isLess(long mover1, long empty1, long mover2, long empty2) {
+        if (mover1 != mover2) {
+            return (mover1 ^ Long.MIN_VALUE) < (mover2 ^ Long.MIN_VALUE);
+        }
+        return (empty1 ^ Long.MIN_VALUE) < (empty2 ^ Long.MIN_VALUE);
+    }
+
+    /**
+     * @return the minimal reflection as a new CBitBoard
+     */
+    public CBitBoard toBitBoard() {
+        return new CBitBoard(mover, empty);
+    }
+}
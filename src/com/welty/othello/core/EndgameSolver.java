@@ -0,0 +1,437 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.core;
+
+import com.welty.othello.protocol.NodeStatsResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Exact endgame solver.
+ * <p/>
+ * The solver runs a negamax alpha-beta search to the end of the game. Moves are ordered by the hash table's best move,
+ * then by the opponent's resulting mobility (fastest first) with a bonus for moves into quadrants with an odd
+ * number of empty squares (parity). Near the end of the game, moves are ordered by parity alone and the hash
+ * table is not used.
+ * <p/>
+ * At the root, the first move is searched alone to establish a bound; the remaining moves are then searched in
+ * parallel with null windows and re-searched if they improve on the best score found so far. All threads share
+ * the solver's {@link TranspositionTable}.
+ * <p/>
+ * Scores are final disc differentials from the point of view of the player to move, with empty squares awarded to
+ * the winner, as in {@link CQPosition#TerminalValue()} but in discs rather than centidiscs.
+ * <p/>
+ * A solver may be used for any number of solves, but only one solve at a time.
+ */
+public class EndgameSolver {
+    /**
+     * Positions with this many empties or fewer are searched with parity ordering and without the hash table.
+     */
+    private static final int SHALLOW_EMPTIES = 6;
+
+    private static final int DEFAULT_TABLE_SIZE = 1 << 20;
+
+    /**
+     * Empty squares in each quadrant of the board
+     */
+    private static final long[] QUADRANTS = {
+            0x000000000F0F0F0FL, 0x00000000F0F0F0F0L, 0x0F0F0F0F00000000L, 0xF0F0F0F000000000L
+    };
+
+    private final int nThreads;
+    private final TranspositionTable table;
+
+    /**
+     * Create a solver with a hash table of the default size
+     *
+     * @param nThreads number of threads to use at the root
+     */
+    public EndgameSolver(int nThreads) {
+        this(nThreads, new TranspositionTable(DEFAULT_TABLE_SIZE));
+    }
+
+    /**
+     * @param nThreads number of threads to use at the root
+     * @param table    hash table. Entries must have been stored by an EndgameSolver.
+     */
+    public EndgameSolver(int nThreads, TranspositionTable table) {
+        if (nThreads < 1) {
+            throw new IllegalArgumentException("nThreads must be at least 1, was " + nThreads);
+        }
+        this.nThreads = nThreads;
+        this.table = table;
+    }
+
+    /**
+     * Solve a position.
+     *
+     * @return exact score and best move for the player to move
+     */
+    public Result solve(CQPosition pos) {
+        final CBitBoard bb = pos.BitBoard();
+        return solve(bb.mover, bb.empty);
+    }
+
+    /**
+     * Solve a position.
+     *
+     * @param mover bitboard of the discs of the player to move
+     * @param empty bitboard of the empty squares
+     * @return exact score and best move for the player to move
+     */
+    public Result solve(long mover, long empty) {
+        final long t0 = System.nanoTime();
+        final Searcher root = new Searcher();
+        final long moves = Mobility.calcMoves(mover, empty);
+        final int score;
+        final int bestMove;
+        long nNodes;
+
+        if (moves == 0) {
+            // pass or game over; there is no move to choose.
+            bestMove = -1;
+            score = root.search(mover, empty, -64, 64);
+            nNodes = root.nNodes;
+        } else {
+            root.nNodes++;
+            final int n = root.orderMoves(mover, empty, moves, -1);
+            final int[] ordered = new int[n];
+            System.arraycopy(root.moveLists[Long.bitCount(empty)], 0, ordered, 0, n);
+
+            final RootState state = new RootState();
+            state.bestMove = ordered[0];
+            state.bestScore = -root.searchMove(mover, empty, ordered[0], -64, 64);
+            if (n > 1 && state.bestScore < 64) {
+                searchInParallel(mover, empty, ordered, state);
+            }
+            bestMove = state.bestMove;
+            score = state.bestScore;
+            nNodes = root.nNodes + state.nNodes;
+        }
+        final double tElapsed = (System.nanoTime() - t0) * 1e-9;
+        return new Result(score, bestMove, nNodes, tElapsed);
+    }
+
+    /**
+     * Search all moves except the first in parallel, updating state.
+     */
+    private void searchInParallel(final long mover, final long empty, int[] ordered, final RootState state) {
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(nThreads, ordered.length - 1));
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int i = 1; i < ordered.length; i++) {
+                final int sq = ordered[i];
+                futures.add(executor.submit(new Runnable() {
+                    @Override public void run() {
+                        final Searcher searcher = new Searcher();
+                        searchRootMove(searcher, mover, empty, sq, state);
+                        state.addNodes(searcher.nNodes);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Solve interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Solve failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Search a root move with a null window around the best score so far; re-search if it improves on that score.
+     */
+    private static void searchRootMove(Searcher searcher, long mover, long empty, int sq, RootState state) {
+        final int alpha = state.bestScore();
+        if (alpha >= 64) {
+            return;
+        }
+        int score = -searcher.searchMove(mover, empty, sq, -alpha - 1, -alpha);
+        if (score > alpha) {
+            score = -searcher.searchMove(mover, empty, sq, -64, -alpha);
+            state.update(sq, score);
+        }
+    }
+
+    /**
+     * Best move and score at the root, shared by all root threads
+     */
+    private static class RootState {
+        private int bestMove;
+        private int bestScore;
+        private long nNodes;
+
+        synchronized int bestScore() {
+            return bestScore;
+        }
+
+        synchronized void update(int sq, int score) {
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = sq;
+            }
+        }
+
+        synchronized void addNodes(long n) {
+            nNodes += n;
+        }
+    }
+
+    /**
+     * Search state for one thread
+     */
+    private class Searcher {
+        long nNodes;
+
+        /**
+         * Move lists and ordering keys, indexed by the number of empty squares in the position.
+         * Each position along a search path has a different number of empties, so lists are never overwritten
+         * while in use.
+         */
+        final int[][] moveLists = new int[65][64];
+        private final int[][] moveKeys = new int[65][64];
+
+        /**
+         * Make the move sq and search the resulting position.
+         *
+         * @return value of the resulting position, from the point of view of the opponent
+         */
+        int searchMove(long mover, long empty, int sq, int alpha, int beta) {
+            final long flips = Mobility.calcFlips(mover, empty, sq);
+            final long newEmpty = empty & ~(1L << sq);
+            final long newMover = ~(mover | empty) & ~flips;
+            return search(newMover, newEmpty, alpha, beta);
+        }
+
+        /**
+         * @return exact value if alpha &lt; value &lt; beta; otherwise a bound on the value on the correct side.
+         */
+        int search(long mover, long empty, int alpha, int beta) {
+            final int nEmpty = Long.bitCount(empty);
+            if (nEmpty <= SHALLOW_EMPTIES) {
+                return searchShallow(mover, empty, alpha, beta, false);
+            }
+            nNodes++;
+
+            int hashMove = -1;
+            final long data = table.find(mover, empty);
+            if (data != TranspositionTable.MISS) {
+                final int value = TranspositionTable.value(data);
+                final int bound = TranspositionTable.bound(data);
+                if (bound == TranspositionTable.EXACT) {
+                    return value;
+                }
+                if (bound == TranspositionTable.LOWER && value >= beta) {
+                    return value;
+                }
+                if (bound == TranspositionTable.UPPER && value <= alpha) {
+                    return value;
+                }
+                hashMove = TranspositionTable.bestMove(data);
+            }
+
+            final long moves = Mobility.calcMoves(mover, empty);
+            if (moves == 0) {
+                final long enemy = ~(mover | empty);
+                if (Mobility.calcMoves(enemy, empty) == 0) {
+                    return terminalValue(mover, empty);
+                }
+                return -search(enemy, empty, -beta, -alpha);
+            }
+
+            final int n = orderMoves(mover, empty, moves, hashMove);
+            final int[] moveList = moveLists[nEmpty];
+            int best = -65;
+            int bestMove = -1;
+            int a = alpha;
+            for (int i = 0; i < n; i++) {
+                final int sq = moveList[i];
+                final int value = -searchMove(mover, empty, sq, -beta, -a);
+                if (value > best) {
+                    best = value;
+                    bestMove = sq;
+                    if (value > a) {
+                        a = value;
+                        if (a >= beta) {
+                            break;
+                        }
+                    }
+                }
+            }
+
+            final int bound = best <= alpha ? TranspositionTable.UPPER
+                    : best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+            table.store(mover, empty, best, nEmpty, bestMove, bound);
+            return best;
+        }
+
+        /**
+         * Search near the end of the game: moves in odd quadrants first, no hash table.
+         */
+        private int searchShallow(long mover, long empty, int alpha, int beta, boolean passed) {
+            nNodes++;
+            if (empty == 0) {
+                return terminalValue(mover, empty);
+            }
+            long odd = 0;
+            for (long quadrant : QUADRANTS) {
+                if ((Long.bitCount(empty & quadrant) & 1) != 0) {
+                    odd |= quadrant;
+                }
+            }
+
+            int best = -65;
+            for (int pass = 0; pass < 2; pass++) {
+                long candidates = empty & (pass == 0 ? odd : ~odd);
+                while (candidates != 0) {
+                    final int sq = Long.numberOfTrailingZeros(candidates);
+                    candidates &= candidates - 1;
+                    final long flips = Mobility.calcFlips(mover, empty, sq);
+                    if (flips == 0) {
+                        continue;
+                    }
+                    final long newEmpty = empty & ~(1L << sq);
+                    final long newMover = ~(mover | empty) & ~flips;
+                    final int value = -searchShallow(newMover, newEmpty, -beta, -Math.max(alpha, best), false);
+                    if (value > best) {
+                        best = value;
+                        if (best >= beta) {
+                            return best;
+                        }
+                    }
+                }
+            }
+            if (best == -65) {
+                // no legal move
+                if (passed) {
+                    // neither player can move
+                    return terminalValue(mover, empty);
+                }
+                return -searchShallow(~(mover | empty), empty, -beta, -alpha, true);
+            }
+            return best;
+        }
+
+        /**
+         * Fill moveLists[nEmpty] with the legal moves, best first.
+         *
+         * @return number of moves
+         */
+        int orderMoves(long mover, long empty, long moves, int hashMove) {
+            final int nEmpty = Long.bitCount(empty);
+            final int[] moveList = moveLists[nEmpty];
+            final int[] keys = moveKeys[nEmpty];
+            long odd = 0;
+            for (long quadrant : QUADRANTS) {
+                if ((Long.bitCount(empty & quadrant) & 1) != 0) {
+                    odd |= quadrant;
+                }
+            }
+
+            int n = 0;
+            while (moves != 0) {
+                final int sq = Long.numberOfTrailingZeros(moves);
+                moves &= moves - 1;
+                final long flips = Mobility.calcFlips(mover, empty, sq);
+                final long newEmpty = empty & ~(1L << sq);
+                final long newEnemy = ~(mover | empty) & ~flips;
+                int key = Long.bitCount(Mobility.calcMoves(newEnemy, newEmpty)) * 4;
+                if ((odd & (1L << sq)) == 0) {
+                    key += 2;
+                }
+                if (sq == hashMove) {
+                    key = -1;
+                }
+                // insertion sort; lists are short.
+                int i = n++;
+                for (; i > 0 && keys[i - 1] > key; i--) {
+                    keys[i] = keys[i - 1];
+                    moveList[i] = moveList[i - 1];
+                }
+                keys[i] = key;
+                moveList[i] = sq;
+            }
+            return n;
+        }
+    }
+
+    /**
+     * @return final disc differential when neither player can move, empties to the winner
+     */
+    private static int terminalValue(long mover, long empty) {
+        final int nEmpty = Long.bitCount(empty);
+        final int nMover = Long.bitCount(mover);
+        final int net = 2 * nMover + nEmpty - 64;
+        if (net < 0) {
+            return net - nEmpty;
+        } else if (net > 0) {
+            return net + nEmpty;
+        }
+        return 0;
+    }
+
+    /**
+     * Result of a solve
+     */
+    public static class Result {
+        /**
+         * Final disc differential with best play, from the point of view of the player to move
+         */
+        public final int score;
+        /**
+         * Best move square, or -1 if the player to move has no legal move
+         */
+        public final int bestMove;
+        /**
+         * Number of positions searched
+         */
+        public final long nNodes;
+        /**
+         * Time taken, in seconds
+         */
+        public final double tElapsed;
+
+        Result(int score, int bestMove, long nNodes, double tElapsed) {
+            this.score = score;
+            this.bestMove = bestMove;
+            this.nNodes = nNodes;
+            this.tElapsed = tElapsed;
+        }
+
+        public double nodesPerSecond() {
+            return tElapsed > 0 ? nNodes / tElapsed : 0;
+        }
+
+        /**
+         * @param pong pong to attach to the response
+         * @return the node count and time as the NBoard protocol "nodestats" response
+         */
+        public NodeStatsResponse toNodeStats(int pong) {
+            return new NodeStatsResponse(pong, nNodes, tElapsed);
+        }
+
+        @Override public String toString() {
+            return (bestMove < 0 ? "PA" : new CMove((byte) bestMove).toString()) + " " + score + " ("
+                    + nNodes + " nodes, " + String.format("%.3f", tElapsed) + "s)";
+        }
+    }
+}
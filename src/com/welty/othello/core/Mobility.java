@@ -64,4 +64,59 @@ public class Mobility {
         }
         return moves;
     }
+
+    /**
+     * Calculate the discs flipped when the mover places a disc on sq.
+     * <p/>
+     * This does no allocation, so it can be used when replaying large numbers of games.
+     *
+     * @param mover bitboard of the mover's discs
+     * @param empty bitboard of empty squares
+     * @param sq    square of the new disc, 0..63. The square must be empty.
+     * @return bitboard with set bits corresponding to enemy discs that are flipped, or 0 if no discs are flipped.
+     *         The square of the new disc is not included.
+     */
+    public static long calcFlips(long mover, long empty, int sq) {
+        final long move = 1L << sq;
+        final long enemy = ~(mover | empty);
+
+        return flipsUp(move, mover, enemy, 8, -1L)
+                | flipsDown(move, mover, enemy, 8, -1L)
+                | flipsUp(move, mover, enemy, 1, notWestEdge)
+                | flipsDown(move, mover, enemy, 1, notEastEdge)
+                | flipsUp(move, mover, enemy, 9, notWestEdge)
+                | flipsUp(move, mover, enemy, 7, notEastEdge)
+                | flipsDown(move, mover, enemy, 7, notWestEdge)
+                | flipsDown(move, mover, enemy, 9, notEastEdge);
+    }
+
+    /**
+     * Flips in a direction that increases the square number.
+     *
+     * @param onBoard squares that can be reached by a shift without wrapping around the edge of the board
+     */
+    private static long flipsUp(long move, long mover, long enemy, int shift, long onBoard) {
+        long flips = 0;
+        long x = (move << shift) & onBoard;
+        while ((x & enemy) != 0) {
+            flips |= x;
+            x = (x << shift) & onBoard;
+        }
+        return (x & mover) != 0 ? flips : 0;
+    }
+
+    /**
+     * Flips in a direction that decreases the square number.
+     *
+     * @param onBoard squares that can be reached by a shift without wrapping around the edge of the board
+     */
+    private static long flipsDown(long move, long mover, long enemy, int shift, long onBoard) {
+        long flips = 0;
+        long x = (move >>> shift) & onBoard;
+        while ((x & enemy) != 0) {
+            flips |= x;
+            x = (x >>> shift) & onBoard;
+        }
+        return (x & mover) != 0 ? flips : 0;
+    }
 }
@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Move generation tester ("perft"): counts the positions reachable in exactly n plies.
+ * <p/>
+ * A pass counts as a ply. A position where neither player can move counts as a single leaf, however many plies
+ * remain. With these rules the counts from the start position are the standard Othello perft numbers, listed
+ * in {@link #START_POSITION_COUNTS}.
+ * <p/>
+ * Positions are generated with {@link Mobility#calcMoves} and {@link CQPosition#MakeMove(int)}, so a perft run
+ * checks both for correctness and measures their speed.
+ */
+public class Perft {
+    /**
+     * START_POSITION_COUNTS[n] is the number of leaves at depth n from the start position
+     */
+    public static final long[] START_POSITION_COUNTS = {
+            1L, 4L, 12L, 56L, 244L, 1396L, 8200L, 55092L, 390216L, 3005288L, 24571284L, 212258800L, 1939886636L
+    };
+
+    private final int nThreads;
+
+    /**
+     * @param nThreads number of threads to count with
+     */
+    public Perft(int nThreads) {
+        if (nThreads < 1) {
+            throw new IllegalArgumentException("nThreads must be at least 1, was " + nThreads);
+        }
+        this.nThreads = nThreads;
+    }
+
+    /**
+     * Count leaves at the given depth.
+     * <p/>
+     * With more than one thread, the work is split by the positions two plies from pos.
+     *
+     * @param pos   starting position; it is not modified
+     * @param depth number of plies to search
+     * @return leaf count and timing
+     */
+    public Result count(CQPosition pos, int depth) {
+        final long t0 = System.nanoTime();
+        final long nLeaves;
+        if (nThreads == 1 || depth < 3) {
+            nLeaves = new Counter(depth).count(pos, depth);
+        } else {
+            nLeaves = countInParallel(pos, depth);
+        }
+        return new Result(nLeaves, (System.nanoTime() - t0) * 1e-9);
+    }
+
+    private long countInParallel(CQPosition pos, int depth) {
+        final List<CQPosition> splits = new ArrayList<>();
+        long nLeaves = collectSplits(pos, 2, splits);
+        final int remaining = depth - 2;
+
+        final ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        try {
+            final List<Future<Long>> futures = new ArrayList<>();
+            for (final CQPosition split : splits) {
+                futures.add(executor.submit(new Callable<Long>() {
+                    @Override public Long call() {
+                        return new Counter(remaining).count(split, remaining);
+                    }
+                }));
+            }
+            for (Future<Long> future : futures) {
+                nLeaves += future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Perft interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Perft failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return nLeaves;
+    }
+
+    /**
+     * Collect the positions exactly depth plies after pos.
+     *
+     * @return number of games that end before depth plies; these count as leaves and are not collected.
+     */
+    private static long collectSplits(CQPosition pos, int depth, List<CQPosition> splits) {
+        if (depth == 0) {
+            splits.add(new CQPosition(pos));
+            return 0;
+        }
+        final CBitBoard bb = pos.BitBoard();
+        long moves = Mobility.calcMoves(bb.mover, bb.empty);
+        if (moves == 0) {
+            if (Mobility.calcMoves(bb.getEnemy(), bb.empty) == 0) {
+                return 1;
+            }
+            final CQPosition passed = new CQPosition(pos);
+            passed.Pass();
+            return collectSplits(passed, depth - 1, splits);
+        }
+        long nEnded = 0;
+        while (moves != 0) {
+            final int sq = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+            final CQPosition next = new CQPosition(pos);
+            next.MakeMove(sq);
+            nEnded += collectSplits(next, depth - 1, splits);
+        }
+        return nEnded;
+    }
+
+    /**
+     * Single-threaded counter. It preallocates one position per ply, so counting does not allocate.
+     */
+    private static class Counter {
+        private final CQPosition[] positions;
+
+        Counter(int depth) {
+            positions = new CQPosition[depth + 1];
+            for (int i = 0; i <= depth; i++) {
+                positions[i] = new CQPosition();
+            }
+        }
+
+        long count(CQPosition pos, int depth) {
+            positions[depth].Initialize(pos);
+            return count(depth);
+        }
+
+        /**
+         * @return number of leaves below positions[depth]
+         */
+        private long count(int depth) {
+            final CQPosition pos = positions[depth];
+            if (depth == 0) {
+                return 1;
+            }
+            final CBitBoard bb = pos.BitBoard();
+            long moves = Mobility.calcMoves(bb.mover, bb.empty);
+            if (moves == 0) {
+                if (Mobility.calcMoves(bb.getEnemy(), bb.empty) == 0) {
+                    return 1;
+                }
+                final CQPosition next = positions[depth - 1];
+                next.Initialize(pos);
+                next.Pass();
+                return count(depth - 1);
+            }
+            if (depth == 1) {
+                return Long.bitCount(moves);
+            }
+            long nLeaves = 0;
+            final CQPosition next = positions[depth - 1];
+            while (moves != 0) {
+                final int sq = Long.numberOfTrailingZeros(moves);
+                moves &= moves - 1;
+                next.Initialize(pos);
+                next.MakeMove(sq);
+                nLeaves += count(depth - 1);
+            }
+            return nLeaves;
+        }
+    }
+
+    /**
+     * Result of a perft count
+     */
+    public static class Result {
+        public final long nLeaves;
+        /**
+         * Time taken, in seconds
+         */
+        public final double tElapsed;
+
+        Result(long nLeaves, double tElapsed) {
+            this.nLeaves = nLeaves;
+            this.tElapsed = tElapsed;
+        }
+
+        public double leavesPerSecond() {
+            return tElapsed > 0 ? nLeaves / tElapsed : 0;
+        }
+
+        @Override public String toString() {
+            return nLeaves + " leaves in " + String.format("%.3f", tElapsed) + "s ("
+                    + String.format("%.0f", leavesPerSecond()) + " leaves/s)";
+        }
+    }
+
+    /**
+     * Count perft from the start position at each depth up to a maximum, checking against the known counts.
+     * <p/>
+     * Arguments: [maximum depth [number of threads]]. Defaults are depth 9 and one thread per processor.
+     */
+    public static void main(String[] args) {
+        final int maxDepth = args.length > 0 ? Integer.parseInt(args[0]) : 9;
+        final int nThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        final Perft perft = new Perft(nThreads);
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            final Result result = perft.count(new CQPosition(), depth);
+            String check = "";
+            if (depth < START_POSITION_COUNTS.length) {
+                check = result.nLeaves == START_POSITION_COUNTS[depth] ? " ok"
+                        : " ERROR: expected " + START_POSITION_COUNTS[depth];
+            }
+            System.out.println("perft(" + depth + ") = " + result + check);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.core;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from positions to ints.
+ * <p/>
+ * Positions are given as (mover, empty) bitboards. Keys and values are stored in parallel primitive arrays with
+ * linear probing, so the map creates no objects per entry and lookups do not allocate.
+ * <p/>
+ * Keys must be possible bitboards: mover and empty must not overlap.
+ */
+public class PositionMap {
+    /**
+     * Value stored in both key arrays of an unused slot. Like {@link CBitBoard#SetImpossible()},
+     * an unused slot has squares that are both mover and empty.
+     */
+    private static final long IMPOSSIBLE = -1L;
+
+    private long[] keyMovers;
+    private long[] keyEmpties;
+    private int[] values;
+    private int size;
+
+    public PositionMap() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize number of entries the map can hold before it needs to grow
+     */
+    public PositionMap(int expectedSize) {
+        allocate(Integer.highestOneBit(Math.max(2 * expectedSize - 1, 8)) * 2);
+    }
+
+    /**
+     * @return number of positions in the map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the value for the position, or defaultValue if the position is not in the map.
+     */
+    public int get(long mover, long empty, int defaultValue) {
+        final int slot = findSlot(mover, empty);
+        return isUnused(slot) ? defaultValue : values[slot];
+    }
+
+    /**
+     * @return the value for the position, or defaultValue if the position is not in the map.
+     */
+    public int get(CBitBoard bb, int defaultValue) {
+        return get(bb.mover, bb.empty, defaultValue);
+    }
+
+    public boolean containsKey(long mover, long empty) {
+        return !isUnused(findSlot(mover, empty));
+    }
+
+    /**
+     * Set the value for a position, replacing any existing value.
+     *
+     * @throws IllegalArgumentException if mover and empty overlap
+     */
+    public void put(long mover, long empty, int value) {
+        if ((mover & empty) != 0) {
+            throw new IllegalArgumentException("Impossible position: mover and empty overlap");
+        }
+        int slot = findSlot(mover, empty);
+        if (isUnused(slot)) {
+            if (2 * (size + 1) > keyMovers.length) {
+                allocate(keyMovers.length * 2);
+                slot = findSlot(mover, empty);
+            }
+            keyMovers[slot] = mover;
+            keyEmpties[slot] = empty;
+            size++;
+        }
+        values[slot] = value;
+    }
+
+    /**
+     * Set the value for a position, replacing any existing value.
+     *
+     * @throws IllegalArgumentException if the position is impossible
+     */
+    public void put(CBitBoard bb, int value) {
+        put(bb.mover, bb.empty, value);
+    }
+
+    /**
+     * Remove all positions from the map. The map keeps its capacity.
+     */
+    public void clear() {
+        Arrays.fill(keyMovers, IMPOSSIBLE);
+        Arrays.fill(keyEmpties, IMPOSSIBLE);
+        size = 0;
+    }
+
+    /**
+     * @return the slot containing the key, or the unused slot where it should be inserted
+     */
+    private int findSlot(long mover, long empty) {
+        final int mask = keyMovers.length - 1;
+        int slot = hash(mover, empty) & mask;
+        while (!isUnused(slot) && (keyMovers[slot] != mover || keyEmpties[slot] != empty)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private boolean isUnused(int slot) {
+        return (keyMovers[slot] & keyEmpties[slot]) != 0;
+    }
+
+    /**
+     * @return hash of a position. The low bits are well mixed, so they can be used directly as a table index.
+     */
+    static int hash(long mover, long empty) {
+        // multiplication only carries bits upward, so the high bits are shifted back down after each multiply;
+        // otherwise positions that differ only on the bottom rows would share low bits.
+        long h = mover * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        h = (h + empty) * 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return (int) (h ^ (h >>> 33));
+    }
+
+    /**
+     * Allocate new arrays with the given capacity and reinsert any existing entries.
+     *
+     * @param capacity new capacity; must be a power of 2
+     */
+    private void allocate(int capacity) {
+        final long[] oldMovers = keyMovers;
+        final long[] oldEmpties = keyEmpties;
+        final int[] oldValues = values;
+
+        keyMovers = new long[capacity];
+        keyEmpties = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keyMovers, IMPOSSIBLE);
+        Arrays.fill(keyEmpties, IMPOSSIBLE);
+
+        if (oldMovers != null) {
+            for (int i = 0; i < oldMovers.length; i++) {
+                if ((oldMovers[i] & oldEmpties[i]) == 0) {
+                    final int slot = findSlot(oldMovers[i], oldEmpties[i]);
+                    keyMovers[slot] = oldMovers[i];
+                    keyEmpties[slot] = oldEmpties[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.core;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size hash table of search results, for use by searches running in any number of threads.
+ * <p/>
+ * Each entry holds a position, a value, the search depth, the best move and whether the value is exact or a bound.
+ * Entries are grouped in buckets of two; a new position replaces the shallower entry in its bucket.
+ * <p/>
+ * The table uses no locks. Each entry is three longs: the data word and the mover and empty bitboards, each XORed
+ * with the data word. If two threads write the same entry at the same time, the words can come from different
+ * writes; the XOR check then fails and {@link #find} treats the entry as missing. A reader therefore sees either
+ * a complete entry or nothing. Writes may not be visible to other threads immediately, which only costs a
+ * hash table miss.
+ * <p/>
+ * The data word for an entry is returned by {@link #find} and decoded with {@link #value}, {@link #depth},
+ * {@link #bestMove} and {@link #bound}.
+ */
+public class TranspositionTable {
+    /**
+     * Bound types. The value is a lower bound, an upper bound, or both (exact).
+     */
+    public static final int LOWER = 1;
+    public static final int UPPER = 2;
+    public static final int EXACT = LOWER | UPPER;
+
+    /**
+     * Returned by {@link #find} when the position is not in the table. Stored entries always have a bound, so
+     * their data word is never MISS.
+     */
+    public static final long MISS = 0;
+
+    private static final int LONGS_PER_ENTRY = 3;
+
+    /**
+     * entries[3*i] = data, entries[3*i+1] = mover^data, entries[3*i+2] = empty^data.
+     * Unused entries decode as an impossible position, see {@link CBitBoard#SetImpossible()}.
+     */
+    private final long[] entries;
+    private final int mask;
+
+    /**
+     * @param nEntries number of entries in the table; must be a power of 2 and at least 2.
+     * @throws IllegalArgumentException if nEntries is not a power of 2 or is less than 2
+     */
+    public TranspositionTable(int nEntries) {
+        if (nEntries < 2 || Integer.bitCount(nEntries) != 1) {
+            throw new IllegalArgumentException("Table size must be a power of 2 and at least 2, was " + nEntries);
+        }
+        entries = new long[nEntries * LONGS_PER_ENTRY];
+        mask = nEntries - 1;
+        clear();
+    }
+
+    /**
+     * @return number of entries in the table
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Remove all entries.
+     * <p/>
+     * This must not be called while other threads are using the table.
+     */
+    public void clear() {
+        Arrays.fill(entries, -1L);
+        for (int i = 0; i < entries.length; i += LONGS_PER_ENTRY) {
+            entries[i] = 0;
+        }
+    }
+
+    /**
+     * Look up a position.
+     *
+     * @return the data word for the position, or {@link #MISS} if the position is not in the table.
+     */
+    public long find(long mover, long empty) {
+        final int bucket = bucket(mover, empty);
+        long data = read(bucket, mover, empty);
+        if (data == MISS) {
+            data = read(bucket + 1, mover, empty);
+        }
+        return data;
+    }
+
+    /**
+     * Look up a position.
+     *
+     * @return the data word for the position, or {@link #MISS} if the position is not in the table.
+     */
+    public long find(CBitBoard bb) {
+        return find(bb.mover, bb.empty);
+    }
+
+    /**
+     * Store a search result.
+     * <p/>
+     * If the position is already in the table its entry is replaced. Otherwise the shallower entry in the
+     * position's bucket is replaced.
+     *
+     * @param value    search value
+     * @param depth    search depth, 0..255
+     * @param bestMove best move square 0..63, or -1 if there is no best move (for instance if the mover must pass)
+     * @param bound    {@link #LOWER}, {@link #UPPER} or {@link #EXACT}
+     * @throws IllegalArgumentException if depth or bound is out of range
+     */
+    public void store(long mover, long empty, int value, int depth, int bestMove, int bound) {
+        if (depth < 0 || depth > 255) {
+            throw new IllegalArgumentException("depth must be 0..255, was " + depth);
+        }
+        if (bound < LOWER || bound > EXACT) {
+            throw new IllegalArgumentException("illegal bound type " + bound);
+        }
+        final long data = ((long) value << 32) | (depth << 16) | ((bestMove & 0xFF) << 8) | bound;
+
+        final int bucket = bucket(mover, empty);
+        final int i;
+        if (read(bucket, mover, empty) != MISS) {
+            i = bucket;
+        } else if (read(bucket + 1, mover, empty) != MISS) {
+            i = bucket + 1;
+        } else {
+            i = depth(entries[bucket * LONGS_PER_ENTRY]) <= depth(entries[(bucket + 1) * LONGS_PER_ENTRY])
+                    ? bucket : bucket + 1;
+        }
+        final int offset = i * LONGS_PER_ENTRY;
+        entries[offset] = data;
+        entries[offset + 1] = mover ^ data;
+        entries[offset + 2] = empty ^ data;
+    }
+
+    /**
+     * Store a search result.
+     *
+     * @see #store(long, long, int, int, int, int)
+     */
+    public void store(CBitBoard bb, int value, int depth, int bestMove, int bound) {
+        store(bb.mover, bb.empty, value, depth, bestMove, bound);
+    }
+
+    /**
+     * @return the data word in entry i if it holds the position, otherwise MISS
+     */
+    private long read(int i, long mover, long empty) {
+        final int offset = i * LONGS_PER_ENTRY;
+        final long data = entries[offset];
+        if ((entries[offset + 1] ^ data) == mover && (entries[offset + 2] ^ data) == empty) {
+            return data;
+        }
+        return MISS;
+    }
+
+    /**
+     * @return index of the first entry in the position's bucket
+     */
+    private int bucket(long mover, long empty) {
+        return PositionMap.hash(mover, empty) & mask & ~1;
+    }
+
+    public static int value(long data) {
+        return (int) (data >> 32);
+    }
+
+    public static int depth(long data) {
+        return (int) (data >>> 16) & 0xFF;
+    }
+
+    /**
+     * @return best move square, or -1 if there is no best move
+     */
+    public static int bestMove(long data) {
+        return (byte) (data >>> 8);
+    }
+
+    public static int bound(long data) {
+        return (int) data & EXACT;
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.database;
+
+import com.orbanova.common.misc.Engineering;
+import com.welty.othello.core.CBitBoard;
+import com.welty.othello.core.CMinimalReflection;
+import com.welty.othello.core.CMoves;
+import com.welty.othello.core.CQPosition;
+import com.welty.othello.gdk.COsGame;
+import com.welty.othello.gdk.OsClock;
+import com.welty.othello.protocol.EnginePool;
+import com.welty.othello.protocol.MoveResponse;
+import com.welty.othello.thor.DatabaseData;
+import com.welty.othello.thor.PrintingProgressTracker;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Evaluates a large set of positions using a pool of NBoard engines.
+ * <p/>
+ * Positions are collected from games, for instance every position with a given number of empties in a
+ * database of GGF and Thor games, and deduplicated by minimal reflection.
+ * <p/>
+ * Results are appended to a results file as they arrive, one position per line: the 64-character board text
+ * of the minimal reflection, with the mover as '*', followed by the eval from the mover's point of view.
+ * Positions already in the results file are not searched again, so a run that is interrupted can be resumed by
+ * running it again with the same results file.
+ */
+public class BatchAnalyzer {
+    /**
+     * Time between progress reports, in milliseconds
+     */
+    private static final long REPORT_INTERVAL = 10000;
+
+    private final EnginePool pool;
+    /**
+     * Maximum number of positions submitted to the pool whose results have not yet been written
+     */
+    private final int maxInFlight;
+
+    /**
+     * @param pool     engines used to search the positions
+     * @param nEngines number of engines in the pool. Enough positions are kept in flight to keep them all busy.
+     */
+    public BatchAnalyzer(EnginePool pool, int nEngines) {
+        this.pool = pool;
+        this.maxInFlight = 4 * nEngines;
+    }
+
+    /**
+     * Analyze all positions with a given number of empties in a database.
+     * <p/>
+     * usage: BatchAnalyzer database-directory nEmpty results-file nEngines depth engine-command...
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 6) {
+            System.err.println("usage: BatchAnalyzer database-directory nEmpty results-file nEngines depth engine-command...");
+            System.exit(1);
+        }
+        final File dir = new File(args[0]);
+        final int nEmpty = Integer.parseInt(args[1]);
+        final File resultsFile = new File(args[2]);
+        final int nEngines = Integer.parseInt(args[3]);
+        final int depth = Integer.parseInt(args[4]);
+        final ProcessBuilder command = new ProcessBuilder(Arrays.asList(args).subList(5, args.length));
+
+        final DatabaseData db = new DatabaseData();
+        db.loadFromDirectory(dir, new PrintingProgressTracker("games"), DatabaseData.defaultSnapshotFile(dir));
+        final Set<CMinimalReflection> positions = positions(db, nEmpty);
+        System.out.println(positions.size() + " distinct positions with " + nEmpty + " empties");
+
+        try (EnginePool pool = new EnginePool(command, nEngines, depth)) {
+            final Summary summary = new BatchAnalyzer(pool, nEngines).analyze(positions, resultsFile);
+            System.out.println(summary);
+        }
+    }
+
+    /**
+     * @return the distinct positions, up to reflection, that occur with nEmpty empties in the database's games
+     */
+    static Set<CMinimalReflection> positions(DatabaseData db, int nEmpty) {
+        final Set<CMinimalReflection> positions = new LinkedHashSet<>();
+        final int n = db.NGames();
+        for (int i = 0; i < n; i++) {
+            addPositions(positions, db.GameFromIndex(i), nEmpty);
+        }
+        return positions;
+    }
+
+    /**
+     * Add the positions in a game that have nEmpty empties and a legal move for the mover.
+     * <p/>
+     * If the game is shorter than nEmpty empties, nothing is added.
+     */
+    static void addPositions(Set<CMinimalReflection> positions, COsGame game, int nEmpty) {
+        final CMoves moves = new CMoves();
+        for (int iMove = 0; iMove <= game.nMoves(); iMove++) {
+            final CQPosition pos = new CQPosition(game, iMove);
+            final int posEmpty = pos.NEmpty();
+            if (posEmpty < nEmpty) {
+                break;
+            }
+            if (posEmpty == nEmpty && pos.CalcMoves(moves)) {
+                positions.add(new CMinimalReflection(pos.BitBoard()));
+            }
+        }
+    }
+
+    /**
+     * Search all positions that are not already in the results file, appending the results to the file.
+     *
+     * @param positions   positions to search
+     * @param resultsFile results file. It is created if it does not exist.
+     * @return counts of positions searched
+     * @throws IOException           if the results file can't be read or written
+     * @throws IllegalStateException if the engines fail
+     */
+    public Summary analyze(Collection<CMinimalReflection> positions, File resultsFile) throws IOException {
+        // a run interrupted while writing a line leaves part of it, which may still parse as a (wrong) result.
+        truncatePartialLine(resultsFile);
+        final Set<CBitBoard> done = readResults(resultsFile);
+        final List<CMinimalReflection> remaining = new ArrayList<>();
+        for (CMinimalReflection position : positions) {
+            if (!done.contains(position)) {
+                remaining.add(position);
+            }
+        }
+        final Summary summary = new Summary(positions.size(), positions.size() - remaining.size());
+        final Progress progress = new Progress(remaining.size());
+
+        // Results are written in submission order. Enough positions are in flight that every engine has the next
+        // position queued while the oldest result is awaited.
+        final ArrayDeque<Future<MoveResponse>> inFlight = new ArrayDeque<>();
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(resultsFile, true), StandardCharsets.UTF_8)) {
+            int iNext = 0;
+            while (iNext < remaining.size() || !inFlight.isEmpty()) {
+                while (iNext < remaining.size() && inFlight.size() < maxInFlight) {
+                    inFlight.add(pool.submit(game(remaining.get(iNext++))));
+                }
+                final CMinimalReflection position = remaining.get(iNext - inFlight.size());
+                final MoveResponse response = inFlight.poll().get();
+                out.write(position.GetSBoard(true) + " " + response.mli.getEval() + "\n");
+                out.flush();
+                summary.nSearched++;
+                progress.update(summary.nSearched);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Analysis interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Engine failed", e.getCause());
+        } finally {
+            for (Future<MoveResponse> future : inFlight) {
+                future.cancel(false);
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * @return a game starting at the position, with the mover as black
+     */
+    private static COsGame game(CBitBoard position) {
+        final COsGame game = new COsGame();
+        game.setToDefaultStartPosition(OsClock.DEFAULT, OsClock.DEFAULT);
+        game.SetToPosition(position.GetSBoard(true), true);
+        return game;
+    }
+
+    /**
+     * @return true if the file exists and its last line has no line terminator
+     */
+    private static boolean endsWithPartialLine(File file) throws IOException {
+        if (!file.exists() || file.length() == 0) {
+            return false;
+        }
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            in.seek(file.length() - 1);
+            return in.read() != '\n';
+        }
+    }
+
+    /**
+     * Remove the last line of the file if it has no line terminator
+     */
+    private static void truncatePartialLine(File file) throws IOException {
+        if (!endsWithPartialLine(file)) {
+            return;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long end = raf.length() - 1;
+            while (end > 0) {
+                raf.seek(end - 1);
+                if (raf.read() == '\n') {
+                    break;
+                }
+                end--;
+            }
+            raf.setLength(end);
+        }
+    }
+
+    /**
+     * Read the positions in a results file.
+     * <p/>
+     * A line that can't be parsed is ignored. So is a last line with no line terminator, which was only partly
+     * written when a run was interrupted; its eval may have been cut short but still parse.
+     *
+     * @return the positions, or an empty set if the file does not exist
+     */
+    static Set<CBitBoard> readResults(File resultsFile) throws IOException {
+        final Set<CBitBoard> positions = new HashSet<>();
+        if (!resultsFile.exists()) {
+            return positions;
+        }
+        final boolean partialLine = endsWithPartialLine(resultsFile);
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(resultsFile), StandardCharsets.UTF_8))) {
+            String line;
+            String next = in.readLine();
+            while ((line = next) != null) {
+                next = in.readLine();
+                if (next == null && partialLine) {
+                    break;
+                }
+                final int space = line.indexOf(' ');
+                if (space != 64) {
+                    continue;
+                }
+                try {
+                    Double.parseDouble(line.substring(space + 1));
+                    positions.add(new CBitBoard(line.substring(0, space), true));
+                } catch (IllegalArgumentException e) {
+                    // corrupt line; the position will be searched again.
+                }
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Prints throughput and estimated time remaining every {@link #REPORT_INTERVAL} milliseconds
+     */
+    private class Progress {
+        private final int nTotal;
+        private final long tStart = System.currentTimeMillis();
+        private long nextReport = tStart + REPORT_INTERVAL;
+
+        Progress(int nTotal) {
+            this.nTotal = nTotal;
+        }
+
+        void update(int nDone) {
+            final long t = System.currentTimeMillis();
+            if (t >= nextReport || nDone == nTotal) {
+                nextReport = t + REPORT_INTERVAL;
+                final double seconds = Math.max(t - tStart, 1) * 1e-3;
+                final double rate = nDone / seconds;
+                final long eta = Math.round((nTotal - nDone) / rate);
+                System.out.format("%d/%d positions, %.1f positions/s, %sn/s, ETA %d:%02d:%02d%n", nDone, nTotal, rate,
+                        Engineering.compactFormat(pool.nodesPerSecond()), eta / 3600, eta / 60 % 60, eta % 60);
+            }
+        }
+    }
+
+    /**
+     * Counts of positions in a run
+     */
+    public static class Summary {
+        /**
+         * Number of distinct positions requested
+         */
+        public final int nPositions;
+        /**
+         * Number of positions that were already in the results file
+         */
+        public final int nAlreadyDone;
+        /**
+         * Number of positions searched in this run
+         */
+        public int nSearched;
+
+        Summary(int nPositions, int nAlreadyDone) {
+            this.nPositions = nPositions;
+            this.nAlreadyDone = nAlreadyDone;
+        }
+
+        @Override public String toString() {
+            return nPositions + " positions: " + nAlreadyDone + " already done, " + nSearched + " searched";
+        }
+    }
+}
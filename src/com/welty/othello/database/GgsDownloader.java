@@ -15,26 +15,18 @@
 
 package com.welty.othello.database;
 
-import com.orbanova.common.feed.Feeds;
 import com.orbanova.common.misc.OperatingSystem;
-import com.orbanova.common.misc.Vec;
+import com.welty.othello.thor.ParallelBzip2InputStream;
 import gnu.trove.map.hash.TDoubleIntHashMap;
 import org.apache.commons.compress.compressors.CompressorException;
-import org.apache.commons.compress.compressors.CompressorInputStream;
-import org.apache.commons.compress.compressors.CompressorStreamFactory;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.*;
 import java.net.URL;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 
 /**
  */
@@ -79,45 +71,20 @@ public class GgsDownloader {
         final Path destPath = downloadGgs("Othello." + fileCode + ".bz2");
         final Path outputPath = Paths.get("/home/chris/games_" + fileCode + ".ggf");
 
-        final List<OthelloMatch> matches = Feeds.ofLines(bz2Reader(destPath))
-                .map(OthelloMatch.PARSER)
-                .asList();
-
-        final List<String> gameTexts = new ArrayList<>();
-
-        final TDoubleIntHashMap countByResult = new TDoubleIntHashMap();
-
-        int nGames = 0;
-        int n8 = 0;
-
-        for (OthelloMatch match : matches) {
-            for (OthelloGame game : match.games) {
-                nGames++;
-                if (nGames%1024 == 0) {
-                    System.out.println((nGames>>10) + "k games");
-                }
-                final String type = game.type();
-                // only want to add standard start position to book.
-                // no comments allowed because book might freak out if game is not completely played out.
-                if ((type.equals("8") || type.equals("s8") || type.equals("8k")) && game.result().comment == null) {
-                    n8++;
-                    if (game.blackRating() > 1900 && game.whiteRating() > 1900) {
-                        gameTexts.add(game.toString());
-                        countByResult.adjustOrPutValue(game.score(), 1, 1);
-                    }
-                }
-            }
+        final GgsGameSelector.Summary summary;
+        try (BufferedReader in = bz2Reader(destPath);
+             BufferedWriter out = Files.newBufferedWriter(outputPath, Charset.defaultCharset())) {
+            summary = new GgsGameSelector(Runtime.getRuntime().availableProcessors()).select(in, out);
         }
-        final int nFilteredGames = Vec.sum(countByResult.values());
-        System.out.println("selected " + nFilteredGames + " out of " + n8 + " standard games out of " + nGames + " games");
+
+        final TDoubleIntHashMap countByResult = summary.countByResult;
+        System.out.println("selected " + summary.nSelected + " out of " + summary.nStandard + " standard games out of " + summary.nGames + " games");
         System.out.format("%5s %5s%n", "score", "count");
         final double[] keys = countByResult.keys();
         Arrays.sort(keys);
         for (double key : keys) {
             System.out.format("%5.0f %5d%n", key, countByResult.get(key));
         }
-
-        Files.write(outputPath, gameTexts, Charset.defaultCharset());
     }
 
     private static Path downloadGgs(String sourceFile) throws IOException {
@@ -142,16 +109,13 @@ public class GgsDownloader {
      * Open a .bz2 file for reading
      * <p/>
      * Contents of the bz2 file are decompressed, then converted from bytes to chars using this jvm's standard
-     * charset.
+     * charset. Blocks are decompressed in parallel on one thread per processor; see {@link ParallelBzip2InputStream}.
      *
      * @param bz2File the file to open
      * @return a BufferedReader containing the decompressed contents of the bz2 file
      */
-    private static BufferedReader bz2Reader(Path bz2File) throws CompressorException, IOException {
-        final BufferedInputStream compressedBytes = new BufferedInputStream(Files.newInputStream(bz2File));
-        final CompressorInputStream decompressedBytes = new CompressorStreamFactory().createCompressorInputStream(CompressorStreamFactory.BZIP2, compressedBytes);
-        final BufferedReader br2 = new BufferedReader(new InputStreamReader(decompressedBytes));
-
-        return br2;
+    private static BufferedReader bz2Reader(Path bz2File) throws IOException {
+        final InputStream decompressedBytes = new ParallelBzip2InputStream(Files.newInputStream(bz2File), Runtime.getRuntime().availableProcessors());
+        return new BufferedReader(new InputStreamReader(decompressedBytes));
     }
 }
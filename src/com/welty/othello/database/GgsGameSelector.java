@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.database;
+
+import gnu.trove.map.hash.TDoubleIntHashMap;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Selects games from a GGS archive and writes them out, in archive order.
+ * <p/>
+ * The archive is processed as a pipeline. The calling thread splits the input into batches of lines; a pool of
+ * worker threads parses each batch into {@link OthelloMatch}es and selects games from them; a writer thread writes
+ * the selected games in the order of the batches. At most a fixed number of batches are in flight at once,
+ * so memory use does not depend on the size of the archive.
+ */
+class GgsGameSelector {
+    private static final int LINES_PER_BATCH = 256;
+
+    private final int nThreads;
+
+    /**
+     * @param nThreads number of threads used to parse and select games
+     */
+    GgsGameSelector(int nThreads) {
+        if (nThreads < 1) {
+            throw new IllegalArgumentException("nThreads must be at least 1, was " + nThreads);
+        }
+        this.nThreads = nThreads;
+    }
+
+    /**
+     * Is the game wanted?
+     * <p/>
+     * Games are selected if they are standard (see {@link #isStandard(OthelloGame)}) and both players are rated over 1900.
+     */
+    static boolean isSelected(OthelloGame game) {
+        return isStandard(game) && game.blackRating() > 1900 && game.whiteRating() > 1900;
+    }
+
+    /**
+     * Only want to add standard start position to book.
+     * No comments allowed because book might freak out if game is not completely played out.
+     */
+    private static boolean isStandard(OthelloGame game) {
+        final String type = game.type();
+        return (type.equals("8") || type.equals("s8") || type.equals("8k")) && game.result().comment == null;
+    }
+
+    /**
+     * Select games.
+     *
+     * @param in  archive text, one match per line
+     * @param out destination for the selected games, one game per line. It is not closed.
+     * @return summary of the selection
+     * @throws IOException              if in can't be read, out can't be written, or a match is truncated
+     * @throws IllegalArgumentException if a match can't be parsed
+     */
+    Summary select(BufferedReader in, final BufferedWriter out) throws IOException {
+        final ExecutorService workers = Executors.newFixedThreadPool(nThreads);
+        final ExecutorService writerThread = Executors.newSingleThreadExecutor();
+        // Batches in archive order. Its capacity limits the number of batches in flight.
+        final BlockingQueue<Future<Batch>> batches = new ArrayBlockingQueue<>(2 * nThreads);
+        try {
+            final Future<Summary> summary = writerThread.submit(new Callable<Summary>() {
+                @Override public Summary call() throws Exception {
+                    return write(batches, out);
+                }
+            });
+
+            boolean writing = true;
+            List<String> lines = new ArrayList<>(LINES_PER_BATCH);
+            String line;
+            while (writing && (line = in.readLine()) != null) {
+                lines.add(line);
+                if (lines.size() == LINES_PER_BATCH) {
+                    writing = enqueue(batches, workers.submit(new BatchSelector(lines)), summary);
+                    lines = new ArrayList<>(LINES_PER_BATCH);
+                }
+            }
+            if (writing && !lines.isEmpty()) {
+                writing = enqueue(batches, workers.submit(new BatchSelector(lines)), summary);
+            }
+            if (writing) {
+                enqueue(batches, END, summary);
+            }
+            return summary.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Game selection interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ExecutionException) {
+                // a batch failed; the writer passed on its exception
+                cause = cause.getCause();
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Game selection failed", cause);
+        } finally {
+            workers.shutdownNow();
+            writerThread.shutdownNow();
+        }
+    }
+
+    /**
+     * Add a batch to the queue, waiting for space if necessary.
+     *
+     * @param writer the writer's result. If the writer stops (because a batch failed), the queue is no longer
+     *               drained, so this stops waiting.
+     * @return true if the batch was added, false if the writer has stopped
+     */
+    private static boolean enqueue(BlockingQueue<Future<Batch>> batches, Future<Batch> batch, Future<Summary> writer)
+            throws InterruptedException {
+        while (!batches.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+            if (writer.isDone()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Write the selected games from each batch, in order, until the END batch.
+     *
+     * @throws ExecutionException if a batch could not be parsed
+     */
+    private static Summary write(BlockingQueue<Future<Batch>> batches, BufferedWriter out)
+            throws InterruptedException, ExecutionException, IOException {
+        final Summary summary = new Summary();
+        Future<Batch> future;
+        while ((future = batches.take()) != END) {
+            final Batch batch = future.get();
+            for (String gameText : batch.gameTexts) {
+                out.write(gameText);
+                out.newLine();
+            }
+            summary.add(batch);
+        }
+        return summary;
+    }
+
+    /**
+     * Marks the end of the batch queue
+     */
+    private static final Future<Batch> END = new FutureTask<>(new Runnable() {
+        @Override public void run() {
+        }
+    }, null);
+
+    /**
+     * Parses a batch of lines and selects games from it
+     */
+    private static class BatchSelector implements Callable<Batch> {
+        private final List<String> lines;
+
+        BatchSelector(List<String> lines) {
+            this.lines = lines;
+        }
+
+        @Override public Batch call() throws Exception {
+            final Batch batch = new Batch();
+            for (String line : lines) {
+                for (OthelloGame game : new OthelloMatch(line).games) {
+                    batch.nGames++;
+                    if (isStandard(game)) {
+                        batch.nStandard++;
+                        if (isSelected(game)) {
+                            batch.gameTexts.add(game.toString());
+                            batch.scores.add(game.score());
+                        }
+                    }
+                }
+            }
+            return batch;
+        }
+    }
+
+    /**
+     * Games selected from a batch of lines
+     */
+    private static class Batch {
+        private int nGames;
+        private int nStandard;
+        private final List<String> gameTexts = new ArrayList<>();
+        private final List<Double> scores = new ArrayList<>();
+    }
+
+    /**
+     * Counts of games seen and selected
+     */
+    static class Summary {
+        int nGames;
+        int nStandard;
+        int nSelected;
+        final TDoubleIntHashMap countByResult = new TDoubleIntHashMap();
+
+        private void add(Batch batch) {
+            final int before = nGames;
+            nGames += batch.nGames;
+            if ((nGames >> 10) != (before >> 10)) {
+                System.out.println((nGames >> 10) + "k games");
+            }
+            nStandard += batch.nStandard;
+            nSelected += batch.gameTexts.size();
+            for (double score : batch.scores) {
+                countByResult.adjustOrPutValue(score, 1, 1);
+            }
+        }
+    }
+}
@@ -24,7 +24,8 @@ public class ThorSelector {
 
     private static void createAndShowGui() {
         DatabaseData db = new DatabaseData();
-        db.loadFromDirectory(new File("/home/chris/dist/nboard/db/ffo"), new GuiProgressTracker("games"));
+        final File dir = new File("/home/chris/dist/nboard/db/ffo");
+        db.loadFromDirectory(dir, new GuiProgressTracker("games"), DatabaseData.defaultSnapshotFile(dir));
 
         printGames("Championnat du Monde", db);
         printGames("Meijin", db);
@@ -17,6 +17,7 @@ package com.welty.othello.gdk;
 
 import com.orbanova.common.misc.Require;
 import com.welty.othello.c.CReader;
+import com.welty.othello.core.Mobility;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.PrintStream;
@@ -37,6 +38,15 @@ public class COsBoard {
      */
     private char[] sBoard;
 
+    /**
+     * Standard 8x8 boards also store the disks as bitboards (bit row*8+col), so that move generation and
+     * flipping use {@link Mobility}. The char array remains the reference representation and the bitboards
+     * are kept in sync with it. For other board types, fBitBoard is false and the bitboards are unused.
+     */
+    private boolean fBitBoard;
+    private long black;
+    private long white;
+
     public boolean fBlackMove;
 
     public static final char BLACK = '*';
@@ -73,6 +83,7 @@ public class COsBoard {
         char c;
         this.bt = bt;
 
+        fBitBoard = false;
         sBoard = new char[this.bt.nTotalSquares()];
         for (row = -1; row <= this.bt.n; row++) {
             for (col = -1; col <= this.bt.n; col++) {
@@ -94,6 +105,7 @@ public class COsBoard {
 
         fBlackMove = true;
         validate();
+        syncBitBoards();
     }
 
     public char getPiece(int row, int col) {
@@ -111,6 +123,11 @@ public class COsBoard {
             case EMPTY:
             case DUMMY:
                 // need to adjust for the first row and column of dummy squares
+                if (fBitBoard && row >= 0 && row < 8 && col >= 0 && col < 8) {
+                    final long mask = 1L << (row * 8 + col);
+                    black = piece == BLACK ? black | mask : black & ~mask;
+                    white = piece == WHITE ? white | mask : white & ~mask;
+                }
                 row++;
                 col++;
                 sBoard[row * (bt.n + 2) + col] = piece;
@@ -149,11 +166,15 @@ public class COsBoard {
 
                 // update board
                 int nFlipped = 0;
-                setPiece(move.row(), move.col(), cMover);
-                for (dRow = -1; dRow <= 1; dRow++) {
-                    for (dCol = -1; dCol <= 1; dCol++) {
-                        if ((dRow != 0) || (dCol != 0))
-                            nFlipped += updateDirection(move.row(), move.col(), dRow, dCol, cMover, cOpponent);
+                if (fBitBoard) {
+                    nFlipped = updateBitBoard(move.row() * 8 + move.col(), cMover);
+                } else {
+                    setPiece(move.row(), move.col(), cMover);
+                    for (dRow = -1; dRow <= 1; dRow++) {
+                        for (dCol = -1; dCol <= 1; dCol++) {
+                            if ((dRow != 0) || (dCol != 0))
+                                nFlipped += updateDirection(move.row(), move.col(), dRow, dCol, cMover, cOpponent);
+                        }
                     }
                 }
                 if (nFlipped == 0) {
@@ -174,6 +195,63 @@ public class COsBoard {
         fBlackMove = !fBlackMove;
     }
 
+    /**
+     * Make a move on an 8x8 board using the bitboards. The player to move is not changed.
+     *
+     * @param sq     square of the move, row*8+col. The square must be empty.
+     * @param cMover color of the player making the move
+     * @return number of disks flipped. If this is 0, the board is unchanged.
+     */
+    private int updateBitBoard(int sq, char cMover) {
+        final boolean fBlackMover = cMover == BLACK;
+        final long mover = fBlackMover ? black : white;
+        final long flips = Mobility.calcFlips(mover, ~(black | white), sq);
+        if (flips == 0) {
+            return 0;
+        }
+        final long changed = flips | (1L << sq);
+        if (fBlackMover) {
+            black |= changed;
+            white &= ~changed;
+        } else {
+            white |= changed;
+            black &= ~changed;
+        }
+        for (long bits = changed; bits != 0; bits &= bits - 1) {
+            final int i = Long.numberOfTrailingZeros(bits);
+            sBoard[charIndex(i)] = cMover;
+        }
+        return Long.bitCount(flips);
+    }
+
+    /**
+     * Recalculate the bitboards from the char array.
+     * <p/>
+     * This must be called whenever the board type changes or sBoard is written directly rather than via setPiece.
+     */
+    private void syncBitBoards() {
+        fBitBoard = sBoard != null && bt.n == 8 && !bt.octo;
+        black = white = 0;
+        if (fBitBoard) {
+            for (int sq = 0; sq < 64; sq++) {
+                final char c = sBoard[charIndex(sq)];
+                if (c == BLACK) {
+                    black |= 1L << sq;
+                } else if (c == WHITE) {
+                    white |= 1L << sq;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param sq bitboard square on an 8x8 board, row*8+col
+     * @return index of the square in sBoard
+     */
+    private static int charIndex(int sq) {
+        return ((sq >> 3) + 1) * 10 + (sq & 7) + 1;
+    }
+
     /**
      * @return 0 if mover has a legal move, 1 if mover passes but opponent has a legal move, 2 if neither player has
      * a legal move and the game is therefore over.
@@ -203,6 +281,9 @@ public class COsBoard {
      * @return true if the player has a legal move given the disks on the board
      */
     boolean hasLegalMove(boolean fBlackMover) {
+        if (fBitBoard) {
+            return Mobility.calcMoves(fBlackMover ? black : white, ~(black | white)) != 0;
+        }
         int r, c;
 
         for (r = 0; r < bt.n; r++) {
@@ -223,6 +304,16 @@ public class COsBoard {
         int r, c;
         ArrayList<OsMove> mvs = new ArrayList<>();
 
+        if (fBitBoard) {
+            final boolean fBlackMover = fMover == fBlackMove;
+            long moves = Mobility.calcMoves(fBlackMover ? black : white, ~(black | white));
+            for (; moves != 0; moves &= moves - 1) {
+                final int sq = Long.numberOfTrailingZeros(moves);
+                mvs.add(new OsMove(sq >> 3, sq & 7));
+            }
+            return mvs;
+        }
+
         for (r = 0; r < bt.n; r++) {
             for (c = 0; c < bt.n; c++)
                 if (nFlipped(r, c, fMover ? fBlackMove : !fBlackMove) != 0)
@@ -261,6 +352,18 @@ public class COsBoard {
         int dRow, dCol;
         char cMover, cOpponent;
 
+        if (fBitBoard) {
+            if (row < 0 || row >= 8 || col < 0 || col >= 8) {
+                return 0;
+            }
+            final int sq = row * 8 + col;
+            final long empty = ~(black | white);
+            if ((empty & (1L << sq)) == 0) {
+                return 0;
+            }
+            return Long.bitCount(Mobility.calcFlips(fBlackMover ? black : white, empty, sq));
+        }
+
         if (getPiece(row, col) != EMPTY)
             return 0;
 
@@ -301,6 +404,7 @@ public class COsBoard {
                 sBoard[i] = c;
             }
         }
+        syncBitBoards();
 
         final char c = readNormalized(is);
         fBlackMove = (c == BLACK);
@@ -414,6 +518,8 @@ public class COsBoard {
         bt = OsBoardType.BT_8x8;
         fBlackMove = true;
         sBoard = null;
+        fBitBoard = false;
+        black = white = 0;
     }
 
     /**
@@ -558,6 +664,9 @@ public class COsBoard {
     public void copy(COsBoard board) {
         bt = board.bt;
         sBoard = (board.sBoard == null) ? null : Arrays.copyOf(board.sBoard, board.sBoard.length);
+        fBitBoard = board.fBitBoard;
+        black = board.black;
+        white = board.white;
         fBlackMove = board.fBlackMove;
         validate();
     }
@@ -629,6 +738,11 @@ public class COsBoard {
      * Port note: originally had arguments int&nBlack, int&nWhite, int&nEmpty
      */
     public PieceCounts getPieceCounts() {
+        if (fBitBoard) {
+            final int nBlack = Long.bitCount(black);
+            final int nWhite = Long.bitCount(white);
+            return new PieceCounts(nBlack, nWhite, 64 - nBlack - nWhite);
+        }
         int nBlack = 0;
         int nWhite = 0;
         int nEmpty = 0;
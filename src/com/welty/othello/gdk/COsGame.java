@@ -47,6 +47,15 @@ public class COsGame {
     public OsResult result = OsResult.INCOMPLETE;
     private double dKomiValue = 0;
 
+    /**
+     * positions.get(i) is the position after i moves, for i up to positions.size()-1.
+     * <p/>
+     * The list is extended as positions are requested. Appending moves leaves it valid; anything else that changes
+     * the start position, the move list or the komi moves must call {@link #invalidatePositions(int)}.
+     * It is transient so that equals() and hashCode() ignore it.
+     */
+    private transient final ArrayList<COsPosition> positions = new ArrayList<>();
+
     public COsGame() {
         this(OsMatchType.STANDARD);
     }
@@ -90,6 +99,7 @@ public class COsGame {
 
         final COsGame game = new COsGame(OsMatchType.STANDARD);
         game.posStart.board.initialize(OsBoardType.BT_8x8);
+        game.invalidatePositions(0);
         game.pos = new COsPosition(game.posStart);
 
         game.sPlace = tags.get("Site");
@@ -134,6 +144,7 @@ public class COsGame {
     public void In(CReader in) {
         ml.clear();
         posStart.Clear();
+        invalidatePositions(0);
 
         char c;
         String sToken, sData;
@@ -284,7 +295,7 @@ public class COsGame {
 
         mt = game.mt;
 
-        CalcCurrentPos();
+        pos = game.PosAtMove(moveNumber);
 
         if (moveNumber == game.ml.size()) {
             result = game.result;
@@ -312,6 +323,7 @@ public class COsGame {
         char c;
 
         osGame.posStart.board.initialize(osGame.mt.bt);
+        osGame.invalidatePositions(0);
         osGame.pis[0] = osGame.pis[1] = LOGISTELLO;
         osGame.pos = new COsPosition(osGame.posStart);
         osGame.sPlace = "logbook";
@@ -498,6 +510,7 @@ public class COsGame {
         pis[0] = pis[1] = OsPlayerInfo.UNKNOWN;
         pos.Clear();
         posStart.Clear();
+        invalidatePositions(0);
         sDateTime = "";
         sPlace = "";
         mt = OsMatchType.STANDARD;
@@ -507,6 +520,7 @@ public class COsGame {
         if (ml.size() >= 2) {
             ml.remove(ml.size() - 1);
             ml.remove(ml.size() - 1);
+            invalidatePositions(ml.size());
             CalcCurrentPos();
         }
     }
@@ -516,6 +530,7 @@ public class COsGame {
         for (int i = 0; i < nUndo; i++) {
             ml.remove(ml.size() - 1);
         }
+        invalidatePositions(ml.size());
         CalcCurrentPos();
     }
 
@@ -531,6 +546,7 @@ public class COsGame {
         posStart.board.initialize(bt);
         posStart.setBlackClock(blackClock);
         posStart.setWhiteClock(whiteClock);
+        invalidatePositions(0);
         CalcCurrentPos();
     }
 
@@ -548,6 +564,7 @@ public class COsGame {
         posStart.board.setText(sBoardText, fBlackMove);
         pos = new COsPosition(posStart);
         ml.clear();
+        invalidatePositions(0);
     }
 
     public void setToDefaultStartPosition(OsClock blackClock, OsClock whiteClock) {
@@ -574,7 +591,7 @@ public class COsGame {
     }
 
     public void CalcCurrentPos() {
-        pos = calcPosition(ml);
+        pos = PosAtMove(ml.size());
     }
 
     COsPosition calcPosition(List<OsMoveListItem> moveList) {
@@ -612,7 +629,33 @@ public class COsGame {
         if (iMove > ml.size()) {
             iMove = ml.size();
         }
-        return calcPosition(ml.subList(0, iMove));
+        if (positions.isEmpty()) {
+            positions.add(new COsPosition(posStart));
+        }
+        while (positions.size() <= iMove) {
+            final int nMoves = positions.size() - 1;
+            final COsPosition position = new COsPosition(positions.get(nMoves));
+            if (nMoves == 0 && mt.isKomi()) {
+                position.UpdateKomiSet(mlisKomi);
+            }
+            position.append(ml.get(nMoves));
+            positions.add(position);
+        }
+        return new COsPosition(positions.get(iMove));
+    }
+
+    /**
+     * Discard cached positions after the given number of moves.
+     * <p/>
+     * This must be called whenever the move list is changed other than by appending moves, and with nMoves = 0
+     * whenever the start position, match type or komi moves change.
+     *
+     * @param nMoves number of moves whose positions are still valid.
+     */
+    private void invalidatePositions(int nMoves) {
+        while (positions.size() > nMoves) {
+            positions.remove(positions.size() - 1);
+        }
     }
 
 
@@ -669,6 +712,7 @@ public class COsGame {
             OsMove mv = new OsMove(in, bt);
             ml.add(new OsMoveListItem(mv));
         }
+        invalidatePositions(0);
         pos = calcPositionWithPossiblePassInsertion(ml, true);
     }
 
@@ -723,6 +767,7 @@ public class COsGame {
             ml.set(i, mli.reflect(iReflection));
         }
 
+        invalidatePositions(0);
         pos = PosAtMove(10000);
     }
 
@@ -731,6 +776,7 @@ public class COsGame {
      */
     public void stripEvalsAndTimes() {
         ml.stripEvalsAndTimes();
+        invalidatePositions(0);
         CalcCurrentPos();
     }
 
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.gdk;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tokenizer for the text of a single GGF game, working directly on bytes.
+ * <p/>
+ * The parser steps through the tags of a game ("PB[name]", "B[f5/1.00/2.0]", ...) and reports the location of
+ * each tag's value. Values are examined in place; a String is only created if {@link #value()} is called.
+ * This makes it much faster than {@link COsGame#COsGame(com.welty.othello.c.CReader)} when importing large
+ * numbers of games for which only a few fields are needed.
+ * <p/>
+ * The text must use a single-byte encoding. A parser can be reused for any number of games.
+ */
+public class GgfParser {
+    private byte[] data;
+    private int pos;
+    private int end;
+
+    private int tagStart;
+    private int tagEnd;
+    private int valueStart;
+    private int valueEnd;
+
+    /**
+     * Start parsing a game.
+     *
+     * @param data  bytes containing the game
+     * @param start location of the game's opening "(;". Whitespace may precede it.
+     * @param end   location after the end of the game
+     * @throws IllegalArgumentException if the game doesn't start with "(;"
+     */
+    public void reset(byte[] data, int start, int end) {
+        this.data = data;
+        this.end = end;
+        pos = start;
+        skipWhitespace();
+        if (pos + 1 >= end || data[pos] != '(' || data[pos + 1] != ';') {
+            throw new IllegalArgumentException("Corrupt GGF game: missing \"(;\"");
+        }
+        pos += 2;
+        tagStart = tagEnd = valueStart = valueEnd = pos;
+    }
+
+    /**
+     * Move to the next tag.
+     *
+     * @return true if there is a next tag, false if the parser has reached the ";)" that ends the game.
+     * @throws IllegalArgumentException if the game is not properly formed
+     */
+    public boolean next() {
+        skipWhitespace();
+        if (pos < end && data[pos] == ';') {
+            if (pos + 1 < end && data[pos + 1] == ')') {
+                pos += 2;
+                return false;
+            }
+            throw new IllegalArgumentException("Corrupt GGF game: missing \";)\"");
+        }
+        tagStart = pos;
+        while (pos < end && data[pos] != '[') {
+            pos++;
+        }
+        tagEnd = pos;
+        valueStart = pos + 1;
+        while (pos < end && data[pos] != ']') {
+            pos++;
+        }
+        if (pos >= end || tagEnd == tagStart) {
+            throw new IllegalArgumentException("Corrupt GGF game: bad tag");
+        }
+        valueEnd = pos;
+        pos++;
+        return true;
+    }
+
+    /**
+     * @return true if the current tag is the one-character tag c, for example 'B'
+     */
+    public boolean tagIs(char c) {
+        return tagEnd - tagStart == 1 && data[tagStart] == c;
+    }
+
+    /**
+     * @return true if the current tag is the two-character tag c1 c2, for example 'P', 'B'
+     */
+    public boolean tagIs(char c1, char c2) {
+        return tagEnd - tagStart == 2 && data[tagStart] == c1 && data[tagStart + 1] == c2;
+    }
+
+    /**
+     * @return true if the current tag is a move by either player ("B" or "W")
+     */
+    public boolean isMoveTag() {
+        return tagIs('B') || tagIs('W');
+    }
+
+    /**
+     * @return the value of the current tag
+     */
+    public String value() {
+        return new String(data, valueStart, valueEnd - valueStart, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * @return true if the value of the current tag is exactly s
+     */
+    public boolean valueEquals(String s) {
+        if (valueEnd - valueStart != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (data[valueStart + i] != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the value of the current tag, with whitespace removed, is exactly s
+     */
+    public boolean valueEqualsIgnoringWhitespace(String s) {
+        int j = 0;
+        for (int i = valueStart; i < valueEnd; i++) {
+            final byte b = data[i];
+            if (!isWhitespace(b)) {
+                if (j == s.length() || b != s.charAt(j)) {
+                    return false;
+                }
+                j++;
+            }
+        }
+        return j == s.length();
+    }
+
+    /**
+     * Read an integer at the start of the current tag's value, for instance 12 from "+12.00:r".
+     *
+     * @param defaultValue value to return if the tag value does not start with an integer
+     * @return the integer, or defaultValue
+     */
+    public int valueAsInt(int defaultValue) {
+        int i = valueStart;
+        while (i < valueEnd && isWhitespace(data[i])) {
+            i++;
+        }
+        boolean negative = false;
+        if (i < valueEnd && (data[i] == '+' || data[i] == '-')) {
+            negative = data[i] == '-';
+            i++;
+        }
+        if (i == valueEnd || !isDigit(data[i])) {
+            return defaultValue;
+        }
+        long n = 0;
+        for (; i < valueEnd && isDigit(data[i]); i++) {
+            n = n * 10 + data[i] - '0';
+            if (n > Integer.MAX_VALUE) {
+                return defaultValue;
+            }
+        }
+        return (int) (negative ? -n : n);
+    }
+
+    /**
+     * Get the square of the move in the current tag's value, on an 8x8 board.
+     * <p/>
+     * Evals and times following the move ("f5/1.00/2.0") are ignored.
+     *
+     * @return the square, row*8 + col, or -1 if the move is a pass ("PA")
+     * @throws IllegalArgumentException if the value does not start with a move
+     */
+    public int moveSquare() {
+        if (valueEnd - valueStart >= 2) {
+            final int col = Character.toUpperCase(data[valueStart]) - 'A';
+            final int c2 = data[valueStart + 1];
+            if (col == 'P' - 'A' && Character.toUpperCase(c2) == 'A') {
+                return -1;
+            }
+            final int row = c2 - '1';
+            if (col >= 0 && col < 8 && row >= 0 && row < 8) {
+                return row * 8 + col;
+            }
+        }
+        throw new IllegalArgumentException("Illegal move : " + value());
+    }
+
+    /**
+     * @return location in the data after the last tag or end of game that was parsed
+     */
+    public int position() {
+        return pos;
+    }
+
+    private void skipWhitespace() {
+        while (pos < end && isWhitespace(data[pos])) {
+            pos++;
+        }
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+}
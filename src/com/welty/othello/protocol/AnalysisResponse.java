@@ -59,4 +59,15 @@ public class AnalysisResponse implements NBoardResponse {
         final double eval = in.readDoubleNoExponent();
         return new AnalysisResponse(pong, moveNumber, eval);
     }
+
+    /**
+     * Construct an AnalysisResponse from an NBoard protocol remainder, decoding it in place.
+     *
+     * @see #of(int, CReader)
+     */
+    static AnalysisResponse of(int pong, NBoardLine in) throws EOFException {
+        final int moveNumber = in.readInt();
+        final double eval = in.readDoubleNoExponent();
+        return new AnalysisResponse(pong, moveNumber, eval);
+    }
 }
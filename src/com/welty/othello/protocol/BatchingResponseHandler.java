@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.protocol;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A ResponseHandler that passes responses to another ResponseHandler on a dispatch thread of its own.
+ * <p/>
+ * {@link #handle(NBoardResponse)} never blocks, so the thread reading the engine's output is never held up by
+ * the consumer of the responses. The dispatch thread takes all waiting responses at once, up to {@link #MAX_BATCH},
+ * and passes them on in order. When an engine sends thousands of search or nodestats lines per second this
+ * costs one wakeup per batch rather than one per response.
+ * <p/>
+ * The delegate is only ever called from the dispatch thread, in the order that responses were received. If the
+ * delegate throws a RuntimeException, the exception is printed and the remaining responses are still passed on.
+ */
+public class BatchingResponseHandler implements ResponseHandler {
+    static final int MAX_BATCH = 256;
+
+    /**
+     * Put on the queue by {@link #shutdown()} to stop the dispatch thread.
+     */
+    private static final NBoardResponse SHUTDOWN = new EngineTerminatedResponse();
+
+    private final ResponseHandler delegate;
+    private final BlockingQueue<NBoardResponse> queue = new LinkedBlockingQueue<>();
+    private final Thread dispatcher;
+
+    /**
+     * Create the handler and start its dispatch thread
+     *
+     * @param delegate handler that receives the responses
+     * @param name     name of the engine, used to name the dispatch thread
+     */
+    public BatchingResponseHandler(ResponseHandler delegate, String name) {
+        this.delegate = delegate;
+        dispatcher = new Thread(new Runnable() {
+            @Override public void run() {
+                dispatch();
+            }
+        }, name + " response dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    @Override public void handle(NBoardResponse response) {
+        queue.add(response);
+    }
+
+    /**
+     * Stop the dispatch thread once all responses received so far have been passed on.
+     */
+    public void shutdown() {
+        queue.add(SHUTDOWN);
+    }
+
+    /**
+     * Wait for the dispatch thread to stop, after {@link #shutdown()}.
+     */
+    public void awaitTermination() throws InterruptedException {
+        dispatcher.join();
+    }
+
+    private void dispatch() {
+        final List<NBoardResponse> batch = new ArrayList<>(MAX_BATCH);
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH - 1);
+                for (NBoardResponse response : batch) {
+                    if (response == SHUTDOWN) {
+                        return;
+                    }
+                    try {
+                        delegate.handle(response);
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                    }
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // thread stops
+        }
+    }
+}
@@ -37,10 +37,48 @@ public class Depth {
     }
 
     public Depth(int depth) {
+        this(depth, "");
+    }
+
+    private Depth(int depth, String suffix) {
         this.depth = depth;
-        this.suffix = "";
+        this.suffix = suffix;
+    }
+
+    /**
+     * Read a Depth from the next token of the line.
+     * <p/>
+     * Equivalent to {@code new Depth(in.readString())}, but the depth is decoded in place.
+     * The common suffixes do not create new Strings.
+     */
+    static Depth of(NBoardLine in) {
+        final int tokenEnd = in.tokenEnd();
+        final int tokenStart = in.position();
+        if (tokenStart == tokenEnd) {
+            throw new IllegalArgumentException("Depth must start with an integer, had ");
+        }
+        final int depth;
+        try {
+            depth = in.readInt();
+        } catch (EOFException e) {
+            throw new IllegalStateException("Can't happen - token is not empty", e);
+        }
+        final int suffixStart = in.position();
+        in.setPosition(tokenEnd);
+        return new Depth(depth, suffix(in, suffixStart, tokenEnd));
     }
 
+    private static String suffix(NBoardLine in, int start, int end) {
+        for (String common : COMMON_SUFFIXES) {
+            if (in.regionEquals(start, end, common)) {
+                return common;
+            }
+        }
+        return in.substring(start, end);
+    }
+
+    private static final String[] COMMON_SUFFIXES = {"", "%", "%W"};
+
     /**
      * @return true if this depth represents a proven exact solve
      */
@@ -0,0 +1,395 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.protocol;
+
+import com.welty.othello.gdk.COsGame;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of NBoard engine processes that searches positions concurrently.
+ * <p/>
+ * Positions are submitted to the pool and queued until an engine is idle. Each engine's output is read by a
+ * {@link ResponseReader} and parsed by its own {@link ResponseParser}; when an engine's move arrives the engine
+ * immediately takes the next queued position, so no thread waits on an engine and every engine is kept busy
+ * while there is work.
+ * <p/>
+ * Each engine's responses are handled on its own {@link BatchingResponseHandler} dispatch thread, so the reader
+ * thread never blocks on the pool lock or on writing the next position to a (possibly different) engine.
+ * <p/>
+ * Each request is preceded by "ping n"; the engine's responses carry the latest pong, so responses
+ * from an earlier request (for instance one that was cancelled) are recognized and ignored.
+ * <p/>
+ * Engines such as Ntest write search progress to stderr. Each engine's stderr is read and discarded so that the
+ * engine never blocks on a full pipe; redirect the error stream in the ProcessBuilder to keep it.
+ * <p/>
+ * If an engine terminates, its current position is given to another engine. If all engines have terminated,
+ * pending requests fail with an {@link ExecutionException}.
+ * <p/>
+ * This class is thread-safe.
+ */
+public class EnginePool implements AutoCloseable {
+    private final List<Engine> engines = new ArrayList<>();
+    /**
+     * Requests that have not yet been sent to an engine. Guarded by this.
+     */
+    private final ArrayDeque<Request> pending = new ArrayDeque<>();
+    /**
+     * Engines that are waiting for a request. Guarded by this.
+     */
+    private final ArrayDeque<Engine> idle = new ArrayDeque<>();
+    /**
+     * Number of engines that have not terminated. Guarded by this.
+     */
+    private int nAlive;
+    private boolean closed;
+
+    private final AtomicLong nNodes = new AtomicLong();
+    private final long tStart = System.nanoTime();
+
+    /**
+     * Launch the engines.
+     *
+     * @param command  command that starts an engine. It is started nEngines times.
+     * @param nEngines number of engines
+     * @param depth    search depth sent to each engine with "set depth"
+     * @throws IOException if an engine can't be started. Engines that were already started are shut down.
+     */
+    public EnginePool(ProcessBuilder command, int nEngines, int depth) throws IOException {
+        if (nEngines < 1) {
+            throw new IllegalArgumentException("nEngines must be at least 1, was " + nEngines);
+        }
+        try {
+            for (int i = 0; i < nEngines; i++) {
+                final Engine engine = new Engine(command.start(), "engine " + i, depth);
+                engines.add(engine);
+                synchronized (this) {
+                    nAlive++;
+                    idle.add(engine);
+                }
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        for (Engine engine : engines) {
+            engine.reader.start();
+            engine.startErrorDrain();
+        }
+    }
+
+    /**
+     * Queue a position for search.
+     * <p/>
+     * The engine searches the final position of the game and plays a move, which is the result of the Future.
+     * The mover must have a legal move or a pass; completed games can't be searched.
+     *
+     * @param game game to search
+     * @return the engine's move, with its eval and time if the engine sent them
+     * @throws IllegalStateException if the pool has been closed or all engines have terminated
+     */
+    public Future<MoveResponse> submit(@NotNull COsGame game) {
+        final Request request = new Request(game.toString());
+        synchronized (this) {
+            if (closed || nAlive == 0) {
+                throw new IllegalStateException(closed ? "Engine pool is closed" : "All engines have terminated");
+            }
+            pending.add(request);
+        }
+        dispatch();
+        return request;
+    }
+
+    /**
+     * @return number of engines that have not terminated
+     */
+    public synchronized int nEngines() {
+        return nAlive;
+    }
+
+    /**
+     * @return number of requests that are waiting for an idle engine
+     */
+    public synchronized int nPending() {
+        return pending.size();
+    }
+
+    /**
+     * @return total nodes searched by all engines, as reported by their "nodestats" responses
+     */
+    public long nNodes() {
+        return nNodes.get();
+    }
+
+    /**
+     * @return aggregate search speed of all engines since the pool was created
+     */
+    public double nodesPerSecond() {
+        final double seconds = (System.nanoTime() - tStart) * 1e-9;
+        return nNodes.get() / seconds;
+    }
+
+    /**
+     * Tell the engines to quit and shut them down.
+     * <p/>
+     * Requests that have not completed fail with an {@link ExecutionException}.
+     */
+    @Override public void close() {
+        final List<Request> failed = new ArrayList<>();
+        synchronized (this) {
+            closed = true;
+            failed.addAll(pending);
+            pending.clear();
+            idle.clear();
+            for (Engine engine : engines) {
+                if (engine.current != null) {
+                    failed.add(engine.current);
+                    engine.current = null;
+                }
+            }
+        }
+        for (Request request : failed) {
+            request.fail(new IllegalStateException("Engine pool closed"));
+        }
+        for (Engine engine : engines) {
+            engine.quit();
+        }
+    }
+
+    /**
+     * Send pending requests to idle engines.
+     * <p/>
+     * Requests are assigned while holding the pool lock but sent after it is released, so that a slow engine
+     * does not block the rest of the pool.
+     */
+    private void dispatch() {
+        while (true) {
+            final Engine engine;
+            final Request request;
+            final int ping;
+            synchronized (this) {
+                if (idle.isEmpty() || pending.isEmpty()) {
+                    return;
+                }
+                engine = idle.poll();
+                request = pending.poll();
+                engine.current = request;
+                ping = ++engine.ping;
+            }
+            engine.send(ping, request);
+        }
+    }
+
+    /**
+     * A single engine process and its request state.
+     */
+    private class Engine implements ResponseHandler {
+        private final Process process;
+        private final PrintWriter out;
+        private final ResponseReader reader;
+        private final BatchingResponseHandler handler;
+        private final String name;
+
+        // Guarded by EnginePool.this
+        private Request current;
+        private int ping;
+        private boolean terminated;
+
+        Engine(Process process, String name, int depth) {
+            this.process = process;
+            this.name = name;
+            out = new PrintWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+            handler = new BatchingResponseHandler(this, name);
+            reader = new ResponseReader(process.getInputStream(), new ResponseParser(handler, name));
+            synchronized (out) {
+                out.println("nboard 2");
+                out.println("set depth " + depth);
+                out.flush();
+            }
+        }
+
+        /**
+         * Read and discard the engine's stderr on a daemon thread, until it ends.
+         */
+        void startErrorDrain() {
+            final InputStream err = process.getErrorStream();
+            final Thread thread = new Thread(new Runnable() {
+                @Override public void run() {
+                    final byte[] buffer = new byte[8192];
+                    try {
+                        while (err.read(buffer) >= 0) {
+                            // discard
+                        }
+                    } catch (IOException e) {
+                        // engine's stderr is closed
+                    }
+                }
+            }, name + " stderr");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void send(int ping, Request request) {
+            synchronized (out) {
+                out.println("ping " + ping);
+                out.println("set game " + request.ggf);
+                out.println("go");
+                out.flush();
+            }
+        }
+
+        void quit() {
+            synchronized (out) {
+                out.println("quit");
+                out.close();
+            }
+            process.destroy();
+            handler.shutdown();
+        }
+
+        @Override public void handle(NBoardResponse response) {
+            if (response instanceof MoveResponse) {
+                final MoveResponse move = (MoveResponse) response;
+                final Request request;
+                synchronized (EnginePool.this) {
+                    if (current == null || move.pong != ping) {
+                        // response to an earlier request
+                        return;
+                    }
+                    request = current;
+                    current = null;
+                    if (!closed) {
+                        idle.add(this);
+                    }
+                }
+                request.complete(move);
+                dispatch();
+            } else if (response instanceof NodeStatsResponse) {
+                nNodes.addAndGet(((NodeStatsResponse) response).nNodes);
+            } else if (response instanceof EngineTerminatedResponse) {
+                terminated();
+                handler.shutdown();
+            }
+        }
+
+        /**
+         * Give this engine's request to another engine, or fail all requests if no engines are left.
+         */
+        private void terminated() {
+            final List<Request> failed = new ArrayList<>();
+            synchronized (EnginePool.this) {
+                if (terminated) {
+                    return;
+                }
+                terminated = true;
+                nAlive--;
+                idle.remove(this);
+                if (current != null) {
+                    pending.addFirst(current);
+                    current = null;
+                }
+                if (nAlive == 0) {
+                    failed.addAll(pending);
+                    pending.clear();
+                }
+            }
+            for (Request request : failed) {
+                request.fail(new IllegalStateException("All engines have terminated"));
+            }
+            dispatch();
+        }
+    }
+
+    /**
+     * A position to be searched, and the engine's move once it arrives.
+     */
+    private class Request implements Future<MoveResponse> {
+        private final String ggf;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile MoveResponse result;
+        private volatile Throwable failure;
+        private volatile boolean cancelled;
+
+        Request(String ggf) {
+            this.ggf = ggf;
+        }
+
+        void complete(MoveResponse move) {
+            result = move;
+            done.countDown();
+        }
+
+        void fail(Throwable t) {
+            failure = t;
+            done.countDown();
+        }
+
+        /**
+         * Only requests that have not been sent to an engine can be cancelled.
+         */
+        @Override public boolean cancel(boolean mayInterruptIfRunning) {
+            synchronized (EnginePool.this) {
+                if (!pending.remove(this)) {
+                    return false;
+                }
+            }
+            cancelled = true;
+            done.countDown();
+            return true;
+        }
+
+        @Override public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override public boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        @Override public MoveResponse get() throws InterruptedException, ExecutionException {
+            done.await();
+            return getResult();
+        }
+
+        @Override public MoveResponse get(long timeout, @NotNull TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            if (!done.await(timeout, unit)) {
+                throw new TimeoutException();
+            }
+            return getResult();
+        }
+
+        private MoveResponse getResult() throws ExecutionException {
+            if (cancelled) {
+                throw new CancellationException();
+            }
+            if (failure != null) {
+                throw new ExecutionException(failure);
+            }
+            return result;
+        }
+    }
+}
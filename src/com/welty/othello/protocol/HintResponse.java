@@ -15,7 +15,6 @@
 
 package com.welty.othello.protocol;
 
-import com.welty.othello.c.CReader;
 import com.welty.othello.gdk.OsMove;
 import lombok.EqualsAndHashCode;
 import org.jetbrains.annotations.NotNull;
@@ -51,14 +50,14 @@ public class HintResponse implements NBoardResponse {
      * Create a hint response from the rest of the command after the initial "search" or "book"
      *
      * @param isBook true if this is a "book" response, false if it's a "search" response
-     * @param in     CReader containing the rest of the line
+     * @param in     line, positioned after the command
      */
-    @NotNull static HintResponse of(int pong, boolean isBook, CReader in) throws EOFException {
+    @NotNull static HintResponse of(int pong, boolean isBook, NBoardLine in) throws EOFException {
         final String pv = in.readString();
-        final Value eval = new Value(in.readString());
+        final Value eval = Value.of(in);
         final int nGames = in.readInt();
-        final Depth depth = new Depth(in.readString());
-        String freeformText = in.readLineNoThrow();
+        final Depth depth = Depth.of(in);
+        String freeformText = in.readRest();
         return new HintResponse(pong, isBook, pv, eval, nGames, depth, freeformText);
     }
 
@@ -0,0 +1,323 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.protocol;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.EOFException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the fields of a line of NBoard protocol text, in place in a byte array.
+ * <p/>
+ * The read methods behave like the corresponding {@link com.welty.othello.c.CReader} methods, but numbers are
+ * decoded directly from the bytes and Strings are only created when a String is requested.
+ * A single NBoardLine can be reused for any number of lines. Text is UTF-8.
+ */
+class NBoardLine {
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private byte[] data;
+    private int start;
+    private int pos;
+    private int end;
+
+    /**
+     * Start reading a new line
+     *
+     * @param data  bytes containing the line
+     * @param start location of the start of the line
+     * @param end   location after the end of the line. The line terminator should not be included.
+     */
+    void reset(byte[] data, int start, int end) {
+        this.data = data;
+        this.start = start;
+        this.pos = start;
+        this.end = end;
+    }
+
+    /**
+     * @return the entire line
+     */
+    String line() {
+        return new String(data, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read the next whitespace-delimited token, if it is one of the given strings.
+     * <p/>
+     * The position in the line is moved past the token in either case.
+     *
+     * @param tokens candidate tokens
+     * @return the matching element of tokens, "" if the line has no more tokens, or null if the token matches none
+     * of the candidates
+     */
+    @Nullable String readToken(String... tokens) {
+        skipWhitespace();
+        final int tokenStart = pos;
+        skipToken();
+        if (pos == tokenStart) {
+            return "";
+        }
+        for (String token : tokens) {
+            if (regionEquals(tokenStart, pos, token)) {
+                return token;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Skip whitespace, then read the next string of non-whitespace characters.
+     *
+     * @return the string, or "" if the line has no more tokens
+     */
+    String readString() {
+        skipWhitespace();
+        final int tokenStart = pos;
+        skipToken();
+        return pos == tokenStart ? "" : new String(data, tokenStart, pos - tokenStart, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the rest of the line, including any leading whitespace
+     */
+    String readRest() {
+        final int restStart = pos;
+        pos = end;
+        return restStart == end ? "" : new String(data, restStart, end - restStart, StandardCharsets.UTF_8);
+    }
+
+    void skipWhitespace() {
+        while (pos < end && isWhitespace(data[pos])) {
+            pos++;
+        }
+    }
+
+    private void skipToken() {
+        while (pos < end && !isWhitespace(data[pos])) {
+            pos++;
+        }
+    }
+
+    /**
+     * Skip whitespace, then read [+-]?[0-9]+ as an int.
+     *
+     * @throws EOFException             if there are no more tokens on the line
+     * @throws IllegalArgumentException if the next token does not start with an integer
+     */
+    int readInt() throws EOFException {
+        final long value = readLong();
+        if (value != (int) value) {
+            throw new NumberFormatException("Integer out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Skip whitespace, then read [+-]?[0-9]+ as a long.
+     *
+     * @throws EOFException             if there are no more tokens on the line
+     * @throws IllegalArgumentException if the next token does not start with an integer
+     */
+    long readLong() throws EOFException {
+        skipWhitespace();
+        if (pos == end) {
+            throw new EOFException();
+        }
+        final boolean negative = data[pos] == '-';
+        if (negative || data[pos] == '+') {
+            pos++;
+        } else if (!isDigit(data[pos])) {
+            throw new IllegalArgumentException("expected +- or digit, had " + (char) data[pos]);
+        }
+        final int digitStart = pos;
+        long value = 0;
+        while (pos < end && isDigit(data[pos])) {
+            if (value > (Long.MAX_VALUE - 9) / 10) {
+                throw new NumberFormatException("Number too large: " + new String(data, digitStart, pos - digitStart + 1, StandardCharsets.UTF_8));
+            }
+            value = value * 10 + data[pos] - '0';
+            pos++;
+        }
+        if (pos == digitStart) {
+            throw new NumberFormatException("No digits after sign");
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Skip whitespace, then read a decimal number [+-]?[0-9]*(.[0-9]*)? with no exponent.
+     *
+     * @throws NumberFormatException if the next characters do not form a number
+     */
+    double readDoubleNoExponent() {
+        skipWhitespace();
+        final int numberStart = pos;
+        final double value = parseDecimal(end, false);
+        if (Double.isNaN(value)) {
+            return Double.parseDouble(new String(data, numberStart, pos - numberStart, StandardCharsets.UTF_8));
+        }
+        return value;
+    }
+
+    /**
+     * Skip whitespace, then read a decimal number with no exponent, as a float.
+     *
+     * @throws NumberFormatException if the next characters do not form a number
+     */
+    float readFloatNoExponent() {
+        return (float) readDoubleNoExponent();
+    }
+
+    /**
+     * Parse a float from the text between the current position and limit, as {@link Float#parseFloat(String)} would.
+     * The position is moved to limit.
+     *
+     * @throws NumberFormatException if the text is not a float
+     */
+    float parseFloat(int limit) {
+        final int numberStart = pos;
+        final double value = parseDecimal(limit, true);
+        if (pos != limit || Double.isNaN(value)) {
+            // Not a simple decimal (e.g. "NaN" or "1e5"), or too many digits to parse exactly here.
+            pos = limit;
+            return Float.parseFloat(new String(data, numberStart, limit - numberStart, StandardCharsets.UTF_8));
+        }
+        return (float) value;
+    }
+
+    /**
+     * Parse [+-]?[0-9]*(.[0-9]*)? starting at the current position, stopping at limit or the first character
+     * that can't be part of the number.
+     * <p/>
+     * The value is computed as mantissa / 10^k. This is correctly rounded when the mantissa and 10^k are both exact.
+     * If the result would not be exact, or there are no digits, the position is still moved past the number
+     * but NaN is returned so that the caller can fall back to the library parser.
+     *
+     * @param forFloat if true, the result will be rounded to float, so the mantissa and divisor must be exact floats
+     *                 to avoid double rounding.
+     */
+    private double parseDecimal(int limit, boolean forFloat) {
+        boolean negative = false;
+        if (pos < limit && (data[pos] == '+' || data[pos] == '-')) {
+            negative = data[pos] == '-';
+            pos++;
+        }
+        long mantissa = 0;
+        int nDigits = 0;
+        int nFractionDigits = 0;
+        boolean hasDecimal = false;
+        for (; pos < limit; pos++) {
+            final byte b = data[pos];
+            if (isDigit(b)) {
+                if (mantissa < (1L << 53) / 10) {
+                    mantissa = mantissa * 10 + b - '0';
+                } else {
+                    mantissa = Long.MAX_VALUE;
+                }
+                nDigits++;
+                if (hasDecimal) {
+                    nFractionDigits++;
+                }
+            } else if (b == '.' && !hasDecimal) {
+                hasDecimal = true;
+            } else {
+                break;
+            }
+        }
+        final long maxMantissa = forFloat ? 1L << 24 : 1L << 53;
+        final int maxPower = forFloat ? 10 : POWERS_OF_TEN.length - 1;
+        if (nDigits == 0 || mantissa > maxMantissa || nFractionDigits > maxPower) {
+            return Double.NaN;
+        }
+        final double value = forFloat ? (float) mantissa / (float) POWERS_OF_TEN[nFractionDigits]
+                : mantissa / POWERS_OF_TEN[nFractionDigits];
+        return negative ? -value : value;
+    }
+
+    /**
+     * @return location of the next occurrence of b at or after the current position and before limit,
+     * or limit if there is none
+     */
+    int indexOf(byte b, int limit) {
+        for (int i = pos; i < limit; i++) {
+            if (data[i] == b) {
+                return i;
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * Skip whitespace, then find the end of the next token.
+     *
+     * @return location after the end of the next token; equal to the position if there are no more tokens
+     */
+    int tokenEnd() {
+        skipWhitespace();
+        int i = pos;
+        while (i < end && !isWhitespace(data[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    int position() {
+        return pos;
+    }
+
+    void setPosition(int pos) {
+        this.pos = pos;
+    }
+
+    /**
+     * @return the text from start to end
+     */
+    String substring(int start, int end) {
+        return new String(data, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return true if the text from start to end is exactly s
+     */
+    boolean regionEquals(int start, int end, String s) {
+        if (end - start != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (data[start + i] != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    /**
+     * Same as {@link Character#isWhitespace(char)} for ASCII characters. Bytes of multi-byte UTF-8 characters
+     * are never whitespace.
+     */
+    private static boolean isWhitespace(byte b) {
+        return b >= 0 && Character.isWhitespace(b);
+    }
+}
@@ -48,6 +48,17 @@ public class NodeStatsResponse implements NBoardResponse {
         return new NodeStatsResponse(pong, nNodes, tElapsed);
     }
 
+    /**
+     * Construct a NodeStatsResponse from an NBoard protocol remainder, decoding it in place.
+     *
+     * @see #of(int, CReader)
+     */
+    static NBoardResponse of(int pong, NBoardLine in) throws EOFException {
+        final long nNodes = in.readLong();
+        final double tElapsed = in.readFloatNoExponent();
+        return new NodeStatsResponse(pong, nNodes, tElapsed);
+    }
+
     @Override public String toString() {
         return "(pong=" + pong + ") nodestats " + nNodes + " " + String.format("%.3f", tElapsed);
     }
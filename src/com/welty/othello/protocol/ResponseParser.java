@@ -15,11 +15,11 @@
 
 package com.welty.othello.protocol;
 
-import com.welty.othello.c.CReader;
 import com.welty.othello.gdk.OsMoveListItem;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.EOFException;
+import java.nio.charset.StandardCharsets;
 
 /**
  * The response parser turns NBoard protocol text strings into NBoardResponses and gives them to the responseHandler.
@@ -31,7 +31,15 @@ import java.io.EOFException;
  * a monitor, the function will not block or deadlock.
  */
 public class ResponseParser {
+    /**
+     * Commands understood by the parser
+     */
+    private static final String[] COMMANDS = {
+            "search", "nodestats", "analysis", "book", "pong", "status", "===", "set", "learned"
+    };
+
     private final ResponseHandler responseHandler;
+    private final NBoardLine line = new NBoardLine();
     private @NotNull String status;
     private @NotNull String name;
     private int pong;
@@ -54,8 +62,28 @@ public class ResponseParser {
      * @param msg message to parse
      */
     public synchronized void handle(@NotNull String msg) {
-        final CReader in = new CReader(msg);
-        final String command = in.readString();
+        final byte[] data = msg.getBytes(StandardCharsets.UTF_8);
+        handle(data, 0, data.length);
+    }
+
+    /**
+     * Parse an NBoard message and give it to the responseHandler.
+     * <p/>
+     * The message is decoded in place, so the caller can reuse the array as soon as this returns.
+     * Also updates the engine-controlled shared state (ping and status)
+     *
+     * @param data  UTF-8 bytes containing the message
+     * @param start location of the start of the message in data
+     * @param end   location after the end of the message, not including the line terminator
+     */
+    public synchronized void handle(byte[] data, int start, int end) {
+        final NBoardLine in = line;
+        in.reset(data, start, end);
+        final String command = in.readToken(COMMANDS);
+        if (command == null) {
+            // unknown commands are ignored
+            return;
+        }
         try {
             switch (command) {
                 case "===":
@@ -64,8 +92,7 @@ public class ResponseParser {
 
                     // Edax produces the mli with spaces between components rather than slashes.
                     // Translate to normal form if there are spaces.
-                    final String mliText = in.readLineNoThrow().trim().replaceAll("\\s+", "/");
-                    final OsMoveListItem mli = new OsMoveListItem(mliText);
+                    final OsMoveListItem mli = new OsMoveListItem(readSlashSeparated(in));
                     responseHandler.handle(new MoveResponse(pong, mli));
                     break;
                 case "pong":
@@ -73,8 +100,8 @@ public class ResponseParser {
                     responseHandler.handle(new PongResponse(pong));
                     break;
                 case "status":
-                    in.ignoreWhitespace();
-                    final String status = in.readLineNoThrow();
+                    in.skipWhitespace();
+                    final String status = in.readRest();
                     setStatus(status);
                     break;
                 case "set":
@@ -83,7 +110,7 @@ public class ResponseParser {
                         name = in.readString();
                         responseHandler.handle(new NameChangedResponse());
                     } else {
-                        responseHandler.handle(new ErrorResponse(msg, "Unknown variable: '" + variable + "'"));
+                        responseHandler.handle(new ErrorResponse(in.line(), "Unknown variable: '" + variable + "'"));
                     }
                     break;
                 case "book":
@@ -111,8 +138,23 @@ public class ResponseParser {
             }
         } catch (EOFException | IllegalArgumentException e) {
             final String comment = getComment(command, e);
-            responseHandler.handle(new ErrorResponse(msg, comment));
+            responseHandler.handle(new ErrorResponse(in.line(), comment));
+        }
+    }
+
+    /**
+     * @return the remaining tokens of the line, separated by '/'
+     */
+    private static String readSlashSeparated(NBoardLine in) {
+        final StringBuilder sb = new StringBuilder();
+        String token;
+        while (!(token = in.readString()).isEmpty()) {
+            if (sb.length() > 0) {
+                sb.append('/');
+            }
+            sb.append(token);
         }
+        return sb.toString();
     }
 
     private String getComment(String command, Exception e) {
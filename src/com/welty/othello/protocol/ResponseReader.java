@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.protocol;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Reads an engine's output and passes each line to a {@link ResponseParser}.
+ * <p/>
+ * Lines are split in a single reusable buffer and parsed in place, so reading creates no objects per line other
+ * than the responses themselves. When the engine's output ends, the parser is told that the engine has terminated.
+ * <p/>
+ * To keep the reader thread from waiting on the consumer of the responses, give the parser a
+ * {@link BatchingResponseHandler}.
+ */
+public class ResponseReader implements Runnable {
+    private final InputStream in;
+    private final ResponseParser parser;
+    private byte[] buffer = new byte[8192];
+
+    /**
+     * @param in     engine output, in UTF-8
+     * @param parser parser for the engine's responses
+     */
+    public ResponseReader(InputStream in, ResponseParser parser) {
+        this.in = in;
+        this.parser = parser;
+    }
+
+    /**
+     * Start reading on a new daemon thread.
+     *
+     * @return the thread
+     */
+    public Thread start() {
+        final Thread thread = new Thread(this, parser.getName() + " response reader");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Read lines until the engine's output ends.
+     */
+    @Override public void run() {
+        // buffer[0..length) has been read; lines before lineStart have been parsed.
+        int length = 0;
+        int lineStart = 0;
+        try {
+            int n;
+            while ((n = in.read(buffer, length, buffer.length - length)) >= 0) {
+                final int end = length + n;
+                for (int i = length; i < end; i++) {
+                    if (buffer[i] == '\n') {
+                        handleLine(lineStart, i);
+                        lineStart = i + 1;
+                    }
+                }
+                // move the partial line to the start of the buffer, growing it if the line fills the buffer.
+                length = end - lineStart;
+                System.arraycopy(buffer, lineStart, buffer, 0, length);
+                lineStart = 0;
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+            }
+            if (length > 0) {
+                handleLine(0, length);
+            }
+        } catch (IOException e) {
+            // engine's output is closed; treat as terminated.
+        }
+        parser.engineTerminated();
+    }
+
+    private void handleLine(int start, int end) {
+        if (end > start && buffer[end - 1] == '\r') {
+            end--;
+        }
+        parser.handle(buffer, start, end);
+    }
+}
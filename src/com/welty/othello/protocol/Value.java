@@ -61,6 +61,38 @@ public final class Value {
         validate();
     }
 
+    /**
+     * Read a Value in the text format used by the NBoard protocol, {decimal} or {decimal,decimal}.
+     * <p/>
+     * Equivalent to {@code new Value(in.readString())}, but the value is decoded in place.
+     */
+    static Value of(NBoardLine in) {
+        final int tokenEnd = in.tokenEnd();
+        final int tokenStart = in.position();
+        // like String.split(), ignore trailing commas
+        int valueEnd = tokenEnd;
+        while (valueEnd > in.position() && in.regionEquals(valueEnd - 1, valueEnd, ",")) {
+            valueEnd--;
+        }
+        if (valueEnd == in.position()) {
+            throw new NumberFormatException(tokenEnd == valueEnd ? "empty String" : "Value has no components");
+        }
+        final int comma = in.indexOf((byte) ',', valueEnd);
+        final float drawSeekingValue = in.parseFloat(comma);
+        final float drawAvoidingValue;
+        if (comma == valueEnd) {
+            drawAvoidingValue = drawSeekingValue;
+        } else {
+            in.setPosition(comma + 1);
+            if (in.indexOf((byte) ',', valueEnd) != valueEnd) {
+                throw new IllegalArgumentException("Value must have no more than 2 components: " + in.substring(tokenStart, tokenEnd));
+            }
+            drawAvoidingValue = in.parseFloat(valueEnd);
+        }
+        in.setPosition(tokenEnd);
+        return new Value(drawSeekingValue, drawAvoidingValue);
+    }
+
     private void validate() {
         if (!Float.isNaN(drawAvoidingValue)) {
             Require.leq(drawAvoidingValue, "draw seeking value", drawSeekingValue, "draw avoiding value");
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.thor;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress tracker that can be incremented from any thread.
+ * <p/>
+ * It displays nothing itself; the thread that owns a display tracker calls {@link #forwardTo} to pass on progress.
+ */
+class CountingProgressTracker implements IndeterminateProgressTracker {
+    private final AtomicLong count = new AtomicLong();
+    private long nForwarded;
+
+    @Override public void increment() {
+        count.incrementAndGet();
+    }
+
+    @Override public void update() {
+    }
+
+    @Override public void close() {
+    }
+
+    /**
+     * Increment the tracker by the progress made since the last call to forwardTo, then update it.
+     * <p/>
+     * This must always be called from the same thread.
+     */
+    void forwardTo(IndeterminateProgressTracker tracker) {
+        final long n = count.get();
+        for (; nForwarded < n; nForwarded++) {
+            tracker.increment();
+        }
+        tracker.update();
+    }
+}
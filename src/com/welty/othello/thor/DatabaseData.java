@@ -16,14 +16,21 @@
 package com.welty.othello.thor;
 
 import com.orbanova.common.misc.ListenerManager;
+import com.orbanova.common.misc.Logger;
+import com.orbanova.common.misc.OperatingSystem;
 import com.welty.othello.c.CReader;
 import com.welty.othello.gdk.*;
 import gnu.trove.list.array.TIntArrayList;
 
 import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
+import java.util.concurrent.*;
 
 import static com.welty.othello.core.Utils.Col;
 import static com.welty.othello.core.Utils.Row;
@@ -34,10 +41,12 @@ import static com.welty.othello.thor.ThorOpeningMap.OpeningName;
  * Database game storage.
  */
 public class DatabaseData extends ListenerManager<DatabaseData.Listener> {
+    private static final Logger log = Logger.logger(DatabaseData.class);
+
     /**
      * Thor games followed by converted GGF games
      */
-    private ArrayList<ThorGameInternal> m_tgis = new ArrayList<>();
+    private ThorGameStore m_tgis = new ThorGameStore();
     /**
      * Player names for Thor database games
      */
@@ -57,6 +66,32 @@ public class DatabaseData extends ListenerManager<DatabaseData.Listener> {
      */
     private final ArrayList<GgfGameText> m_ggfGames = new ArrayList<>();
 
+    /**
+     * Index of positions in m_tgis, built on the first search after the games change. null if not yet built.
+     */
+    private ThorPositionIndex m_positionIndex;
+
+    /**
+     * Summaries of recently viewed positions in m_tgis
+     */
+    private final ThorSummaryCache m_summaryCache = new ThorSummaryCache(SUMMARY_CACHE_SIZE);
+
+    /**
+     * Number of positions in m_summaryCache. The GUI typically views positions along a few games, so this
+     * holds every position of many games.
+     */
+    private static final int SUMMARY_CACHE_SIZE = 4096;
+
+    /**
+     * If false, searches scan the games instead of building a position index.
+     */
+    private boolean m_useIndex = true;
+
+    /**
+     * Pool used to scan games in parallel, or null to scan on the calling thread.
+     */
+    private ForkJoinPool m_searchPool;
+
     /**
      * @return true if the file ends with ".wtb", with any capitalization accepted
      */
@@ -93,17 +128,24 @@ public class DatabaseData extends ListenerManager<DatabaseData.Listener> {
      * Remove all games from this Model
      */
     public void clearGames() {
-        m_ggfGames.clear();
+        clearGgfGames();
         m_tgis.clear();
         // Reclaim memory
         m_ggfGames.trimToSize();
-        m_tgis.trimToSize();
+        m_positionIndex = null;
+        m_summaryCache.clear();
 
         fireDatabaseChanged();
     }
 
-    String getGgfText(int iGame) {
-        return m_ggfGames.get(iGame - m_nThorGames).getText();
+    /**
+     * Remove all GGF games and close the files they were loaded from.
+     */
+    private void clearGgfGames() {
+        for (GgfGameText game : m_ggfGames) {
+            game.closeFile();
+        }
+        m_ggfGames.clear();
     }
 
     /**
@@ -112,26 +154,24 @@ public class DatabaseData extends ListenerManager<DatabaseData.Listener> {
     public String GameItemText(int item, int field) {
         int n;
 
-        final ThorGameInternal game = m_tgis.get(item);
-
         if (item < m_nThorGames) {
             // Thor game
 
             switch (field) {
                 case 0:
-                    return playerFromPlayerNumber(game.iBlackPlayer);
+                    return playerFromPlayerNumber(m_tgis.iBlackPlayer(item));
                 case 1:
-                    return playerFromPlayerNumber(game.iWhitePlayer);
+                    return playerFromPlayerNumber(m_tgis.iWhitePlayer(item));
                 case 2:
-                    n = game.year;
+                    n = m_tgis.year(item);
                     break;
                 case 3:
-                    return tournamentFromTournamentNumber(game.iTournament);
+                    return tournamentFromTournamentNumber(m_tgis.iTournament(item));
                 case 4:
-                    n = game.nBlackDiscs * 2 - 64;
+                    n = m_tgis.nBlackDiscs(item) * 2 - 64;
                     break;
                 case 5:
-                    return OpeningName(game.openingCode);
+                    return OpeningName(m_tgis.openingCode(item));
                 default:
                     return "";
             }
@@ -144,15 +184,15 @@ public class DatabaseData extends ListenerManager<DatabaseData.Listener> {
                 case 1:
                     return text.PW();
                 case 2:
-                    n = game.year;
+                    n = m_tgis.year(item);
                     break;
                 case 3:
                     return text.PC();
                 case 4:
-                    n = game.nBlackDiscs * 2 - 64;
+                    n = m_tgis.nBlackDiscs(item) * 2 - 64;
                     break;
                 case 5:
-                    return OpeningName(game.openingCode);
+                    return OpeningName(m_tgis.openingCode(item));
                 default:
                     return "";
             }
@@ -165,7 +205,7 @@ public class DatabaseData extends ListenerManager<DatabaseData.Listener> {
      * @return result of the game, #black discs - #white discs, for Thor games only
      */
     int GameResult(int iGame) {
-        return m_tgis.get(iGame).nBlackDiscs * 2 - 64;
+        return m_tgis.nBlackDiscs(iGame) * 2 - 64;
     }
 
     int NPlayers() {
@@ -184,48 +224,105 @@ public class DatabaseData extends ListenerManager<DatabaseData.Listener> {
     }
 
     /**
+     * If a GGF game's file has changed since it was loaded, the game's text can't be re-read. The game is then
+     * rebuilt from its moves, player names and place, as for Thor games, and the problem is logged.
+     *
      * @param iGame index of the game
      * @return a game in GGS/os format.
      */
     public COsGame GameFromIndex(int iGame) {
-        COsGame game = new COsGame();
-
         if (iGame < m_nThorGames) {
-            final ThorGameInternal tg = m_tgis.get(iGame);
-
-            game.setToDefaultStartPosition(OsClock.DEFAULT, OsClock.DEFAULT);
-            game.setBlackPlayer(playerFromPlayerNumber(tg.iBlackPlayer), 0);
-            game.setWhitePlayer(playerFromPlayerNumber(tg.iWhitePlayer), 0);
-
-            game.sPlace = tournamentFromTournamentNumber(tg.iTournament);
-            game.SetTimeYear(tg.year);
-            for (int i = 0; i < 60 && tg.moves[i] >= 0; i++) {
-                final int sq = tg.moves[i];
-                OsMoveListItem mli = new OsMoveListItem(new OsMove(Row(sq), Col(sq)));
-
-                // illegal moves end the game. Yes, the Thor database has some.
-                if (!game.pos.board.isMoveLegal(mli.move)) {
-                    break;
-                }
-                game.append(mli);
+            return gameFromStore(iGame, playerFromPlayerNumber(m_tgis.iBlackPlayer(iGame))
+                    , playerFromPlayerNumber(m_tgis.iWhitePlayer(iGame)), tournamentFromTournamentNumber(m_tgis.iTournament(iGame)));
+        }
+        final GgfGameText text = m_ggfGames.get(iGame - m_nThorGames);
+        try {
+            return new COsGame(new CReader(text.getText()));
+        } catch (IOException e) {
+            log.info("Unable to read game " + iGame + ", rebuilding it from its moves: " + e.getMessage());
+            return gameFromStore(iGame, text.PB(), text.PW(), text.PC());
+        }
+    }
 
-                if (!game.pos.board.hasLegalMove() && !game.pos.board.isGameOver()) {
-                    game.append(OsMoveListItem.PASS);
-                }
+    /**
+     * @return a game built from the moves, year and result in m_tgis
+     */
+    private COsGame gameFromStore(int iGame, String blackPlayer, String whitePlayer, String place) {
+        final COsGame game = new COsGame();
+        game.setToDefaultStartPosition(OsClock.DEFAULT, OsClock.DEFAULT);
+        game.setBlackPlayer(blackPlayer, 0);
+        game.setWhitePlayer(whitePlayer, 0);
+
+        game.sPlace = place;
+        game.SetTimeYear(m_tgis.year(iGame));
+        for (int i = 0; i < 60 && m_tgis.move(iGame, i) >= 0; i++) {
+            final int sq = m_tgis.move(iGame, i);
+            OsMoveListItem mli = new OsMoveListItem(new OsMove(Row(sq), Col(sq)));
+
+            // illegal moves end the game. Yes, the Thor database has some.
+            if (!game.pos.board.isMoveLegal(mli.move)) {
+                break;
             }
-            if (!game.pos.board.isGameOver()) {
-                final OsResult osResult = new OsResult(OsResult.TStatus.kTimeout, tg.nBlackDiscs * 2 - 64);
-                game.SetResult(osResult);
+            game.append(mli);
+
+            if (!game.pos.board.hasLegalMove() && !game.pos.board.isGameOver()) {
+                game.append(OsMoveListItem.PASS);
             }
-        } else {
-            game = new COsGame(new CReader(getGgfText(iGame)));
         }
-
+        if (!game.pos.board.isGameOver()) {
+            final OsResult osResult = new OsResult(OsResult.TStatus.kTimeout, m_tgis.nBlackDiscs(iGame) * 2 - 64);
+            game.SetResult(osResult);
+        }
         return game;
     }
 
+    /**
+     * Find games that have a position matching pos.
+     * <p/>
+     * The first call after the games change builds a position index; later calls are a single index lookup.
+     *
+     * @param pos position to match
+     * @return indices of matching games, and reflection indices that make the games match
+     */
     public Thor.MatchingPositions findMatchingPositions(COsBoard pos) {
-        return ThorFindMatchingPositions(m_tgis, pos);
+        if (!m_useIndex) {
+            if (m_searchPool == null) {
+                return ThorFindMatchingPositions(m_tgis, pos);
+            } else {
+                return ThorFindMatchingPositions(m_tgis, pos, m_searchPool);
+            }
+        }
+        if (m_positionIndex == null) {
+            m_positionIndex = new ThorPositionIndex(m_tgis);
+        }
+        return m_positionIndex.find(pos);
+    }
+
+    /**
+     * Choose whether searches use a position index.
+     * <p/>
+     * The index makes searches much faster but takes memory proportional to the number of positions in the database.
+     * Without it, each search scans every game; see {@link #setSearchParallelism(int)}.
+     *
+     * @param useIndex if true (the default), searches use a position index.
+     */
+    public void setUseIndex(boolean useIndex) {
+        m_useIndex = useIndex;
+        if (!useIndex) {
+            m_positionIndex = null;
+        }
+    }
+
+    /**
+     * Set the number of threads used to scan games when searches do not use a position index.
+     *
+     * @param parallelism number of threads. If 1 (the default), games are scanned on the calling thread.
+     */
+    public void setSearchParallelism(int parallelism) {
+        if (m_searchPool != null) {
+            m_searchPool.shutdown();
+        }
+        m_searchPool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
     }
 
     /**
@@ -241,6 +338,24 @@ public class DatabaseData extends ListenerManager<DatabaseData.Listener> {
         return ThorSummarize(m_tgis, pos, index, iReflections);
     }
 
+    /**
+     * Summarize statistics of games played from the given position, by move.
+     * <p/>
+     * Summaries are cached, so revisiting a position or a reflection of it does not search the games again.
+     *
+     * @param pos current board position
+     * @return summary data for the various moves from a position
+     */
+    public ThorSummary summarize(COsBoard pos) {
+        ThorSummary summary = m_summaryCache.get(pos);
+        if (summary == null) {
+            final MatchingPositions matches = findMatchingPositions(pos);
+            summary = ThorSummarize(m_tgis, pos, matches.index, matches.iReflections);
+            m_summaryCache.put(pos, summary, matches.index.size());
+        }
+        return summary;
+    }
+
     String playerFromPlayerNumber(char iPlayer) {
         if (iPlayer >= NPlayers())
             return "???";
@@ -265,9 +380,33 @@ public class DatabaseData extends ListenerManager<DatabaseData.Listener> {
      * @param games list of Thor games.
      */
     public void setThorGames(ArrayList<ThorGameInternal> games) {
+        setThorGames(ThorGameStore.of(games));
+    }
+
+    /**
+     * Set this database to contain the given Thor games.
+     * <p/>
+     * Previously existing Thor games are discarded. Previously existing GGF games are retained.
+     * <p/>
+     * fireDatabaseChanged() is called once this is done.
+     *
+     * @param games Thor games. GGF games are appended to this store.
+     */
+    void setThorGames(ThorGameStore games) {
+        storeThorGames(games);
+
+        fireDatabaseChanged();
+    }
+
+    /**
+     * Set this database to contain the given Thor games, followed by the current GGF games, without notifying listeners.
+     */
+    private void storeThorGames(ThorGameStore games) {
         // copy database data for games into m_ggfTgis for faster searching
         m_tgis = games;
         m_nThorGames = games.size();
+        m_positionIndex = null;
+        m_summaryCache.clear();
         for (final GgfGameText game : m_ggfGames) {
             final int nBlackSquares = (new CReader(game.RE()).readInt(0) / 2) + 32;
             final String dt = game.DT();
@@ -279,11 +418,8 @@ public class DatabaseData extends ListenerManager<DatabaseData.Listener> {
                 cal.setTimeInMillis((long) year * 1000);
                 year = cal.get(Calendar.YEAR);
             }
-            ThorGameInternal tgi = new ThorGameInternal(nBlackSquares, game.Moves(), game.m_openingCode, year);
-            m_tgis.add(tgi);
+            m_tgis.add(0, 0, 0, nBlackSquares, 0, game.Moves(), year, game.m_openingCode);
         }
-
-        fireDatabaseChanged();
     }
 
     /**
@@ -305,12 +441,14 @@ public class DatabaseData extends ListenerManager<DatabaseData.Listener> {
      * Loads Thor players file, tournament file, and all games files from the given directory.
      * <p/>
      * This will not look in subdirectories. It clears any existing games/players/tournaments from this database.
+     * <p/>
+     * The decoded data is cached in {@link #defaultSnapshotFile(File)} to speed up the next load.
      *
      * @param thorDirectory directory to load from
      */
     public void loadFromThorDirectory(File thorDirectory) {
         try (final GuiProgressTracker tracker = new GuiProgressTracker("games loaded")) {
-            loadFromDirectory(thorDirectory, tracker);
+            loadFromDirectory(thorDirectory, tracker, defaultSnapshotFile(thorDirectory));
         }
     }
 
@@ -318,32 +456,191 @@ public class DatabaseData extends ListenerManager<DatabaseData.Listener> {
      * Loads Thor players file, tournament file, and all games files from the given directory.
      * <p/>
      * This will not look in subdirectories. It clears any existing games/players/tournaments from this database.
+     * <p/>
+     * Files are read and decoded concurrently, but games are added in file name order so game indices do not
+     * depend on thread timing. fireDatabaseChanged() is called once, after all files are loaded.
      *
      * @param thorDirectory directory to load from
      */
     public void loadFromDirectory(File thorDirectory, IndeterminateProgressTracker tracker) {
-        final File[] files = thorDirectory.listFiles();
+        loadFiles(databaseFiles(thorDirectory), tracker);
+
+        fireDatabaseChanged();
+    }
+
+    /**
+     * Loads Thor players file, tournament file, and all games files from the given directory, using a snapshot
+     * of the decoded data if possible.
+     * <p/>
+     * If the snapshot file was written from the files currently in the directory, the data is read from the
+     * snapshot; this is much faster than decoding the files. Otherwise the files are loaded as in
+     * {@link #loadFromDirectory(File, IndeterminateProgressTracker)} and a new snapshot is written.
+     * A snapshot that can't be written is logged and otherwise ignored.
+     *
+     * @param thorDirectory directory to load from
+     * @param snapshotFile  location of the snapshot, for instance {@link #defaultSnapshotFile(File)}
+     */
+    public void loadFromDirectory(File thorDirectory, IndeterminateProgressTracker tracker, File snapshotFile) {
+        final File[] files = databaseFiles(thorDirectory);
+        final DatabaseSnapshot snapshot = DatabaseSnapshot.read(snapshotFile, files);
+        if (snapshot != null) {
+            m_tgis = snapshot.games;
+            m_nThorGames = snapshot.nThorGames;
+            m_players = snapshot.players;
+            m_tournaments = snapshot.tournaments;
+            clearGgfGames();
+            m_ggfGames.addAll(snapshot.ggfGames);
+            m_positionIndex = null;
+            m_summaryCache.clear();
+        } else {
+            loadFiles(files, tracker);
+            try {
+                new DatabaseSnapshot(m_tgis, m_nThorGames, m_players, m_tournaments, m_ggfGames).write(snapshotFile, files);
+            } catch (IOException e) {
+                log.info("Unable to write database snapshot " + snapshotFile + ": " + e);
+            }
+        }
+
+        fireDatabaseChanged();
+    }
+
+    /**
+     * The snapshot is stored in the user's cache directory rather than the database directory, which may not be
+     * writable. Each database directory has its own snapshot file.
+     *
+     * @return the snapshot file used by {@link #loadFromThorDirectory(File)}.
+     */
+    public static File defaultSnapshotFile(File thorDirectory) {
+        final Path cacheDir = OperatingSystem.os.getCacheDir("com.welty.othello.thor");
+        final String path = thorDirectory.getAbsolutePath();
+        return cacheDir.resolve("nboard-" + Integer.toHexString(path.hashCode()) + ".snapshot").toFile();
+    }
+
+    /**
+     * @return the database files in the directory, sorted by name
+     */
+    private static File[] databaseFiles(File thorDirectory) {
+        final File[] files = thorDirectory.listFiles(new FileFilter() {
+            @Override public boolean accept(File file) {
+                return isDatabaseFile(file.toString());
+            }
+        });
         if (files == null) {
             throw new RuntimeException(thorDirectory + " is not a directory");
         }
-        clearGames();
+        Arrays.sort(files);
+        return files;
+    }
+
+    /**
+     * Replace the contents of this database with the contents of the files, without notifying listeners.
+     * <p/>
+     * Files are read and decoded concurrently, but games are added in the order of the files so game indices do
+     * not depend on thread timing.
+     */
+    private void loadFiles(File[] files, IndeterminateProgressTracker tracker) {
+        final CountingProgressTracker counter = new CountingProgressTracker();
+        final ArrayList<Future<LoadedFile>> futures = new ArrayList<>();
+        final int nThreads = Math.max(1, Math.min(files.length, Runtime.getRuntime().availableProcessors()));
+        final ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        final ArrayList<LoadedFile> loaded = new ArrayList<>();
+        try {
+            for (final File file : files) {
+                futures.add(executor.submit(new Callable<LoadedFile>() {
+                    @Override public LoadedFile call() {
+                        return new LoadedFile(file, counter);
+                    }
+                }));
+            }
+            for (Future<LoadedFile> future : futures) {
+                loaded.add(await(future, counter, tracker));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        counter.forwardTo(tracker);
+
+        // splice the results together in file order
+        ThorGameStore games = new ThorGameStore();
+        clearGgfGames();
+        m_ggfGames.trimToSize();
+        for (LoadedFile file : loaded) {
+            if (file.games != null) {
+                games.addAll(file.games);
+            }
+            if (file.tournaments != null) {
+                m_tournaments = file.tournaments;
+            }
+            if (file.players != null) {
+                m_players = file.players;
+            }
+            if (file.ggfGames != null) {
+                m_ggfGames.addAll(file.ggfGames);
+            }
+        }
+        storeThorGames(games);
+    }
+
+    private static boolean isDatabaseFile(String fn) {
+        return isThorGamesFile(fn) || isThorTournamentFile(fn) || isThorPlayersFile(fn) || isGgfFile(fn);
+    }
+
+    /**
+     * Time between progress updates while files are loading, in milliseconds
+     */
+    private static final long PROGRESS_MILLIS = 250;
+
+    /**
+     * Wait for a file to load, passing progress on to the tracker while waiting.
+     *
+     * @throws RuntimeException if the file could not be loaded. Unchecked exceptions thrown while loading
+     *                          the file are rethrown as is.
+     */
+    private static LoadedFile await(Future<LoadedFile> future, CountingProgressTracker counter, IndeterminateProgressTracker tracker) {
+        while (true) {
+            try {
+                return future.get(PROGRESS_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                counter.forwardTo(tracker);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while loading games", e);
+            } catch (ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new RuntimeException(cause);
+            }
+        }
+    }
+
+    /**
+     * Contents of a single database file, decoded on a loader thread.
+     * <p/>
+     * Exactly one of the fields is non-null, depending on the file type.
+     */
+    private static class LoadedFile {
+        ThorGameStore games;
+        ArrayList<String> tournaments;
+        ArrayList<String> players;
+        ArrayList<GgfGameText> ggfGames;
 
-        ArrayList<ThorGameInternal> games = new ArrayList<>();
-        for (File file : files) {
+        LoadedFile(File file, IndeterminateProgressTracker tracker) {
             final String fn = file.toString();
             if (isThorGamesFile(fn)) {
-                // games file
-                games.addAll(Thor.ThorLoadGames(fn, tracker));
+                games = Thor.ThorLoadGameStore(file, tracker);
             } else if (isThorTournamentFile(fn)) {
-                setTournaments(ThorLoadTournaments(fn));
+                tournaments = ThorLoadTournaments(fn);
             } else if (isThorPlayersFile(fn)) {
-                setPlayers(Thor.ThorLoadPlayers(fn));
+                players = Thor.ThorLoadPlayers(fn);
             } else if (isGgfFile(fn)) {
-                final ArrayList<GgfGameText> ggfGameTexts = GgfGameText.Load(file, tracker);
-                addGgfGames(ggfGameTexts);
+                ggfGames = GgfGameText.Load(file, tracker);
             }
         }
-        setThorGames(games);
     }
 
     public void setPlayers(ArrayList<String> strings) {
@@ -364,14 +661,14 @@ public class DatabaseData extends ListenerManager<DatabaseData.Listener> {
      */
     public int[] getOpeningCounts(int nOpenings) {
         final int[] counts = new int[nOpenings];
-        for (ThorGameInternal it : m_tgis) {
-            counts[it.openingCode]++;
+        for (int i = 0; i < m_tgis.size(); i++) {
+            counts[m_tgis.openingCode(i)]++;
         }
         return counts;
     }
 
     public int getGameYear(int iGame) {
-        return m_tgis.get(iGame).year;
+        return m_tgis.year(iGame);
     }
 
     /**
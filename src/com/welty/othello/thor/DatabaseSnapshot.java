@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.thor;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Decoded contents of a database directory, saved to disk so that the next load doesn't need to decode the files.
+ * <p/>
+ * A snapshot records the path, length and modification time of each source file. It is only used if the
+ * source files still match.
+ * <p/>
+ * File format: a header (magic, version, metadata length), the metadata (source files, players, tournaments and
+ * GGF game headers) and then the game store. The whole snapshot is read into memory, so the file is not held open
+ * or locked and can be replaced by the next write.
+ */
+class DatabaseSnapshot {
+    private static final int MAGIC = 0x4E424453; // "NBDS"
+    /**
+     * Increment this whenever the file format or the meaning of stored data (for instance opening codes) changes.
+     */
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 16;
+
+    /**
+     * All games: Thor games followed by converted GGF games
+     */
+    final ThorGameStore games;
+    /**
+     * Number of games that are Thor games
+     */
+    final int nThorGames;
+    final ArrayList<String> players;
+    final ArrayList<String> tournaments;
+    final ArrayList<GgfGameText> ggfGames;
+
+    DatabaseSnapshot(ThorGameStore games, int nThorGames, ArrayList<String> players, ArrayList<String> tournaments
+            , ArrayList<GgfGameText> ggfGames) {
+        this.games = games;
+        this.nThorGames = nThorGames;
+        this.players = players;
+        this.tournaments = tournaments;
+        this.ggfGames = ggfGames;
+    }
+
+    /**
+     * Write the snapshot.
+     * <p/>
+     * The snapshot is written to a temporary file which then replaces the snapshot file, so a failed write
+     * never leaves a corrupt snapshot.
+     *
+     * @param snapshotFile destination
+     * @param sources      files the snapshot was loaded from
+     * @throws IOException if the snapshot can't be written
+     */
+    void write(File snapshotFile, File[] sources) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeSources(out, sources);
+            out.writeInt(nThorGames);
+            writeStrings(out, players);
+            writeStrings(out, tournaments);
+            out.writeInt(ggfGames.size());
+            for (GgfGameText ggfGame : ggfGames) {
+                ggfGame.write(out);
+            }
+        }
+
+        final File dir = snapshotFile.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create snapshot directory " + dir);
+        }
+        final File temp = new File(snapshotFile.getPath() + ".tmp");
+        try (RandomAccessFile raf = new RandomAccessFile(temp, "rw")) {
+            raf.setLength(0);
+            final FileChannel channel = raf.getChannel();
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(bytes.size()).flip();
+            ThorGameStore.writeFully(channel, header);
+            ThorGameStore.writeFully(channel, ByteBuffer.wrap(bytes.toByteArray()));
+            games.write(channel);
+        }
+        Files.move(temp.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Read a snapshot.
+     *
+     * @param snapshotFile snapshot location
+     * @param sources      files the caller would otherwise load
+     * @return the snapshot, or null if the snapshot file doesn't exist, is unreadable, or was made from different sources.
+     */
+    static @Nullable DatabaseSnapshot read(File snapshotFile, File[] sources) {
+        if (!snapshotFile.isFile()) {
+            return null;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(snapshotFile, "r")) {
+            if (raf.readInt() != MAGIC || raf.readInt() != VERSION) {
+                return null;
+            }
+            final long metadataLength = raf.readLong();
+            if (metadataLength < 0 || HEADER_SIZE + metadataLength > raf.length()) {
+                return null;
+            }
+            final byte[] metadata = new byte[(int) metadataLength];
+            raf.readFully(metadata);
+
+            final DataInputStream in = new DataInputStream(new ByteArrayInputStream(metadata));
+            if (!sourcesMatch(in, sources)) {
+                return null;
+            }
+            final int nThorGames = in.readInt();
+            final ArrayList<String> players = readStrings(in);
+            final ArrayList<String> tournaments = readStrings(in);
+            final int nGgfGames = in.readInt();
+            final ArrayList<GgfGameText> ggfGames = new ArrayList<>(nGgfGames);
+            final HashMap<String, GgfFile> ggfFiles = new HashMap<>();
+            for (int i = 0; i < nGgfGames; i++) {
+                ggfGames.add(new GgfGameText(in, ggfFiles));
+            }
+
+            final ThorGameStore games = ThorGameStore.read(raf.getChannel(), HEADER_SIZE + metadataLength);
+            if (games.size() != nThorGames + nGgfGames) {
+                return null;
+            }
+            return new DatabaseSnapshot(games, nThorGames, players, tournaments, ggfGames);
+        } catch (IOException | RuntimeException e) {
+            // a corrupt snapshot is treated like a missing one
+            return null;
+        }
+    }
+
+    private static void writeSources(DataOutput out, File[] sources) throws IOException {
+        out.writeInt(sources.length);
+        for (File source : sources) {
+            out.writeUTF(source.getAbsolutePath());
+            out.writeLong(source.length());
+            out.writeLong(source.lastModified());
+        }
+    }
+
+    private static boolean sourcesMatch(DataInput in, File[] sources) throws IOException {
+        if (in.readInt() != sources.length) {
+            return false;
+        }
+        for (File source : sources) {
+            if (!in.readUTF().equals(source.getAbsolutePath())
+                    || in.readLong() != source.length()
+                    || in.readLong() != source.lastModified()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeStrings(DataOutput out, ArrayList<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String string : strings) {
+            out.writeUTF(string);
+        }
+    }
+
+    private static ArrayList<String> readStrings(DataInput in) throws IOException {
+        final int n = in.readInt();
+        final ArrayList<String> strings = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            strings.add(in.readUTF());
+        }
+        return strings;
+    }
+}
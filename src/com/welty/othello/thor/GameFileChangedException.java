@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.thor;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Thrown when a game's text can't be re-read because its games file has changed since it was loaded.
+ * <p/>
+ * Reloading the database fixes this.
+ */
+public class GameFileChangedException extends IOException {
+    public GameFileChangedException(File file) {
+        super("Games file " + file + " has changed since it was loaded. Reload the database.");
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.thor;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A GGF file that games were loaded from.
+ * <p/>
+ * Games loaded from a file don't hold their text; they re-read it from the file. All games from the file share
+ * one channel, which is opened when a game's text is first needed.
+ * <p/>
+ * The file's length and modification time are recorded when it is loaded. They are checked before each read so
+ * that a file that has been changed since then is reported rather than read at the wrong offsets.
+ * <p/>
+ * This class is thread-safe.
+ */
+class GgfFile {
+    final File file;
+    private final long length;
+    private final long lastModified;
+    // Guarded by this
+    private FileChannel channel;
+
+    /**
+     * Record the file's current length and modification time. Call this before reading the games.
+     */
+    GgfFile(File file) {
+        this.file = file;
+        length = file.length();
+        lastModified = file.lastModified();
+    }
+
+    /**
+     * Read text from the file.
+     *
+     * @param offset location of the text in the file, in bytes
+     * @param length length of the text, in bytes. The file must use a single-byte encoding.
+     * @throws GameFileChangedException if the file has changed or been removed since it was loaded
+     * @throws IOException              if the file can't be read
+     */
+    String read(long offset, int length) throws IOException {
+        if (file.length() != this.length || file.lastModified() != lastModified) {
+            close();
+            throw new GameFileChangedException(file);
+        }
+        final FileChannel channel = channel();
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of file in " + file);
+            }
+        }
+        return new String(buffer.array(), StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Positional reads don't move the channel's position, so the channel can be used by several threads at once.
+     * <p/>
+     * Channels from FileChannel.open, unlike RandomAccessFile, don't stop the file from being replaced or deleted
+     * on Windows while it is open.
+     */
+    private synchronized FileChannel channel() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        }
+        return channel;
+    }
+
+    /**
+     * Close the channel, if it is open. It is reopened if text is read again.
+     */
+    synchronized void close() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // nothing was written, so nothing can be lost
+            }
+            channel = null;
+        }
+    }
+}
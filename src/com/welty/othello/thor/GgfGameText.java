@@ -17,12 +17,19 @@ package com.welty.othello.thor;
 
 import com.orbanova.common.misc.Logger;
 import com.welty.othello.c.CReader;
+import com.welty.othello.gdk.GgfParser;
+import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
-import java.io.EOFException;
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Text of a GGF game plus cached information
@@ -40,13 +47,40 @@ public class GgfGameText {
             "PB[", "PW[", "DT[", "TY[", "RE[", "PC["
     };
 
-    // Text of the game
+    /**
+     * Value of the BO field for a game from the standard start position, with whitespace removed
+     */
+    private static final String STANDARD_START = "8---------------------------O*------*O---------------------------*";
+
+    /**
+     * Games longer than this are treated as corrupt when loading from a file
+     */
+    private static final int MAX_GAME_BYTES = 1 << 20;
+
+    /**
+     * Text of the game, or null if the game is re-read from its file when needed.
+     * <p/>
+     * This field used to hold the text of every game. 8x8 standard games loaded from a GGF file now leave it null,
+     * so code that reads it directly will get null for those games; this is an incompatible change to the public
+     * API.
+     *
+     * @deprecated games loaded from a file don't hold their text. Use {@link #getText()}.
+     */
+    @Deprecated
     public final String m_text;
-    // Location of the various fields in the game, or int(-1) if the field was not found in the game
+    // File containing the game text, and the location of the text in the file. Only used if m_text is null.
+    private final GgfFile m_file;
+    private final long m_offset;
+    private final int m_length;
+    // Value text of the various fields in the game, or "" if the field was not found in the game
+    private final String[] m_values = new String[fields.length];
     // Value of the result field (field 4) converted to an int. This is precomputed to save time while sorting.
     int m_nResult;
     // Opening code, precomputed to save time
     public int m_openingCode;
+    // Moves, for 8x8 standard games only. null for other games.
+    private final byte[] m_moves;
+    private final boolean m_f8x8Standard;                //< true if the game was played on an 8x8 board
 
     boolean Is8x8Standard() {
         return m_f8x8Standard;
@@ -54,14 +88,32 @@ public class GgfGameText {
 
 
     public final byte[] Moves() {
-        return ThorOpeningMap.moveBytesFromGgf(getText());
+        // games that aren't 8x8 standard always hold their text
+        return m_moves != null ? m_moves.clone() : ThorOpeningMap.moveBytesFromGgf(m_text);
     }
 
-    private final int[] m_starts = new int[fields.length];    //< Start loc of value text for each field
-    private boolean m_f8x8Standard;                //< true if the game was played on an 8x8 board
+    /**
+     * Get the text of the game.
+     * <p/>
+     * If the game was loaded from a file, the text is re-read from the file.
+     *
+     * @throws GameFileChangedException if the file has changed since the game was loaded
+     * @throws IOException              if the text can't be re-read from the file
+     */
+    public String getText() throws IOException {
+        if (m_text != null) {
+            return m_text;
+        }
+        return m_file.read(m_offset, m_length);
+    }
 
-    public String getText() {
-        return m_text;
+    /**
+     * Close the file the game was loaded from, if it is open. It is reopened if the text is needed again.
+     */
+    void closeFile() {
+        if (m_file != null) {
+            m_file.close();
+        }
     }
 
     static class StringLoc {
@@ -102,28 +154,190 @@ public class GgfGameText {
      * @throws IllegalArgumentException if the game is invalid.
      */
     GgfGameText(StringLoc stringLoc) {
-        m_text = stringLoc.nextGame();
-        for (int i = 0; i < fields.length; i++) {
-            final int tagStart = m_text.indexOf(fields[i]);
-            if (tagStart == -1) {
-                m_starts[i] = -1;
+        this(stringLoc.nextGame(), null, 0);
+        stringLoc.nextStart();
+    }
+
+    /**
+     * Construct a GgfGameText from the text of a game.
+     * <p/>
+     * The game is checked for validity.
+     *
+     * @param text   text of the game, from "(;" to ";)"
+     * @param file   if non-null and the game is 8x8 standard, the text is not retained; {@link #getText()}
+     *               re-reads it from this file.
+     * @param offset location of the text in file, in bytes. The file must use a single-byte encoding.
+     * @throws IllegalArgumentException if the game is invalid.
+     */
+    GgfGameText(String text, @Nullable GgfFile file, long offset) {
+        this(file == null ? text : null, text.getBytes(StandardCharsets.ISO_8859_1), 0, text.length(), file, offset);
+    }
+
+    /**
+     * Construct a GgfGameText from the bytes of a game.
+     * <p/>
+     * The game is checked for validity. The bytes are parsed in place; Strings are only created for the field values.
+     *
+     * @param data   bytes containing the game, in a single-byte encoding
+     * @param start  location of the game's "(;" in data
+     * @param length length of the game, from "(;" to ";)"
+     * @param file   if non-null and the game is 8x8 standard, the text is not retained; {@link #getText()}
+     *               re-reads it from this file.
+     * @param offset location of the text in file, in bytes.
+     * @throws IllegalArgumentException if the game is invalid.
+     */
+    GgfGameText(byte[] data, int start, int length, @Nullable GgfFile file, long offset) {
+        this(file == null ? new String(data, start, length, StandardCharsets.ISO_8859_1) : null, data, start, length, file, offset);
+    }
+
+    private GgfGameText(@Nullable String text, byte[] data, int start, int length, @Nullable GgfFile file, long offset) {
+        m_file = file;
+        m_offset = offset;
+        m_length = length;
+
+        final GgfParser parser = new GgfParser();
+        parser.reset(data, start, start + length);
+        final byte[] moves = new byte[60];
+        int nMoves = 0;
+        boolean badMove = false;
+        boolean hasBoard = false;
+        boolean standardStart = false;
+        int nResult = 0;
+        while (parser.next()) {
+            if (parser.isMoveTag()) {
+                if (nMoves < moves.length && !badMove) {
+                    try {
+                        final int sq = parser.moveSquare();
+                        if (sq >= 0) {
+                            moves[nMoves++] = (byte) sq;
+                        }
+                    } catch (IllegalArgumentException e) {
+                        // only an error if the moves are needed, which depends on the TY and BO fields.
+                        badMove = true;
+                    }
+                }
+            } else if (parser.tagIs('B', 'O')) {
+                hasBoard = true;
+                standardStart = parser.valueEqualsIgnoringWhitespace(STANDARD_START);
             } else {
-                m_starts[i] = tagStart + fields[i].length();
-                if (m_text.indexOf(']', m_starts[i]) == -1) {
-                    throw new IllegalArgumentException("Corrupt GGF game");
+                for (int i = 0; i < fields.length; i++) {
+                    if (m_values[i] == null && parser.tagIs(fields[i].charAt(0), fields[i].charAt(1))) {
+                        m_values[i] = parser.value();
+                        if (i == 4) {
+                            nResult = parser.valueAsInt(0);
+                        }
+                    }
                 }
             }
         }
-        try {
-            final CReader in = new CReader(m_text.substring(m_starts[4]));
-            m_nResult = in.readInt();
-        } catch (IllegalArgumentException | EOFException e) {
-            m_nResult = 0;
+        for (int i = 0; i < fields.length; i++) {
+            if (m_values[i] == null) {
+                m_values[i] = "";
+            }
+        }
+        if (!hasBoard) {
+            throw new IllegalArgumentException("Corrupt GGF game: no BO field");
         }
+        if (nMoves < moves.length) {
+            moves[nMoves] = -2;
+        }
+        m_nResult = nResult;
         m_f8x8Standard = TY().equals("8");
-        SetOpeningCode();
+        if ((m_f8x8Standard || standardStart) && badMove) {
+            throw new IllegalArgumentException("Corrupt GGF game: illegal move");
+        }
+        // OpeningCode() replaces illegal moves by -2, so give it a copy.
+        m_openingCode = standardStart ? ThorOpeningMap.OpeningCode(moves.clone()) : 0;
+        m_moves = m_f8x8Standard ? moves : null;
+        // Moves() needs the text of games that aren't 8x8 standard
+        m_text = text != null || m_f8x8Standard ? text : new String(data, start, length, StandardCharsets.ISO_8859_1);
+    }
 
-        stringLoc.nextStart();
+    /**
+     * Construct a GgfGameText from data written by {@link #write(DataOutput)}.
+     * <p/>
+     * The text is not re-parsed and the opening code is not recalculated.
+     *
+     * @param files files that games have been loaded from, by path. Games from the same file share a GgfFile;
+     *              files that aren't in the map yet are added to it.
+     * @throws IOException if the data can't be read
+     */
+    GgfGameText(DataInput in, Map<String, GgfFile> files) throws IOException {
+        if (in.readBoolean()) {
+            final byte[] text = new byte[in.readInt()];
+            in.readFully(text);
+            m_text = new String(text, StandardCharsets.UTF_8);
+            m_file = null;
+            m_offset = 0;
+            m_length = m_text.length();
+        } else {
+            m_text = null;
+            final String path = in.readUTF();
+            GgfFile file = files.get(path);
+            if (file == null) {
+                file = new GgfFile(new File(path));
+                files.put(path, file);
+            }
+            m_file = file;
+            m_offset = in.readLong();
+            m_length = in.readInt();
+        }
+        for (int i = 0; i < fields.length; i++) {
+            m_values[i] = in.readUTF();
+        }
+        m_nResult = in.readInt();
+        m_openingCode = in.readInt();
+        m_f8x8Standard = in.readBoolean();
+        if (in.readBoolean()) {
+            m_moves = new byte[60];
+            in.readFully(m_moves);
+        } else {
+            m_moves = null;
+        }
+    }
+
+    /**
+     * Write the game so that it can be read back by {@link #GgfGameText(DataInput, Map)}.
+     * <p/>
+     * Games loaded from a file are written as the file location rather than the text.
+     */
+    void write(DataOutput out) throws IOException {
+        out.writeBoolean(m_text != null);
+        if (m_text != null) {
+            final byte[] text = m_text.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(text.length);
+            out.write(text);
+        } else {
+            out.writeUTF(m_file.file.getAbsolutePath());
+            out.writeLong(m_offset);
+            out.writeInt(m_length);
+        }
+        for (String value : m_values) {
+            out.writeUTF(value);
+        }
+        out.writeInt(m_nResult);
+        out.writeInt(m_openingCode);
+        out.writeBoolean(m_f8x8Standard);
+        out.writeBoolean(m_moves != null);
+        if (m_moves != null) {
+            out.write(m_moves);
+        }
+    }
+
+    /**
+     * Replace field values by equal strings from the map, adding them to the map if they aren't there.
+     * <p/>
+     * Player names and places repeat across many games, so this saves memory when many games are loaded.
+     */
+    private void shareValues(HashMap<String, String> values) {
+        for (int i = 0; i < m_values.length; i++) {
+            final String shared = values.get(m_values[i]);
+            if (shared == null) {
+                values.put(m_values[i], m_values[i]);
+            } else {
+                m_values[i] = shared;
+            }
+        }
     }
 
     /**
@@ -132,13 +346,7 @@ public class GgfGameText {
     public String GetText(int field) {
         if (field < fields.length) {
             if (field != 4) {
-                int start = m_starts[field];
-                if (start == -1) {
-                    return "";
-                } else {
-                    int end = m_text.indexOf(']', start);
-                    return m_text.substring(start, end);
-                }
+                return m_values[field];
             } else {
                 return String.format("%+d", m_nResult);
             }
@@ -188,51 +396,116 @@ public class GgfGameText {
         return GetText(5);
     }
 
-    /**
-     * Calculate the opening code and store it in m_openingCode
-     * also determines whether the game was played on an 8x8 board.
-     */
-    void SetOpeningCode() {
-        m_openingCode = ThorOpeningMap.OpeningCodeFromGgf(m_text);
-    }
-
     /**
      * Load GgfGameTexts from a text file
      * <p/>
+     * The file is read a block at a time, so memory use does not depend on the size of the file. The returned
+     * GgfGameTexts do not hold their text; it is re-read from the file when needed.
+     * <p/>
+     * If the file name ends in ".bz2" the file is decompressed in parallel, see {@link ParallelBzip2InputStream}.
+     * The games then hold their text, since it can't be re-read from a location in the file.
+     * <p/>
      * If there are invalid or corrupt games in the games file, inform the user via message box.
      *
      * @return GgfGameTexts
      */
     public static ArrayList<GgfGameText> Load(final File fn, IndeterminateProgressTracker tracker) {
-        try {
-            return Load(new CReader(fn), tracker);
+        // record the file's length and modification time before reading it, so that later changes are detected.
+        final GgfFile file = new GgfFile(fn);
+        try (FileInputStream in = new FileInputStream(fn)) {
+            if (fn.getName().endsWith(".bz2")) {
+                final int nThreads = Runtime.getRuntime().availableProcessors();
+                try (ParallelBzip2InputStream bz = new ParallelBzip2InputStream(in, nThreads)) {
+                    return Load(Channels.newChannel(bz), null, tracker);
+                }
+            }
+            return Load(in.getChannel(), file, tracker);
         } catch (FileNotFoundException e) {
             JOptionPane.showMessageDialog(null, "Can't find file : " + fn, "Error loading games file", JOptionPane.ERROR_MESSAGE);
             return new ArrayList<>();
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(null, "Can't read file : " + fn, "Error loading games file", JOptionPane.ERROR_MESSAGE);
+            return new ArrayList<>();
         }
     }
 
+    /**
+     * Load GgfGameTexts from a reader. The returned GgfGameTexts hold their text.
+     */
     static ArrayList<GgfGameText> Load(CReader is, IndeterminateProgressTracker tracker) {
-        ArrayList<GgfGameText> result = new ArrayList<>();
+        final String data = is.readLineNoThrow('\0');
+        is.close();
+        try {
+            return Load(Channels.newChannel(new ByteArrayInputStream(data.getBytes(StandardCharsets.ISO_8859_1))), null, tracker);
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't happen - reading from memory", e);
+        }
+    }
+
+    /**
+     * Load GgfGameTexts from a channel, parsing one game at a time.
+     * <p/>
+     * A game starts with '(' and ends with the next ";)".
+     *
+     * @param file file the channel reads, or null if the games should hold their text.
+     */
+    private static ArrayList<GgfGameText> Load(ReadableByteChannel channel, @Nullable GgfFile file, IndeterminateProgressTracker tracker) throws IOException {
+        final ArrayList<GgfGameText> result = new ArrayList<>();
+        final HashMap<String, String> values = new HashMap<>();
 
         log.info("Starting load");
         int nInvalid = 0;
-        String data = is.readLineNoThrow('\0');
-        log.info("Read data");
-        StringLoc stringLoc = new StringLoc(data);
-
-        // now we need to find the beginning of each game.
-        result.clear();
-        while (stringLoc.loc != -1) {
-            try {
-                GgfGameText gt = new GgfGameText(stringLoc);
-                if (gt.Is8x8Standard()) {
-                    result.add(gt);
+
+        final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        byte[] game = new byte[4096];
+        int gameLength = 0;
+        long gameOffset = -1; // file offset of the current game, or -1 if not in a game
+        long offset = 0;
+        byte prev = 0;
+        while (channel.read(buffer) >= 0) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                final byte b = buffer.get();
+                if (gameOffset < 0) {
+                    if (b == '(') {
+                        gameOffset = offset;
+                        gameLength = 0;
+                    }
                 }
-                tracker.increment();
-            } catch (IllegalStateException | IllegalArgumentException e) {
-                nInvalid++;
+                if (gameOffset >= 0) {
+                    if (gameLength < MAX_GAME_BYTES) {
+                        if (gameLength == game.length) {
+                            game = Arrays.copyOf(game, game.length * 2);
+                        }
+                        game[gameLength] = b;
+                    }
+                    gameLength++;
+                    if (prev == ';' && b == ')') {
+                        if (gameLength <= MAX_GAME_BYTES) {
+                            try {
+                                final GgfGameText gt = new GgfGameText(game, 0, gameLength, file, gameOffset);
+                                if (gt.Is8x8Standard()) {
+                                    gt.shareValues(values);
+                                    result.add(gt);
+                                }
+                                tracker.increment();
+                            } catch (IllegalStateException | IllegalArgumentException e) {
+                                nInvalid++;
+                            }
+                        } else {
+                            nInvalid++;
+                        }
+                        gameOffset = -1;
+                    }
+                }
+                prev = b;
+                offset++;
             }
+            buffer.clear();
+        }
+        if (gameOffset >= 0) {
+            // unterminated game at end of file
+            nInvalid++;
         }
         log.info("parsed file");
         tracker.update(); // #L6. If nInvalid!=0 the tracker would otherwise display an incorrect number of games.
@@ -240,7 +513,6 @@ public class GgfGameText {
         if (nInvalid != 0) {
             JOptionPane.showMessageDialog(null, "This file has " + nInvalid + " corrupt games", "Corrupt File alert", JOptionPane.WARNING_MESSAGE);
         }
-        is.close();
         return result;
     }
 }
@@ -0,0 +1,377 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.thor;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.*;
+
+/**
+ * Decompresses a bzip2 stream using multiple threads.
+ * <p/>
+ * A bzip2 stream is a sequence of independently compressed blocks, each starting with a 48-bit magic number.
+ * Blocks are not byte-aligned. A scanning thread reads the compressed input and finds the block boundaries.
+ * Each block is copied into a single-block bzip2 stream of its own and decompressed by a pool of worker threads.
+ * Reads return the decompressed blocks in their original order.
+ * <p/>
+ * At most 2*nThreads blocks (each at most 900kB decompressed) are in flight at once, so memory use does not depend
+ * on the size of the input. Concatenated bzip2 streams, as written by parallel compressors, are supported; each
+ * block's stream gets the block size from the header of the stream the block came from.
+ * <p/>
+ * If decompression fails, every later read throws the same IOException.
+ * <p/>
+ * Like all block-splitting decompressors, this can be fooled if the compressed data of a block happens to contain
+ * the block magic number. This is very unlikely (about once per 15TB of compressed data); the block then fails its
+ * CRC check and the read throws an IOException.
+ */
+public class ParallelBzip2InputStream extends InputStream {
+    private static final long BLOCK_MAGIC = 0x314159265359L;
+    private static final long END_MAGIC = 0x177245385090L;
+    private static final long MAGIC_MASK = (1L << 48) - 1;
+
+    /**
+     * Length of a stream header: "BZh" followed by the block size digit '1'..'9'
+     */
+    private static final int HEADER_LENGTH = 4;
+
+    private static final int READ_SIZE = 1 << 16;
+
+    private final InputStream in;
+    private final ExecutorService scanner;
+    private final ExecutorService decoders;
+    /**
+     * Decompressed blocks, in order. Its capacity limits the number of blocks in flight.
+     */
+    private final BlockingQueue<Future<byte[]>> blocks;
+
+    private byte[] block = new byte[0];
+    private int blockPos;
+    private boolean eof;
+    /**
+     * Failure that ended decompression, or null if decompression has not failed
+     */
+    private IOException failure;
+
+    /**
+     * @param in       compressed data. It is closed when this stream is closed.
+     * @param nThreads number of threads used to decompress blocks
+     */
+    public ParallelBzip2InputStream(InputStream in, int nThreads) {
+        if (nThreads < 1) {
+            throw new IllegalArgumentException("nThreads must be at least 1, was " + nThreads);
+        }
+        this.in = in;
+        blocks = new ArrayBlockingQueue<>(2 * nThreads);
+        scanner = Executors.newSingleThreadExecutor(DAEMON_THREADS);
+        decoders = Executors.newFixedThreadPool(nThreads, DAEMON_THREADS);
+        scanner.submit(new Callable<Void>() {
+            @Override public Void call() throws InterruptedException {
+                try {
+                    scan();
+                    blocks.put(END);
+                } catch (IOException | RuntimeException e) {
+                    blocks.put(failed(e));
+                }
+                return null;
+            }
+        });
+    }
+
+    @Override public int read() throws IOException {
+        if (!nextBlock()) {
+            return -1;
+        }
+        return block[blockPos++] & 0xFF;
+    }
+
+    @Override public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!nextBlock()) {
+            return -1;
+        }
+        final int n = Math.min(len, block.length - blockPos);
+        System.arraycopy(block, blockPos, b, off, n);
+        blockPos += n;
+        return n;
+    }
+
+    @Override public int available() {
+        return block.length - blockPos;
+    }
+
+    /**
+     * Ensure there is data left in the current block, moving to the next block if necessary.
+     *
+     * @return false if there is no more data
+     */
+    private boolean nextBlock() throws IOException {
+        while (blockPos == block.length) {
+            if (failure != null) {
+                throw failure;
+            }
+            if (eof) {
+                return false;
+            }
+            try {
+                final Future<byte[]> future = blocks.take();
+                if (future == END) {
+                    eof = true;
+                    return false;
+                }
+                block = future.get();
+                blockPos = 0;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while decompressing");
+            } catch (ExecutionException e) {
+                final Throwable cause = e.getCause();
+                failure = cause instanceof IOException ? (IOException) cause : new IOException(cause);
+                throw failure;
+            }
+        }
+        return true;
+    }
+
+    @Override public void close() throws IOException {
+        eof = true;
+        scanner.shutdownNow();
+        decoders.shutdownNow();
+        in.close();
+    }
+
+    /**
+     * Read the compressed input and submit each block for decompression.
+     */
+    private void scan() throws IOException, InterruptedException {
+        final Window window = new Window();
+        if (!window.fill() || !window.isHeader(0)) {
+            throw new IOException("Not a bzip2 stream");
+        }
+        // block size digit of the current stream
+        byte blockSize = window.get(HEADER_LENGTH - 1);
+        // byte location of the next stream's block size digit, or -1 if not at the end of a stream.
+        long nextHeaderDigit = -1;
+        long reg = 0;
+        // bit location of the current block's magic number, or -1 if not in a block.
+        long blockStart = -1;
+        long iByte = 0;
+        do {
+            final long end = window.start + window.length;
+            for (; iByte < end; iByte++) {
+                if (iByte == nextHeaderDigit) {
+                    // anything other than a header is trailing garbage, which contains no blocks.
+                    if (window.isHeader(iByte - (HEADER_LENGTH - 1))) {
+                        blockSize = window.get(iByte);
+                    }
+                    nextHeaderDigit = -1;
+                }
+                reg = (reg << 8) | (window.get(iByte) & 0xFF);
+                // check for magic numbers ending in each bit of this byte, earliest first
+                for (int shift = 7; shift >= 0; shift--) {
+                    final long candidate = (reg >>> shift) & MAGIC_MASK;
+                    final long magicStart = (iByte + 1) * 8 - shift - 48;
+                    if ((candidate == BLOCK_MAGIC || candidate == END_MAGIC) && magicStart >= 0) {
+                        if (blockStart >= 0) {
+                            submit(window.extractBlock(blockStart, magicStart, blockSize));
+                        }
+                        blockStart = candidate == BLOCK_MAGIC ? magicStart : -1;
+                        if (candidate == END_MAGIC) {
+                            // the next stream's header starts at the byte boundary after the stream CRC
+                            nextHeaderDigit = ((magicStart + 48 + 32 + 7) >> 3) + HEADER_LENGTH - 1;
+                        }
+                    }
+                }
+            }
+            // keep the current block, plus enough bytes to hold a magic number that starts in them
+            window.discardBefore(blockStart >= 0 ? blockStart >> 3 : iByte - 8);
+        } while (window.fill());
+
+        if (blockStart >= 0) {
+            throw new IOException("Unexpected end of bzip2 stream");
+        }
+    }
+
+    private void submit(final byte[] stream) throws InterruptedException {
+        blocks.put(decoders.submit(new Callable<byte[]>() {
+            @Override public byte[] call() throws IOException {
+                return decode(stream);
+            }
+        }));
+    }
+
+    /**
+     * Decompress a single-block bzip2 stream.
+     * <p/>
+     * This is called on the decoder threads. It is package-private so that tests can see the streams.
+     */
+    byte[] decode(byte[] stream) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(stream.length * 4);
+        try (BZip2CompressorInputStream in = new BZip2CompressorInputStream(new ByteArrayInputStream(stream))) {
+            final byte[] buffer = new byte[READ_SIZE];
+            int n;
+            while ((n = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, n);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Compressed bytes from the input, starting at byte location start in the input.
+     */
+    private class Window {
+        private byte[] data = new byte[4 * READ_SIZE];
+        private long start;
+        private int length;
+
+        /**
+         * Read more data from the input.
+         *
+         * @return false if the input is at end of file
+         */
+        boolean fill() throws IOException {
+            if (length + READ_SIZE > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + READ_SIZE));
+            }
+            final int n = in.read(data, length, READ_SIZE);
+            if (n < 0) {
+                return false;
+            }
+            length += n;
+            return true;
+        }
+
+        /**
+         * @return true if a stream header starts at byte location i and is entirely in the window
+         */
+        boolean isHeader(long i) {
+            if (i < start || i + HEADER_LENGTH > start + length) {
+                return false;
+            }
+            final byte digit = get(i + 3);
+            return get(i) == 'B' && get(i + 1) == 'Z' && get(i + 2) == 'h' && digit >= '1' && digit <= '9';
+        }
+
+        byte get(long i) {
+            return data[(int) (i - start)];
+        }
+
+        void discardBefore(long newStart) {
+            if (newStart > start) {
+                final int n = (int) (newStart - start);
+                System.arraycopy(data, n, data, 0, length - n);
+                length -= n;
+                start = newStart;
+            }
+        }
+
+        /**
+         * Copy a block into a bzip2 stream of its own.
+         * <p/>
+         * The stream is the header, the block's bits, the end-of-stream magic number and the stream CRC.
+         * For a single-block stream the stream CRC equals the block CRC, which follows the block magic number.
+         *
+         * @param blockStart bit location of the block's magic number
+         * @param blockEnd   bit location after the end of the block
+         * @param blockSize  block size digit from the header of the stream containing the block
+         */
+        byte[] extractBlock(long blockStart, long blockEnd, byte blockSize) {
+            final long nBits = blockEnd - blockStart;
+            final long nStreamBits = 8 * HEADER_LENGTH + nBits + 48 + 32;
+            final byte[] stream = new byte[(int) ((nStreamBits + 7) >> 3)];
+            stream[0] = 'B';
+            stream[1] = 'Z';
+            stream[2] = 'h';
+            stream[3] = blockSize;
+
+            final long bitOffset = blockStart - 8 * start;
+            final int shift = (int) (bitOffset & 7);
+            int src = (int) (bitOffset >> 3);
+            final int nBytes = (int) ((nBits + 7) >> 3);
+            for (int i = 0; i < nBytes; i++, src++) {
+                final int hi = data[src] & 0xFF;
+                final int lo = src + 1 < length ? data[src + 1] & 0xFF : 0;
+                stream[HEADER_LENGTH + i] = (byte) (((hi << 8) | lo) >>> (8 - shift));
+            }
+
+            final long crc = readBits(stream, 8 * HEADER_LENGTH + 48, 32);
+            final long endBits = 8 * HEADER_LENGTH + nBits;
+            writeBits(stream, endBits, END_MAGIC, 48);
+            writeBits(stream, endBits + 48, crc, 32);
+            return stream;
+        }
+    }
+
+    private static long readBits(byte[] data, long bitPos, int nBits) {
+        long value = 0;
+        for (int i = 0; i < nBits; i++, bitPos++) {
+            value = (value << 1) | ((data[(int) (bitPos >> 3)] >>> (7 - (bitPos & 7))) & 1);
+        }
+        return value;
+    }
+
+    private static void writeBits(byte[] data, long bitPos, long value, int nBits) {
+        for (int i = nBits - 1; i >= 0; i--, bitPos++) {
+            final int index = (int) (bitPos >> 3);
+            final int mask = 0x80 >>> (bitPos & 7);
+            if (((value >>> i) & 1) != 0) {
+                data[index] |= mask;
+            } else {
+                data[index] &= ~mask;
+            }
+        }
+    }
+
+    /**
+     * Marks the end of the block queue
+     */
+    private static final Future<byte[]> END = new FutureTask<>(new Runnable() {
+        @Override public void run() {
+        }
+    }, null);
+
+    /**
+     * @return a future that fails with the given exception
+     */
+    private static Future<byte[]> failed(final Exception e) {
+        final FutureTask<byte[]> future = new FutureTask<>(new Callable<byte[]>() {
+            @Override public byte[] call() throws Exception {
+                throw e;
+            }
+        });
+        future.run();
+        return future;
+    }
+
+    /**
+     * Daemon threads, so that an unclosed stream does not keep the JVM running
+     */
+    private static final ThreadFactory DAEMON_THREADS = new ThreadFactory() {
+        @Override public Thread newThread(Runnable r) {
+            final Thread thread = new Thread(r, "bzip2 decompressor");
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+}
@@ -18,15 +18,22 @@ package com.welty.othello.thor;
 import com.orbanova.common.misc.Require;
 import com.welty.othello.c.CBinaryReader;
 import com.welty.othello.core.CBitBoard;
-import com.welty.othello.core.CMove;
-import com.welty.othello.core.CMoves;
 import com.welty.othello.core.CQPosition;
 import com.welty.othello.gdk.COsBoard;
 import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.procedure.TObjectProcedure;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import static com.welty.othello.core.Utils.*;
 
@@ -77,33 +84,112 @@ public class Thor {
      * @throws IllegalArgumentException if file doesn't exist
      */
     public static ArrayList<ThorGameInternal> ThorLoadGames(final String fn, @NotNull IndeterminateProgressTracker tracker) {
-        final CBinaryReader is = new CBinaryReader(fn);
+        final ThorGameStore store = ThorLoadGameStore(new File(fn), tracker);
+        final ArrayList<ThorGameInternal> tgs = new ArrayList<>(store.size());
+        for (int i = 0; i < store.size(); i++) {
+            tgs.add(store.get(i));
+        }
+        return tgs;
+    }
+
+    /**
+     * Size of a game record in a thor games database, in bytes
+     */
+    private static final int THOR_GAME_SIZE = 68;
+
+    /**
+     * NTEST_SQUARES[tmv] is the Ntest square for the thor move tmv, -2 for an empty move, or -3 if tmv is invalid.
+     */
+    private static final byte[] NTEST_SQUARES = new byte[256];
+
+    static {
+        Arrays.fill(NTEST_SQUARES, (byte) -3);
+        NTEST_SQUARES[0] = -2;
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                NTEST_SQUARES[(row + 1) * 10 + col + 1] = (byte) Square(row, col);
+            }
+        }
+    }
+
+    /**
+     * Load a thor 8x8 games database into a ThorGameStore.
+     * <p/>
+     * The file is read with a single bulk read and decoded from a little-endian ByteBuffer. It is not
+     * memory-mapped because on Windows a mapped file can't be deleted or replaced until the mapping is
+     * garbage collected, and thor files are small enough that reading them is fast.
+     *
+     * @param fn      games file
+     * @param tracker tracks progress in loading the database
+     * @return games from the file
+     * @throws IllegalArgumentException if the file doesn't exist or is not a thor games file
+     */
+    public static ThorGameStore ThorLoadGameStore(final File fn, @NotNull IndeterminateProgressTracker tracker) {
+        final ByteBuffer in = readFile(fn);
+        if (in.remaining() < ThorHeader.SIZE) {
+            throw new IllegalArgumentException("This is not a thor games file : " + fn);
+        }
 
-        final ArrayList<ThorGameInternal> tgs = new ArrayList<>();
         // read header section
-        final ThorHeader header = new ThorHeader(is);
+        final ThorHeader header = new ThorHeader(in);
 
         // check header for consistency
         if ((header.boardSize != 0 && header.boardSize != 8) ||
                 header.n2 != 0 || header.fSolitaire || header.nPerfectPlay > 60
-                || header.crDay > 31 || header.crMonth > 12)
+                || header.crDay > 31 || header.crMonth > 12
+                || in.remaining() % THOR_GAME_SIZE != 0)
             throw new IllegalArgumentException("This is not a thor games file : " + fn);
 
+        // check number of games vs header
+        final int nGames = in.remaining() / THOR_GAME_SIZE;
+        if (nGames != header.n1) {
+            throw new IllegalStateException("Wrong number of games in Thor games database " + fn);
+        }
+
         // read games
-        while (is.available() != 0) {
-            ThorGameInternal tg = new ThorGameInternal(is, header.year);
-            tgs.add(tg);
+        final ThorGameStore store = new ThorGameStore(nGames);
+        final byte[] moves = new byte[60];
+        for (int i = 0; i < nGames; i++) {
+            final char iTournament = in.getChar();
+            final char iBlackPlayer = in.getChar();
+            final char iWhitePlayer = in.getChar();
+            final byte nBlackDiscs = in.get();
+            final byte nPerfectDiscs = in.get();
+            for (int j = 0; j < moves.length; j++) {
+                // change Thor square numbers to Ntest square numbers.
+                // this is done now to increase the speed of the lookups.
+                final byte sq = NTEST_SQUARES[in.get() & 0xFF];
+                if (sq == -3) {
+                    throw new IllegalArgumentException("Invalid move in Thor games database " + fn);
+                }
+                moves[j] = sq;
+            }
+            // OpeningCode() also replaces illegal moves by -2, so it must be called before the moves are stored.
+            final int openingCode = ThorOpeningMap.OpeningCode(moves);
+            store.add(iTournament, iBlackPlayer, iWhitePlayer, nBlackDiscs, nPerfectDiscs, moves, header.year, openingCode);
             tracker.increment();
         }
         tracker.update(); // #L6. If nInvalid!=0 the tracker would otherwise display an incorrect number of games.
 
-        // check number of games vs header
-        int nGames = tgs.size();
-        if (nGames != header.n1) {
-            throw new IllegalStateException("Wrong number of games in Thor games database " + fn);
-        }
+        return store;
+    }
 
-        return tgs;
+    /**
+     * Read an entire file into a little-endian ByteBuffer
+     *
+     * @throws IllegalArgumentException if the file can't be read
+     */
+    private static ByteBuffer readFile(File fn) {
+        try (FileInputStream fis = new FileInputStream(fn)) {
+            final FileChannel channel = fis.getChannel();
+            final ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            }
+            buffer.flip();
+            return buffer.order(ByteOrder.LITTLE_ENDIAN);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
     }
 
     /**
@@ -228,17 +314,16 @@ public class Thor {
 
         // full check, that pos actually is equal
         for (int i = 0; i < 60 - nEmpty; i++) {
-            CMoves moves = new CMoves();
-            posGame.CalcMovesAndPass(moves);
+            final long moves = posGame.CalcMovesAndPass();
             final int sq = gameMoves[i];
             if (sq < 0)
                 return -1;
 
             // don't continue if the move is illegal
-            if (!GetBit(moves.All(), sq))
+            if (!GetBit(moves, sq))
                 return -1;
 
-            posGame.MakeMove(new CMove((byte) sq));
+            posGame.MakeMove(sq);
         }
         int iReflection = MatchesReflections(posGame.BitBoard(), reflections);
         if (iReflection < 0 && posGame.Mobility(true) == 0) {
@@ -256,11 +341,59 @@ public class Thor {
      * @return vector of indices of matching games, and vector of reflection indices that make the games match
      */
     static MatchingPositions ThorFindMatchingPositions(final ArrayList<ThorGameInternal> games, final COsBoard posMatch) {
+        return ThorFindMatchingPositions(ThorGameStore.of(games), posMatch);
+    }
+
+    /**
+     * Find games that have a position matching posMatch, and output the list of indices as index.
+     *
+     * @param games    thor games to check
+     * @param posMatch position to match
+     * @return vector of indices of matching games, and vector of reflection indices that make the games match
+     */
+    static MatchingPositions ThorFindMatchingPositions(final ThorGameStore games, final COsBoard posMatch) {
+        CBitBoard reflections[] = GetReflections(new CQPosition(posMatch).BitBoard());
+        return FindMatchingPositions(games, reflections, 0, games.size());
+    }
+
+    /**
+     * Find games that have a position matching posMatch, checking the games in parallel.
+     * <p/>
+     * The games are split into chunks which are checked by pool's threads. The result is identical to
+     * {@link #ThorFindMatchingPositions(ThorGameStore, COsBoard)}; in particular games are listed in increasing order.
+     *
+     * @param games    vector of thor games to check
+     * @param posMatch position to match
+     * @param pool     pool that checks the games
+     * @return vector of indices of matching games, and vector of reflection indices that make the games match
+     */
+    static MatchingPositions ThorFindMatchingPositions(final ThorGameStore games, final COsBoard posMatch, ForkJoinPool pool) {
         CBitBoard reflections[] = GetReflections(new CQPosition(posMatch).BitBoard());
+        final int gamesPerTask = Math.max(MIN_GAMES_PER_TASK, games.size() / (TASKS_PER_THREAD * pool.getParallelism()));
+        return pool.invoke(new MatchTask(games, reflections, 0, games.size(), gamesPerTask));
+    }
+
+    /**
+     * Smallest number of games checked by a single fork/join task. Checking a game takes about a microsecond,
+     * so smaller tasks would spend more time in scheduling than in checking.
+     */
+    private static final int MIN_GAMES_PER_TASK = 256;
+
+    /**
+     * Split the games into this many tasks per thread so that threads which finish early can steal work.
+     */
+    private static final int TASKS_PER_THREAD = 4;
+
+    /**
+     * Check games with index in [start, end)
+     */
+    private static MatchingPositions FindMatchingPositions(ThorGameStore games, CBitBoard[] reflections, int start, int end) {
         final MatchingPositions result = new MatchingPositions();
+        final byte[] gameMoves = new byte[ThorGameStore.MOVES_PER_GAME];
 
-        for (int i = 0; i < games.size(); i++) {
-            final int iReflection = GameMatches(games.get(i).moves, reflections);
+        for (int i = start; i < end; i++) {
+            games.getMoves(i, gameMoves);
+            final int iReflection = GameMatches(gameMoves, reflections);
             if (iReflection >= 0) {
                 result.index.add(i);
                 result.iReflections.add(iReflection);
@@ -269,11 +402,49 @@ public class Thor {
         return result;
     }
 
+    private static class MatchTask extends RecursiveTask<MatchingPositions> {
+        private final ThorGameStore games;
+        private final CBitBoard[] reflections;
+        private final int start;
+        private final int end;
+        private final int gamesPerTask;
+
+        MatchTask(ThorGameStore games, CBitBoard[] reflections, int start, int end, int gamesPerTask) {
+            this.games = games;
+            this.reflections = reflections;
+            this.start = start;
+            this.end = end;
+            this.gamesPerTask = gamesPerTask;
+        }
+
+        @Override protected MatchingPositions compute() {
+            if (end - start <= gamesPerTask) {
+                return FindMatchingPositions(games, reflections, start, end);
+            }
+            final int mid = (start + end) >>> 1;
+            final MatchTask low = new MatchTask(games, reflections, start, mid, gamesPerTask);
+            final MatchTask high = new MatchTask(games, reflections, mid, end, gamesPerTask);
+            low.fork();
+            final MatchingPositions highResult = high.compute();
+            final MatchingPositions result = low.join();
+            result.addAll(highResult);
+            return result;
+        }
+    }
+
     public static class MatchingPositions {
         // index vector of indices of matching games
         public final TIntArrayList index = new TIntArrayList();
         // iReflections vector of reflection indices that make the games match. Useful for ThorFindNextMoves().
         public final TIntArrayList iReflections = new TIntArrayList();
+
+        /**
+         * Append the matches from b to the matches in this.
+         */
+        void addAll(MatchingPositions b) {
+            index.addAll(b.index);
+            iReflections.addAll(b.iReflections);
+        }
     }
 
     /**
@@ -311,16 +482,30 @@ public class Thor {
      * @return summary data for the various moves from a position
      */
     static ThorSummary ThorSummarize(final ArrayList<ThorGameInternal> games, final COsBoard pos, final TIntArrayList index, final TIntArrayList iReflections) {
+        return ThorSummarize(ThorGameStore.of(games), pos, index, iReflections);
+    }
+
+    /**
+     * Summarize statistics of games played from the current position, by move.
+     *
+     * @param games        all games, including those not matching pos.
+     * @param pos          current board position
+     * @param index        list of games that contain a position matching pos. These are given as an index into games.
+     * @param iReflections list of reflection indices for each game in index. For each game, iReflections[i]
+     *                     is the reflection that maps a move in the game to a move in pos
+     * @return summary data for the various moves from a position
+     */
+    static ThorSummary ThorSummarize(final ThorGameStore games, final COsBoard pos, final TIntArrayList index, final TIntArrayList iReflections) {
         ThorSummary summary = new ThorSummary();
 
         final boolean fMustPass = !pos.hasLegalMove() && !pos.isGameOver();
 
         final int iMove = 60 - pos.nEmpty();
         for (int i = 0; i < index.size(); i++) {
-            final ThorGameInternal game = games.get(index.get(i));
+            final int iGame = index.get(i);
 
             // find move for pos
-            int mvReflected = game.moves[iMove];
+            int mvReflected = games.move(iGame, iMove);
             if (mvReflected != -2) {
                 int mv = fMustPass ? -1 : MoveFromIReflection(mvReflected, iReflections.get(i));
                 ThorSummaryData data = summary.get(mv);
@@ -330,8 +515,9 @@ public class Thor {
                 }
 
                 // game result: +1 for win, 0 for draw, -1 for loss
-                if (game.nBlackDiscs != 32) {
-                    if (game.nBlackDiscs > 32)
+                final byte nBlackDiscs = games.nBlackDiscs(iGame);
+                if (nBlackDiscs != 32) {
+                    if (nBlackDiscs > 32)
                         data.nBlackWins++;
                     else
                         data.nWhiteWins++;
@@ -27,7 +27,7 @@ class ThorGame8 {
     final char iBlackPlayer;    //*< Black player id from players db
     final char iWhitePlayer;    //*< White player id from players db
     final byte nBlackDiscs;    //*< Actual score, number of black discs at end of game
-    private final byte nPerfectDiscs; //*< Score with perfect play in the endgame from nPerfectPlay empties.
+    final byte nPerfectDiscs; //*< Score with perfect play in the endgame from nPerfectPlay empties.
     final byte moves[];        //*< column (1-8) + 10* row (1-8), so a1=11, h1=18, a8=81, h8=88
 
     ThorGame8(CBinaryReader is) {
@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.thor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Columnar storage for games.
+ * <p/>
+ * Storing each game as a separate ThorGameInternal costs several object and array headers per game. This class
+ * stores the moves of all games in a single buffer, {@link #MOVES_PER_GAME} bytes per game, and the other fields
+ * in parallel primitive arrays. Games are referred to by their index in the store.
+ */
+class ThorGameStore {
+    static final int MOVES_PER_GAME = 60;
+
+    private static final int MAGIC = 0x54474D53; // "TGMS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    /**
+     * Bytes used per game by the fields other than the moves: five chars and two bytes.
+     */
+    private static final int FIELD_BYTES_PER_GAME = 12;
+
+    private ByteBuffer moves;
+    private char[] tournaments;
+    private char[] blackPlayers;
+    private char[] whitePlayers;
+    private char[] years;
+    private char[] openingCodes;
+    private byte[] blackDiscs;
+    private byte[] perfectDiscs;
+    private int nGames;
+
+    ThorGameStore() {
+        this(16);
+    }
+
+    /**
+     * @param capacity number of games that can be added before the store needs to reallocate.
+     */
+    ThorGameStore(int capacity) {
+        this(ByteBuffer.allocate(Math.max(capacity, 1) * MOVES_PER_GAME), Math.max(capacity, 1));
+    }
+
+    private ThorGameStore(ByteBuffer moves, int capacity) {
+        this.moves = moves;
+        tournaments = new char[capacity];
+        blackPlayers = new char[capacity];
+        whitePlayers = new char[capacity];
+        years = new char[capacity];
+        openingCodes = new char[capacity];
+        blackDiscs = new byte[capacity];
+        perfectDiscs = new byte[capacity];
+    }
+
+    /**
+     * @return a store containing the given games, in order.
+     */
+    static ThorGameStore of(List<? extends ThorGameInternal> games) {
+        final ThorGameStore store = new ThorGameStore(games.size());
+        for (ThorGameInternal game : games) {
+            store.add(game);
+        }
+        return store;
+    }
+
+    void add(ThorGameInternal game) {
+        add(game.iTournament, game.iBlackPlayer, game.iWhitePlayer, game.nBlackDiscs, game.nPerfectDiscs, game.moves, game.year, game.openingCode);
+    }
+
+    /**
+     * Add a game to the end of the store.
+     *
+     * @param moves game moves, in ntest square format. Games with fewer than 60 moves are terminated by -2.
+     */
+    void add(int iTournament, int iBlackPlayer, int iWhitePlayer, int nBlackDiscs, int nPerfectDiscs, byte[] moves, int year, int openingCode) {
+        ensureCapacity(nGames + 1);
+        final int offset = nGames * MOVES_PER_GAME;
+        for (int i = 0; i < MOVES_PER_GAME; i++) {
+            this.moves.put(offset + i, i < moves.length ? moves[i] : -2);
+        }
+        tournaments[nGames] = (char) iTournament;
+        blackPlayers[nGames] = (char) iBlackPlayer;
+        whitePlayers[nGames] = (char) iWhitePlayer;
+        blackDiscs[nGames] = (byte) nBlackDiscs;
+        perfectDiscs[nGames] = (byte) nPerfectDiscs;
+        years[nGames] = (char) year;
+        openingCodes[nGames] = (char) openingCode;
+        nGames++;
+    }
+
+    /**
+     * Add all games in the other store to the end of this store.
+     */
+    void addAll(ThorGameStore other) {
+        ensureCapacity(nGames + other.nGames);
+        final ByteBuffer otherMoves = other.moves.duplicate();
+        otherMoves.position(0).limit(other.nGames * MOVES_PER_GAME);
+        final ByteBuffer dest = moves.duplicate();
+        dest.position(nGames * MOVES_PER_GAME);
+        dest.put(otherMoves);
+
+        System.arraycopy(other.tournaments, 0, tournaments, nGames, other.nGames);
+        System.arraycopy(other.blackPlayers, 0, blackPlayers, nGames, other.nGames);
+        System.arraycopy(other.whitePlayers, 0, whitePlayers, nGames, other.nGames);
+        System.arraycopy(other.years, 0, years, nGames, other.nGames);
+        System.arraycopy(other.openingCodes, 0, openingCodes, nGames, other.nGames);
+        System.arraycopy(other.blackDiscs, 0, blackDiscs, nGames, other.nGames);
+        System.arraycopy(other.perfectDiscs, 0, perfectDiscs, nGames, other.nGames);
+        nGames += other.nGames;
+    }
+
+    /**
+     * Make sure the store can hold nNeeded games.
+     */
+    private void ensureCapacity(int nNeeded) {
+        if (nNeeded > tournaments.length) {
+            reallocate(Math.max(nNeeded, nGames * 2));
+        }
+    }
+
+    private void reallocate(int capacity) {
+        final ByteBuffer newMoves = ByteBuffer.allocate(capacity * MOVES_PER_GAME);
+        final ByteBuffer oldMoves = moves.duplicate();
+        oldMoves.position(0).limit(nGames * MOVES_PER_GAME);
+        newMoves.put(oldMoves);
+        moves = newMoves;
+
+        tournaments = Arrays.copyOf(tournaments, capacity);
+        blackPlayers = Arrays.copyOf(blackPlayers, capacity);
+        whitePlayers = Arrays.copyOf(whitePlayers, capacity);
+        years = Arrays.copyOf(years, capacity);
+        openingCodes = Arrays.copyOf(openingCodes, capacity);
+        blackDiscs = Arrays.copyOf(blackDiscs, capacity);
+        perfectDiscs = Arrays.copyOf(perfectDiscs, capacity);
+    }
+
+    /**
+     * Remove all games and release their memory.
+     */
+    void clear() {
+        nGames = 0;
+        reallocate(1);
+    }
+
+    int size() {
+        return nGames;
+    }
+
+    char iTournament(int iGame) {
+        return tournaments[iGame];
+    }
+
+    char iBlackPlayer(int iGame) {
+        return blackPlayers[iGame];
+    }
+
+    char iWhitePlayer(int iGame) {
+        return whitePlayers[iGame];
+    }
+
+    /**
+     * @return Actual score, number of black discs at end of game
+     */
+    byte nBlackDiscs(int iGame) {
+        return blackDiscs[iGame];
+    }
+
+    char year(int iGame) {
+        return years[iGame];
+    }
+
+    char openingCode(int iGame) {
+        return openingCodes[iGame];
+    }
+
+    /**
+     * @return the move at the given ply, in ntest square format, or a negative number if the game has ended.
+     */
+    byte move(int iGame, int ply) {
+        return moves.get(iGame * MOVES_PER_GAME + ply);
+    }
+
+    /**
+     * Copy the moves of a game into dest
+     *
+     * @param dest destination; must have length at least {@link #MOVES_PER_GAME}
+     */
+    void getMoves(int iGame, byte[] dest) {
+        final int offset = iGame * MOVES_PER_GAME;
+        for (int i = 0; i < MOVES_PER_GAME; i++) {
+            dest[i] = moves.get(offset + i);
+        }
+    }
+
+    /**
+     * @return a copy of the game as a ThorGameInternal
+     */
+    ThorGameInternal get(int iGame) {
+        final byte[] gameMoves = new byte[MOVES_PER_GAME];
+        getMoves(iGame, gameMoves);
+        return new ThorGameInternal(tournaments[iGame], blackPlayers[iGame], whitePlayers[iGame], blackDiscs[iGame]
+                , perfectDiscs[iGame], gameMoves, years[iGame], openingCodes[iGame]);
+    }
+
+    /**
+     * Write the store to a file that can be read back with {@link #read(File)}.
+     */
+    void write(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(0);
+            write(raf.getChannel());
+        }
+    }
+
+    /**
+     * Write the store to a channel, starting at the channel's current position.
+     * It can be read back with {@link #read(FileChannel, long)}.
+     */
+    void write(FileChannel channel) throws IOException {
+        final ByteBuffer fields = ByteBuffer.allocate(HEADER_SIZE + FIELD_BYTES_PER_GAME * nGames);
+        fields.putInt(MAGIC).putInt(VERSION).putInt(nGames);
+        fields.asCharBuffer().put(tournaments, 0, nGames)
+                .put(blackPlayers, 0, nGames)
+                .put(whitePlayers, 0, nGames)
+                .put(years, 0, nGames)
+                .put(openingCodes, 0, nGames);
+        fields.position(HEADER_SIZE + 10 * nGames);
+        fields.put(blackDiscs, 0, nGames).put(perfectDiscs, 0, nGames);
+        fields.flip();
+        writeFully(channel, fields);
+
+        final ByteBuffer gameMoves = moves.duplicate();
+        gameMoves.position(0).limit(nGames * MOVES_PER_GAME);
+        writeFully(channel, gameMoves);
+    }
+
+    static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Read a store written by {@link #write(File)}.
+     *
+     * @throws IOException if the file can't be read or is not a game store
+     */
+    static ThorGameStore read(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return read(raf.getChannel(), 0);
+        }
+    }
+
+    /**
+     * Read a store written by {@link #write(FileChannel)}. The store must extend to the end of the channel.
+     * <p/>
+     * The store is read into the heap rather than memory-mapped: on Windows a mapped file stays locked until the
+     * mapping is collected, which would prevent the file from being replaced while the store is in use.
+     *
+     * @param offset position of the store in the channel
+     * @throws IOException if the channel can't be read or does not contain a game store at offset
+     */
+    static ThorGameStore read(FileChannel channel, long offset) throws IOException {
+        if (channel.size() < offset + HEADER_SIZE) {
+            throw new IOException("Not a game store");
+        }
+        final ByteBuffer header = readFully(channel, offset, HEADER_SIZE);
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new IOException("Not a game store");
+        }
+        final int n = header.getInt();
+        final long fieldsOffset = offset + HEADER_SIZE;
+        final long fieldsSize = (long) FIELD_BYTES_PER_GAME * n;
+        final long movesSize = (long) MOVES_PER_GAME * n;
+        if (n < 0 || channel.size() != fieldsOffset + fieldsSize + movesSize) {
+            throw new IOException("Game store has wrong length");
+        }
+
+        if (n == 0) {
+            return new ThorGameStore();
+        }
+        final ByteBuffer moves = readFully(channel, fieldsOffset + fieldsSize, (int) movesSize);
+        final ThorGameStore store = new ThorGameStore(moves, n);
+        final ByteBuffer fields = readFully(channel, fieldsOffset, (int) fieldsSize);
+        fields.asCharBuffer().get(store.tournaments, 0, n)
+                .get(store.blackPlayers, 0, n)
+                .get(store.whitePlayers, 0, n)
+                .get(store.years, 0, n)
+                .get(store.openingCodes, 0, n);
+        fields.position(10 * n);
+        fields.get(store.blackDiscs, 0, n).get(store.perfectDiscs, 0, n);
+        store.nGames = n;
+        return store;
+    }
+
+    /**
+     * @return a heap buffer containing length bytes of the channel, starting at position, ready for reading
+     */
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of game store");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -17,6 +17,8 @@ package com.welty.othello.thor;
 
 import com.welty.othello.c.CBinaryReader;
 
+import java.nio.ByteBuffer;
+
 /**
  * 16-byte header that occurs at the beginning of all thor databases
  */
@@ -33,6 +35,11 @@ import com.welty.othello.c.CBinaryReader;
     final byte nPerfectPlay;    //*< in games files, depth for which perfect play has been calculated. 0 is a default value meaning 22.
     private final byte reserved;        //*< Must be 0
 
+    /**
+     * Size of the header, in bytes
+     */
+    static final int SIZE = 16;
+
     public ThorHeader(CBinaryReader is) {
         crCentury = is.readByte();
         crYear = is.readByte();
@@ -46,4 +53,21 @@ import com.welty.othello.c.CBinaryReader;
         nPerfectPlay = is.readByte();
         reserved = is.readByte();
     }
+
+    /**
+     * Read the header from a little-endian ByteBuffer
+     */
+    public ThorHeader(ByteBuffer in) {
+        crCentury = in.get();
+        crYear = in.get();
+        crMonth = in.get();
+        crDay = in.get();
+        n1 = in.getInt();
+        n2 = in.getChar();
+        year = in.getChar();
+        boardSize = in.get();
+        fSolitaire = in.get() != 0;
+        nPerfectPlay = in.get();
+        reserved = in.get();
+    }
 }
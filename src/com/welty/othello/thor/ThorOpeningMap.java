@@ -20,10 +20,9 @@ import com.orbanova.common.feed.Predicate;
 import com.welty.othello.c.CReader;
 import com.welty.othello.core.CBitBoard;
 import com.welty.othello.core.CMove;
-import com.welty.othello.core.CMoves;
 import com.welty.othello.core.CQPosition;
+import com.welty.othello.core.PositionMap;
 import com.welty.othello.gdk.COsBoard;
-import gnu.trove.map.hash.TObjectIntHashMap;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
@@ -33,7 +32,7 @@ import java.util.List;
  * Opening lookup table
  */
 public class ThorOpeningMap {
-    private final TObjectIntHashMap<CBitBoard> openingMap = new TObjectIntHashMap<>();
+    private final PositionMap openingMap = new PositionMap();
     private final ArrayList<String> names = new ArrayList<>();
 
     /**
@@ -101,17 +100,13 @@ public class ThorOpeningMap {
             int mv = moves[i];
             if (mv < 0)
                 break;
-            CMoves legalMoves = new CMoves();
-            pos.CalcMovesAndPass(legalMoves);
-            if (!Thor.GetBit(legalMoves.All(), mv)) {
+            final long legalMoves = pos.CalcMovesAndPass();
+            if (!Thor.GetBit(legalMoves, mv)) {
                 moves[i] = -2;
                 break;
             }
-            pos.MakeMove(new CMove((byte) mv));
-            final CBitBoard bb = pos.BitBoard();
-            if (tom.openingMap.contains(bb)) {
-                openingCode = tom.openingMap.get(bb);
-            }
+            pos.MakeMove(mv);
+            openingCode = tom.openingMap.get(pos.BitBoard(), openingCode);
         }
         return openingCode;
     }
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.thor;
+
+import com.welty.othello.core.CBitBoard;
+import com.welty.othello.core.CanonicalForm;
+import com.welty.othello.core.CQPosition;
+import com.welty.othello.core.PositionMap;
+import com.welty.othello.gdk.COsBoard;
+
+import java.util.Arrays;
+
+/**
+ * Index from positions to the games that contain them.
+ * <p/>
+ * Every position of every game is stored under its minimal reflection, so a single lookup finds all games that
+ * contain any reflection of a position. Each entry in a position's posting list is a (game index, ply, reflection).
+ * <p/>
+ * The index is built once from a list of games. It does not track changes to the list; build a new index instead.
+ */
+class ThorPositionIndex {
+    /**
+     * Test pattern with no symmetries, used to calculate inverse symmetries.
+     */
+    private static final CBitBoard ASYMMETRIC = new CBitBoard(0x0107L, 0);
+
+    /**
+     * INVERSE[sym] is the symmetry that undoes sym
+     */
+    private static final int[] INVERSE = new int[8];
+
+    static {
+        for (int sym = 0; sym < 8; sym++) {
+            for (int inv = 0; inv < 8; inv++) {
+                if (ASYMMETRIC.Symmetry(sym).Symmetry(inv).equals(ASYMMETRIC)) {
+                    INVERSE[sym] = inv;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the symmetry that undoes sym
+     */
+    static int inverse(int sym) {
+        return INVERSE[sym];
+    }
+
+    // Map from minimal reflection to the first posting in its posting list
+    private final PositionMap firstPostings = new PositionMap(1024);
+
+    // Posting lists, stored as linked lists. Each posting is packed as (game index << 32) | (ply << 8) | reflection,
+    // where the reflection takes the game's position to the minimal reflection.
+    private long[] postings = new long[1024];
+    private int[] nextPostings = new int[1024];
+    private int nPostings;
+
+    /**
+     * Scratch space for calculating minimal reflections while building the index
+     */
+    private final CanonicalForm canonical = new CanonicalForm();
+
+    /**
+     * Build the index from a list of games.
+     *
+     * @param games games to index. Positions are indexed up to the end of the game or the first illegal move.
+     */
+    ThorPositionIndex(ThorGameStore games) {
+        final CQPosition pos = new CQPosition();
+        final byte[] moves = new byte[ThorGameStore.MOVES_PER_GAME];
+        for (int iGame = 0; iGame < games.size(); iGame++) {
+            games.getMoves(iGame, moves);
+            pos.Initialize();
+            for (int ply = 0; ; ply++) {
+                addPosition(pos.BitBoard(), iGame, ply);
+                // if the mover has to pass, the position after the pass also matches this ply
+                if (pos.Mobility(true) == 0) {
+                    pos.Pass();
+                    addPosition(pos.BitBoard(), iGame, ply);
+                    pos.Pass();
+                }
+                if (ply == 60 || moves[ply] < 0) {
+                    break;
+                }
+                final long legalMoves = pos.CalcMovesAndPass();
+                if (!Thor.GetBit(legalMoves, moves[ply])) {
+                    break;
+                }
+                pos.MakeMove(moves[ply]);
+            }
+        }
+    }
+
+    /**
+     * @return total number of (game, ply, reflection) entries in the index
+     */
+    int nPostings() {
+        return nPostings;
+    }
+
+    /**
+     * @return number of distinct minimal reflections in the index
+     */
+    int nPositions() {
+        return firstPostings.size();
+    }
+
+    /**
+     * Find games that have a position matching posMatch.
+     * <p/>
+     * The result is identical to {@link Thor#ThorFindMatchingPositions(ThorGameStore, COsBoard)}
+     * on the indexed games.
+     *
+     * @param posMatch position to match
+     * @return indices of matching games in increasing order, and the reflection indices that make the games match
+     */
+    Thor.MatchingPositions find(COsBoard posMatch) {
+        final CBitBoard bb = new CQPosition(posMatch).BitBoard();
+        final CBitBoard[] reflections = Thor.GetReflections(bb);
+        final CBitBoard minimal = bb.MinimalReflection();
+
+        final Thor.MatchingPositions result = new Thor.MatchingPositions();
+        // postings are linked in reverse order; collect and sort them so games come out in increasing order.
+        int n = 0;
+        long[] found = new long[16];
+        for (int iPosting = firstPostings.get(minimal, -1); iPosting >= 0; iPosting = nextPostings[iPosting]) {
+            if (n == found.length) {
+                found = Arrays.copyOf(found, n * 2);
+            }
+            found[n++] = postings[iPosting];
+        }
+        Arrays.sort(found, 0, n);
+
+        // the reflection that takes the query position to the game position, indexed by the posting's reflection.
+        final int[] matchingReflections = new int[8];
+        Arrays.fill(matchingReflections, -1);
+        for (int i = 0; i < n; i++) {
+            final int iGame = (int) (found[i] >>> 32);
+            final int gameReflection = (int) (found[i] & 7);
+            if (matchingReflections[gameReflection] < 0) {
+                final CBitBoard gameBoard = minimal.Symmetry(INVERSE[gameReflection]);
+                for (int reflection = 0; reflection < 8; reflection++) {
+                    if (reflections[reflection].equals(gameBoard)) {
+                        matchingReflections[gameReflection] = reflection;
+                        break;
+                    }
+                }
+            }
+            result.index.add(iGame);
+            result.iReflections.add(matchingReflections[gameReflection]);
+        }
+        return result;
+    }
+
+    private void addPosition(CBitBoard bb, int iGame, int ply) {
+        final CanonicalForm minimal = canonical.set(bb);
+        final int reflection = minimal.sym;
+
+        final int first = firstPostings.get(minimal.mover, minimal.empty, -1);
+        // a pass can give the same minimal reflection as the position before the pass; store the game once.
+        if (first >= 0 && (postings[first] >>> 32) == iGame) {
+            return;
+        }
+
+        if (nPostings == postings.length) {
+            postings = Arrays.copyOf(postings, nPostings * 2);
+            nextPostings = Arrays.copyOf(nextPostings, nPostings * 2);
+        }
+        postings[nPostings] = ((long) iGame << 32) | (ply << 8) | reflection;
+        nextPostings[nPostings] = first;
+        firstPostings.put(minimal.mover, minimal.empty, nPostings);
+        nPostings++;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.thor;
+
+import com.welty.othello.core.CBitBoard;
+import com.welty.othello.core.CQPosition;
+import com.welty.othello.gdk.COsBoard;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of game summaries, by position.
+ * <p/>
+ * Summaries are stored as per-move counts under the minimal reflection of the position, so every reflection
+ * of a cached position is answered from the cache in time proportional to the number of distinct moves rather
+ * than the number of games. Stepping back through a game only visits cached positions.
+ * <p/>
+ * Positions that are their own reflection (such as the start position) are stored exactly as given, because
+ * the summary of such a position depends on its orientation: games are credited to the first matching reflection.
+ * <p/>
+ * The least recently used summaries are discarded when the cache is full. The cache must be cleared whenever
+ * the games change.
+ */
+class ThorSummaryCache {
+    private final LinkedHashMap<CBitBoard, Counts> cache;
+
+    /**
+     * @param capacity maximum number of positions held in the cache.
+     */
+    ThorSummaryCache(final int capacity) {
+        cache = new LinkedHashMap<CBitBoard, Counts>(16, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(Map.Entry<CBitBoard, Counts> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @return the cached summary for pos, or null if pos is not in the cache.
+     */
+    @Nullable ThorSummary get(COsBoard pos) {
+        final Key key = new Key(pos);
+        final Counts counts = cache.get(key.board);
+        if (counts == null) {
+            return null;
+        }
+        final ThorSummary summary = new ThorSummary();
+        for (int i = 0; i < counts.moves.length; i++) {
+            final ThorSummaryData data = new ThorSummaryData();
+            data.nBlackWins = counts.nBlackWins[i];
+            data.nWhiteWins = counts.nWhiteWins[i];
+            data.nPlayed = counts.nPlayed[i];
+            data.CalcScore(pos.fBlackMove);
+            data.CalcFrequency(counts.nGames);
+            summary.put(Thor.MoveFromIReflection(counts.moves[i], key.reflection), data);
+        }
+        return summary;
+    }
+
+    /**
+     * Store the summary for pos.
+     *
+     * @param nGames number of games that contain pos, used to calculate move frequencies.
+     */
+    void put(COsBoard pos, ThorSummary summary, int nGames) {
+        final Key key = new Key(pos);
+        final int forward = ThorPositionIndex.inverse(key.reflection);
+        final Counts counts = new Counts(summary.size(), nGames);
+        final int[] moves = summary.keys();
+        for (int i = 0; i < moves.length; i++) {
+            final ThorSummaryData data = summary.get(moves[i]);
+            counts.moves[i] = Thor.MoveFromIReflection(moves[i], forward);
+            counts.nBlackWins[i] = data.nBlackWins;
+            counts.nWhiteWins[i] = data.nWhiteWins;
+            counts.nPlayed[i] = data.nPlayed;
+        }
+        cache.put(key.board, counts);
+    }
+
+    void clear() {
+        cache.clear();
+    }
+
+    int size() {
+        return cache.size();
+    }
+
+    /**
+     * Board stored in the cache for a position, and the reflection that takes the position to the stored board
+     */
+    private static class Key {
+        final CBitBoard board;
+        final int reflection;
+
+        Key(COsBoard pos) {
+            final CBitBoard bb = new CQPosition(pos).BitBoard();
+            CBitBoard minimal = bb;
+            int minimalReflection = 0;
+            for (int sym = 1; sym < 8; sym++) {
+                final CBitBoard candidate = bb.Symmetry(sym);
+                if (candidate.equals(bb)) {
+                    // symmetric position; store it as is.
+                    minimal = bb;
+                    minimalReflection = 0;
+                    break;
+                }
+                if (candidate.compareTo(minimal) < 0) {
+                    minimal = candidate;
+                    minimalReflection = sym;
+                }
+            }
+            board = minimal;
+            reflection = minimalReflection;
+        }
+    }
+
+    /**
+     * Summary counts for each move, in the orientation of the stored board
+     */
+    private static class Counts {
+        final int nGames;
+        final int[] moves;
+        final int[] nBlackWins;
+        final int[] nWhiteWins;
+        final int[] nPlayed;
+
+        Counts(int nMoves, int nGames) {
+            this.nGames = nGames;
+            moves = new int[nMoves];
+            nBlackWins = new int[nMoves];
+            nWhiteWins = new int[nMoves];
+            nPlayed = new int[nMoves];
+        }
+    }
+}
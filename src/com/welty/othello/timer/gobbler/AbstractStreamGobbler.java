@@ -16,19 +16,83 @@
 package com.welty.othello.timer.gobbler;
 
 import java.io.Closeable;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
 
 /**
+ * Reads the output of an external program and passes it to a handler.
+ * <p/>
+ * A gobbler can be run on a thread of the caller's choosing via {@link #run()}, or started with
+ * {@link #start(Process)}, in which case it is serviced by a single reader thread shared by all started
+ * gobblers. Either way {@link #close()} is called once the stream ends.
  * <PRE>
  * User: Chris
  * Date: Jul 24, 2009
  * Time: 11:06:08 PM
  * </PRE>
  */
-public abstract class AbstractStreamGobbler extends Thread implements Closeable {
-    InputStream is;
+public abstract class AbstractStreamGobbler implements Runnable, Closeable {
+    final InputStream is;
+    private final CountDownLatch finished = new CountDownLatch(1);
 
     AbstractStreamGobbler(InputStream is) {
         this.is = is;
     }
+
+    /**
+     * Read the stream to the end on the current thread.
+     */
+    @Override public void run() {
+        final byte[] buffer = new byte[SharedStreamReader.BUFFER_SIZE];
+        try {
+            int n;
+            while ((n = is.read(buffer)) >= 0) {
+                handleBytes(buffer, 0, n);
+            }
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+        }
+        finish();
+    }
+
+    /**
+     * Start reading the stream on the shared reader thread.
+     * <p/>
+     * The handlers are then called on the shared thread and must not block.
+     *
+     * @param process the process that writes the stream. Once it has exited, the rest of the stream is read
+     *                and the gobbler finishes.
+     */
+    public void start(Process process) {
+        SharedStreamReader.INSTANCE.add(this, process);
+    }
+
+    /**
+     * Wait until the stream has ended and the gobbler has been closed.
+     */
+    public void join() throws InterruptedException {
+        finished.await();
+    }
+
+    /**
+     * Called with each block of bytes read from the stream
+     */
+    abstract void handleBytes(byte[] b, int off, int len);
+
+    /**
+     * Called once when the stream ends, before close()
+     */
+    void endOfStream() {
+    }
+
+    final void finish() {
+        endOfStream();
+        try {
+            close();
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+        }
+        finished.countDown();
+    }
 }
@@ -15,10 +15,10 @@
 
 package com.welty.othello.timer.gobbler;
 
-import java.io.IOException;
 import java.io.InputStream;
 
 /**
+ * Gobbler that passes each character of the stream to {@link #handleChar(char)}.
  * <PRE>
  * User: Chris
  * Date: Jul 24, 2009
@@ -30,20 +30,9 @@ public abstract class CharBufferedStreamGobbler extends AbstractStreamGobbler {
         super(is);
     }
 
-    @Override public void run() {
-        int c;
-        try {
-            while (-1 != (c=is.read())) {
-                handleChar((char)c);
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        try {
-            close();
-        }
-        catch(IOException ioe) {
-            ioe.printStackTrace();
+    @Override final void handleBytes(byte[] b, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            handleChar((char) (b[i] & 0xFF));
         }
     }
 
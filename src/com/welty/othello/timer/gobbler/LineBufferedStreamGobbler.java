@@ -15,10 +15,15 @@
 
 package com.welty.othello.timer.gobbler;
 
-import java.io.*;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
 
 /**
- * A thread that gobbles input from InputStream by repeated calls to readLine(), for use by Runtime.exec().
+ * A gobbler that splits input from an InputStream into lines, for use by Runtime.exec().
+ * <p/>
+ * Lines are split and decoded as {@link java.io.BufferedReader#readLine()} would with the platform default charset:
+ * a line ends at '\n', '\r' or "\r\n", and a final line with no terminator is also passed to handleLine.
  * <PRE>
  * User: Chris
  * Date: Jul 23, 2009
@@ -26,36 +31,51 @@ import java.io.*;
  * </PRE>
  */
 public abstract class LineBufferedStreamGobbler extends AbstractStreamGobbler {
+    private byte[] line = new byte[256];
+    private int lineLength;
+    private boolean skipLf;
+
     /**
-     * Creates a StreamGobbler thread. The gobbler has not been started; the caller must call start() to start it.
+     * Creates a StreamGobbler. The gobbler has not been started; the caller must call start() or run().
+     *
      * @param is inputStream from the Exec process
      */
     protected LineBufferedStreamGobbler(InputStream is) {
         super(is);
     }
 
-    /**
-     * creates readers to handle the text created by the external program
-     */
-    public void run() {
-        try {
-            InputStreamReader isr = new InputStreamReader(is);
-            BufferedReader br = new BufferedReader(isr);
-            String line;
-            while ((line = br.readLine()) != null) {
-                handleLine(line);
+    @Override final void handleBytes(byte[] b, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            final byte c = b[i];
+            if (skipLf) {
+                skipLf = false;
+                if (c == '\n') {
+                    continue;
+                }
+            }
+            if (c == '\n' || c == '\r') {
+                skipLf = c == '\r';
+                endLine();
+            } else {
+                if (lineLength == line.length) {
+                    line = Arrays.copyOf(line, line.length * 2);
+                }
+                line[lineLength++] = c;
             }
-        } catch (IOException ioe) {
-            ioe.printStackTrace();
-        }
-        try {
-            close();
         }
-        catch(IOException ioe) {
-            ioe.printStackTrace();
+    }
+
+    @Override void endOfStream() {
+        if (lineLength > 0) {
+            endLine();
         }
     }
 
+    private void endLine() {
+        handleLine(new String(line, 0, lineLength, Charset.defaultCharset()));
+        lineLength = 0;
+    }
+
     /**
      * called for each line of text read by the gobbler
      */
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.timer.gobbler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A single daemon thread that reads the output streams of any number of processes.
+ * <p/>
+ * Process streams can't be used with a NIO selector, so the thread polls each stream with
+ * {@link java.io.InputStream#available()} and only reads data that is already there; it never blocks on one stream
+ * while another has output. When no stream has data it sleeps briefly.
+ * <p/>
+ * The end of a stream can't be detected without a read that might block, so a stream is finished once its process
+ * has exited and no data has arrived for {@link #DRAIN_TIMEOUT} ms. A process that has exited usually writes nothing
+ * more, but a child process that inherited the stream can keep it open indefinitely.
+ * <p/>
+ * The gobblers' handlers are called on the shared thread, so they must not block; a handler that blocks stops
+ * the output of every process from being read.
+ * <p/>
+ * This replaces a thread per stream, which distorts timings when many engine copies are running.
+ */
+final class SharedStreamReader implements Runnable {
+    static final SharedStreamReader INSTANCE = new SharedStreamReader();
+
+    static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Time to sleep when no stream has data, in milliseconds
+     */
+    private static final long POLL_INTERVAL = 2;
+
+    /**
+     * Time after a process exits, or after data last arrived once it has exited, at which its streams are
+     * considered finished, in milliseconds
+     */
+    static final long DRAIN_TIMEOUT = 100;
+
+    /**
+     * Gobblers that have not finished. Guarded by this.
+     */
+    private final List<Entry> entries = new ArrayList<>();
+    private Thread thread;
+
+    private SharedStreamReader() {
+    }
+
+    synchronized void add(AbstractStreamGobbler gobbler, Process process) {
+        entries.add(new Entry(gobbler, process));
+        if (thread == null) {
+            thread = new Thread(this, "Stream gobbler");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        notifyAll();
+    }
+
+    @Override public void run() {
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        final List<Entry> active = new ArrayList<>();
+        try {
+            while (true) {
+                synchronized (this) {
+                    while (entries.isEmpty()) {
+                        wait();
+                    }
+                    active.clear();
+                    active.addAll(entries);
+                }
+                boolean readData = false;
+                for (Entry entry : active) {
+                    switch (entry.poll(buffer)) {
+                        case DATA:
+                            readData = true;
+                            break;
+                        case FINISHED:
+                            synchronized (this) {
+                                entries.remove(entry);
+                            }
+                            break;
+                        default:
+                            break;
+                    }
+                }
+                if (!readData) {
+                    Thread.sleep(POLL_INTERVAL);
+                }
+            }
+        } catch (InterruptedException e) {
+            // daemon thread; nothing to clean up
+        }
+    }
+
+    private enum PollResult {
+        DATA, NO_DATA, FINISHED
+    }
+
+    private static class Entry {
+        private final AbstractStreamGobbler gobbler;
+        private final Process process;
+        /**
+         * Time the process was first seen to have exited or, after that, data last arrived, from System.nanoTime();
+         * or -1 if the process has not exited.
+         */
+        private long drainStart = -1;
+
+        Entry(AbstractStreamGobbler gobbler, Process process) {
+            this.gobbler = gobbler;
+            this.process = process;
+        }
+
+        /**
+         * Read whatever data is available without blocking.
+         */
+        PollResult poll(byte[] buffer) {
+            try {
+                final int available = gobbler.is.available();
+                if (available > 0) {
+                    final int n = gobbler.is.read(buffer, 0, Math.min(available, buffer.length));
+                    if (n >= 0) {
+                        gobbler.handleBytes(buffer, 0, n);
+                        if (drainStart >= 0) {
+                            drainStart = System.nanoTime();
+                        }
+                        return PollResult.DATA;
+                    }
+                    gobbler.finish();
+                    return PollResult.FINISHED;
+                }
+            } catch (IOException ioe) {
+                ioe.printStackTrace();
+                gobbler.finish();
+                return PollResult.FINISHED;
+            }
+            if (drainStart < 0) {
+                if (!hasExited(process)) {
+                    return PollResult.NO_DATA;
+                }
+                drainStart = System.nanoTime();
+            }
+            if (System.nanoTime() - drainStart > DRAIN_TIMEOUT * 1000000) {
+                gobbler.finish();
+                return PollResult.FINISHED;
+            }
+            return PollResult.NO_DATA;
+        }
+    }
+
+    private static boolean hasExited(Process process) {
+        try {
+            process.exitValue();
+            return true;
+        } catch (IllegalThreadStateException e) {
+            return false;
+        }
+    }
+}
@@ -34,7 +34,7 @@ final class NtestInputStreamGobbler extends LineBufferedStreamGobbler {
     private volatile double midgameResult;
 
     /**
-     * Creates a GreppingStreamGobbler thread. The gobbler has not been started; the caller must call start() to start it.
+     * Creates a GreppingStreamGobbler. The gobbler has not been started; the caller must call start() or run().
      *
      * @param is inputStream from the Exec process
      */
@@ -34,9 +34,23 @@ public class OthelloTimer {
     public static final boolean isMac = OperatingSystem.os == OperatingSystem.MACINTOSH;
     private static final String COMMAND = isMac ? "./ntest t" : "o.exe t";
 
+    /**
+     * Usage:
+     * <PRE>
+     * OthelloTimer                                      (prompts for inputs)
+     * OthelloTimer nCopies machineName processorType
+     * OthelloTimer -sweep nTrials nWarmup machineName processorType [maxCopies]
+     * </PRE>
+     * The sweep mode times every number of copies from 1 to maxCopies (default: number of processors), with
+     * nWarmup untimed runs and nTrials timed runs at each, and reports statistics of the results.
+     */
     public static void main(String[] args) {
         final boolean useGui = args.length < 3;
         try {
+            if (args.length > 0 && args[0].equals("-sweep")) {
+                sweep(args);
+                return;
+            }
             final Inputs inputs;
             if (useGui) {
                 inputs = InputsDialog.getInputs();
@@ -55,27 +69,105 @@ public class OthelloTimer {
 
     private static void run(Inputs inputs) throws IOException, InterruptedException {
         System.out.println("Starting othello endgame timing test for " + inputs.machineName + " with " + inputs.nCopies + " copies");
+        final ArrayList<TimerProcess> processes = startProcesses(inputs.nCopies);
+
+        ProgressWindow progressWindow = createProgressWindow(processes);
+
+        final Speeds speeds = waitForSpeeds(processes);
+
+        progressWindow.setEndgameResult(speeds.endgameMn);
+        progressWindow.setMidgameResult(speeds.midgameMn);
+        outputResults(inputs, speeds.endgameMn, speeds.midgameMn);
+    }
+
+    private static ArrayList<TimerProcess> startProcesses(int nCopies) throws IOException {
         final ArrayList<TimerProcess> processes = new ArrayList<>();
-        for (int i = 0; i < inputs.nCopies; i++) {
+        for (int i = 0; i < nCopies; i++) {
             final TimerProcess process = TimerProcess.execGrep(COMMAND);
             processes.add(process);
         }
+        return processes;
+    }
 
-        ProgressWindow progressWindow = createProgressWindow(processes);
-
-        double endgameMn = 0;
-        double midgameMn = 0;
-
+    /**
+     * Wait for the processes to complete.
+     *
+     * @return total speeds of all processes
+     */
+    private static Speeds waitForSpeeds(ArrayList<TimerProcess> processes) throws InterruptedException {
+        final Speeds speeds = new Speeds();
         for (TimerProcess process : processes) {
             process.process.waitFor();
             final NtestInputStreamGobbler gobbler = process.inputGobbler;
-            endgameMn += gobbler.getEndgameResult();
-            midgameMn += gobbler.getMidgameResult();
+            speeds.endgameMn += gobbler.getEndgameResult();
+            speeds.midgameMn += gobbler.getMidgameResult();
         }
+        return speeds;
+    }
 
-        progressWindow.setEndgameResult(endgameMn);
-        progressWindow.setMidgameResult(midgameMn);
-        outputResults(inputs, endgameMn, midgameMn);
+    /**
+     * Total speeds, in Mn/s, of all copies in a run
+     */
+    private static class Speeds {
+        double endgameMn;
+        double midgameMn;
+    }
+
+    /**
+     * Time each number of copies repeatedly and write statistics of the results to stats.csv.
+     */
+    private static void sweep(String[] args) throws IOException, InterruptedException {
+        if (args.length < 5) {
+            throw new IllegalArgumentException("usage: OthelloTimer -sweep nTrials nWarmup machineName processorType [maxCopies]");
+        }
+        final int nTrials = getInt(args[1], "number of trials", 2);
+        final int nWarmup = getInt(args[2], "number of warmup runs", 0);
+        final Inputs inputs = new Inputs(0, checkName(args[3], "machine name"), checkName(args[4], "processor type"));
+        final int maxCopies = args.length > 5 ? getInt(args[5], "maximum number of copies", 1)
+                : Runtime.getRuntime().availableProcessors();
+
+        System.out.println("Starting othello timing sweep for " + inputs.machineName + " with 1.." + maxCopies
+                + " copies, " + nTrials + " trials each");
+        System.out.println("copies  midgame Mn/s (95% CI)     eff   endgame Mn/s (95% CI)     eff");
+        double midgameSingle = 0;
+        double endgameSingle = 0;
+        for (int nCopies = 1; nCopies <= maxCopies; nCopies++) {
+            for (int i = 0; i < nWarmup; i++) {
+                waitForSpeeds(startProcesses(nCopies));
+            }
+            final SpeedStatistics midgame = new SpeedStatistics();
+            final SpeedStatistics endgame = new SpeedStatistics();
+            for (int i = 0; i < nTrials; i++) {
+                final Speeds speeds = waitForSpeeds(startProcesses(nCopies));
+                midgame.add(speeds.midgameMn);
+                endgame.add(speeds.endgameMn);
+            }
+            if (nCopies == 1) {
+                midgameSingle = midgame.mean();
+                endgameSingle = endgame.mean();
+            }
+            final double midgameEfficiency = SpeedStatistics.efficiency(midgame.mean(), nCopies, midgameSingle);
+            final double endgameEfficiency = SpeedStatistics.efficiency(endgame.mean(), nCopies, endgameSingle);
+            System.out.format("%6d  %8.1f +/- %-8.1f (sd %5.1f) %4.2f  %8.1f +/- %-8.1f (sd %5.1f) %4.2f%n", nCopies,
+                    midgame.mean(), midgame.confidenceHalfWidth(), midgame.stdDev(), midgameEfficiency,
+                    endgame.mean(), endgame.confidenceHalfWidth(), endgame.stdDev(), endgameEfficiency);
+            outputStatistics(inputs, nCopies, midgame, midgameEfficiency, endgame, endgameEfficiency);
+        }
+    }
+
+    private static void outputStatistics(Inputs inputs, int nCopies, SpeedStatistics midgame, double midgameEfficiency,
+                                         SpeedStatistics endgame, double endgameEfficiency) throws IOException {
+        final File file = new File("stats.csv");
+        final boolean printHeaderRow = !file.exists();
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(file, true)))) {
+            if (printHeaderRow) {
+                out.println("processor,manufacturer,# copies,# trials,midgame mean,midgame stddev,midgame ci95,midgame efficiency," +
+                        "endgame mean,endgame stddev,endgame ci95,endgame efficiency");
+            }
+            out.format("%s,%s,%d,%d,%.2f,%.2f,%.2f,%.3f,%.2f,%.2f,%.2f,%.3f%n", inputs.processorType, inputs.machineName,
+                    nCopies, midgame.n(), midgame.mean(), midgame.stdDev(), midgame.confidenceHalfWidth(), midgameEfficiency,
+                    endgame.mean(), endgame.stdDev(), endgame.confidenceHalfWidth(), endgameEfficiency);
+        }
     }
 
     private static void outputResults(Inputs inputs, double endgameMn, double midgameMn) {
@@ -110,17 +202,34 @@ public class OthelloTimer {
     }
 
     private static String getMachineName(String[] args) {
-        if (isBad(args[1])) {
-            throw new IllegalArgumentException("second argument (machine name) must not contain spaces or special characters, was: '" + args[1] + "'");
-        }
-        return args[1];
+        return checkName(args[1], "second argument (machine name)");
     }
 
     private static String getProcessorType(String[] args) {
-        if (isBad(args[2])) {
-            throw new IllegalArgumentException("third argument (processor type) must not contain spaces or special characters, was: '" + args[1] + "'");
+        return checkName(args[2], "third argument (processor type)");
+    }
+
+    private static String checkName(String arg, String description) {
+        if (isBad(arg)) {
+            throw new IllegalArgumentException(description + " must not contain spaces or special characters, was: '" + arg + "'");
+        }
+        return arg;
+    }
+
+    /**
+     * @return arg as an integer
+     * @throws IllegalArgumentException if arg is not an integer >= min
+     */
+    static int getInt(String arg, String name, int min) {
+        try {
+            final int value = Integer.parseInt(arg);
+            if (value >= min) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // throw below
         }
-        return args[2];
+        throw new IllegalArgumentException(name + " must be an integer >= " + min + ", was: '" + arg + "'");
     }
 
     static boolean isBad(String machineName) {
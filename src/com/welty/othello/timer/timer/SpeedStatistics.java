@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.timer.timer;
+
+/**
+ * Summary statistics of repeated speed measurements.
+ * <p/>
+ * Confidence intervals use Student's t distribution, since the number of trials is usually small.
+ */
+class SpeedStatistics {
+    /**
+     * Two-sided 95% critical values of Student's t distribution for 1..30 degrees of freedom
+     */
+    private static final double[] T_95 = {
+            12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+            2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+            2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042
+    };
+
+    private int n;
+    private double mean;
+    // sum of squared differences from the mean
+    private double m2;
+
+    void add(double x) {
+        n++;
+        final double delta = x - mean;
+        mean += delta / n;
+        m2 += delta * (x - mean);
+    }
+
+    int n() {
+        return n;
+    }
+
+    /**
+     * @return mean of the measurements, or NaN if there are none
+     */
+    double mean() {
+        return n == 0 ? Double.NaN : mean;
+    }
+
+    /**
+     * @return sample standard deviation of the measurements, or NaN if there are fewer than 2
+     */
+    double stdDev() {
+        return n < 2 ? Double.NaN : Math.sqrt(m2 / (n - 1));
+    }
+
+    /**
+     * The 95% confidence interval for the mean is mean() +/- confidenceHalfWidth().
+     *
+     * @return half-width of the interval, or NaN if there are fewer than 2 measurements
+     */
+    double confidenceHalfWidth() {
+        return n < 2 ? Double.NaN : t95(n - 1) * stdDev() / Math.sqrt(n);
+    }
+
+    /**
+     * @return two-sided 95% critical value of Student's t distribution. Beyond the table, the value for the
+     * next lower tabulated number of degrees of freedom is used, which slightly widens the interval.
+     */
+    static double t95(int degreesOfFreedom) {
+        if (degreesOfFreedom <= T_95.length) {
+            return T_95[degreesOfFreedom - 1];
+        }
+        if (degreesOfFreedom < 40) {
+            return T_95[T_95.length - 1];
+        }
+        if (degreesOfFreedom < 60) {
+            return 2.021;
+        }
+        if (degreesOfFreedom < 120) {
+            return 2.000;
+        }
+        return 1.980;
+    }
+
+    /**
+     * Scaling efficiency: the speed of nCopies copies relative to nCopies times the speed of a single copy.
+     *
+     * @param speed           total speed of all copies
+     * @param nCopies         number of copies
+     * @param singleCopySpeed speed of a single copy running alone
+     * @return efficiency, 1.0 for perfect scaling
+     */
+    static double efficiency(double speed, int nCopies, double singleCopySpeed) {
+        return speed / (nCopies * singleCopySpeed);
+    }
+}
@@ -39,8 +39,8 @@ class TimerProcess {
         final Process process = Runtime.getRuntime().exec(commandName);
         final NtestInputStreamGobbler inputGobbler = new NtestInputStreamGobbler(process.getInputStream());
         final NtestErrorStreamGobbler errorGobbler = new NtestErrorStreamGobbler(process.getErrorStream());
-        inputGobbler.start();
-        errorGobbler.start();
+        inputGobbler.start(process);
+        errorGobbler.start(process);
         return new TimerProcess(process, inputGobbler, errorGobbler);
     }
 }
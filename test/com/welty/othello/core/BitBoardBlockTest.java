@@ -49,6 +49,19 @@ public class BitBoardBlockTest extends TestCase {
         assertHex(0x0080000000000000L, BitBoardBlock.symmetry(0x02, 7));
     }
 
+    /**
+     * Compare the flips to a square-by-square calculation
+     */
+    public void testFlipsMoveEachSquare() {
+        for (int sq = 0; sq < 64; sq++) {
+            final int row = sq >> 3;
+            final int col = sq & 7;
+            assertHex(1L << (row * 8 + 7 - col), BitBoardBlock.flipHorizontal(1L << sq));
+            assertHex(1L << ((7 - row) * 8 + col), BitBoardBlock.flipVertical(1L << sq));
+            assertHex(1L << (col * 8 + row), BitBoardBlock.flipDiagonal(1L << sq));
+        }
+    }
+
     private void assertHex(long expected, long actual) {
         assertEquals(Long.toHexString(expected), Long.toHexString(actual));
     }
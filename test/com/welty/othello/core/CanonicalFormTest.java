@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.core;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+public class CanonicalFormTest extends TestCase {
+    public void testMatchesSymmetry() {
+        final Random random = new Random(1);
+        final CanonicalForm canonical = new CanonicalForm();
+        for (int i = 0; i < 10000; i++) {
+            final long empty = random.nextLong();
+            final CBitBoard bb = new CBitBoard(random.nextLong() & ~empty, empty);
+            checkCanonical(canonical, bb);
+        }
+    }
+
+    public void testSymmetricPositions() {
+        final CanonicalForm canonical = new CanonicalForm();
+        final CQPosition start = new CQPosition();
+        checkCanonical(canonical, start.BitBoard());
+        // every reflection of the start position is itself or its 90 degree rotation
+        for (int sym = 0; sym < 8; sym++) {
+            checkCanonical(canonical, start.BitBoard().Symmetry(sym));
+        }
+        checkCanonical(canonical, new CBitBoard(0, -1L));
+    }
+
+    /**
+     * Check that the canonical form is the first minimal symmetry of bb, and matches MinimalReflection()
+     */
+    private static void checkCanonical(CanonicalForm canonical, CBitBoard bb) {
+        int expectedSym = 0;
+        CBitBoard expected = bb;
+        for (int sym = 1; sym < 8; sym++) {
+            if (bb.Symmetry(sym).compareTo(expected) < 0) {
+                expected = bb.Symmetry(sym);
+                expectedSym = sym;
+            }
+        }
+        canonical.set(bb);
+        assertEquals(expected, canonical.toBitBoard());
+        assertEquals(expectedSym, canonical.sym);
+        assertEquals(expected, bb.Symmetry(canonical.sym));
+        assertEquals(expected, bb.MinimalReflection());
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.core;
+
+import com.welty.othello.protocol.NodeStatsResponse;
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+public class EndgameSolverTest extends TestCase {
+    public void testGameOver() {
+        // full board, mover has 40 discs
+        final EndgameSolver.Result result = new EndgameSolver(1).solve(0xFFFFFFFFFFL, 0);
+        assertEquals(16, result.score);
+        assertEquals(-1, result.bestMove);
+
+        // mover has a disc on A1, enemy has discs on G8 and H8: neither side can move
+        final EndgameSolver.Result blocked = new EndgameSolver(1).solve(1L, ~(1L | 3L << 62));
+        assertEquals(-62, blocked.score);
+    }
+
+    /**
+     * The solver must agree with a plain minimax search, and its best move must achieve the score
+     */
+    public void testMatchesMinimax() {
+        final Random random = new Random(3);
+        final EndgameSolver solver = new EndgameSolver(1);
+        for (int i = 0; i < 40; i++) {
+            final CQPosition pos = randomPosition(random, 8 + random.nextInt(3));
+            final CBitBoard bb = pos.BitBoard();
+            final EndgameSolver.Result result = solver.solve(pos);
+            assertEquals(pos.toString(), minimax(bb.mover, bb.empty, false), result.score);
+            checkBestMove(solver, bb, result);
+        }
+    }
+
+    /**
+     * Multithreaded solves must give the same scores as single-threaded solves
+     */
+    public void testThreads() {
+        final Random random = new Random(4);
+        final EndgameSolver single = new EndgameSolver(1);
+        final EndgameSolver multi = new EndgameSolver(4, new TranspositionTable(1 << 12));
+        for (int i = 0; i < 10; i++) {
+            final CQPosition pos = randomPosition(random, 12 + random.nextInt(4));
+            final EndgameSolver.Result expected = single.solve(pos);
+            final EndgameSolver.Result actual = multi.solve(pos);
+            assertEquals(pos.toString(), expected.score, actual.score);
+            checkBestMove(multi, pos.BitBoard(), actual);
+            assertTrue(actual.nNodes > 0);
+        }
+    }
+
+    /**
+     * Positions can have more than 32 legal moves; all of them must be searched.
+     * <p/>
+     * The position has too many empties to solve, so the values of the positions after each move are
+     * stored in the hash table.
+     */
+    public void testManyMoves() {
+        final CBitBoard bb = new CBitBoard("-------- -O-O*O-O -O***O-* -O*O-*-O -O--O--- -**-*O-- -OOO*OO- -----*--", true);
+        final long moves = Mobility.calcMoves(bb.mover, bb.empty);
+        assertEquals(35, Long.bitCount(moves));
+
+        // every move leads to a position worth 10 to the opponent, except the last, which is worth -20.
+        final TranspositionTable table = new TranspositionTable(1 << 16);
+        final int last = 63 - Long.numberOfLeadingZeros(moves);
+        for (long m = moves; m != 0; m &= m - 1) {
+            final int sq = Long.numberOfTrailingZeros(m);
+            final long flips = Mobility.calcFlips(bb.mover, bb.empty, sq);
+            final long empty = bb.empty & ~(1L << sq);
+            final long mover = ~(bb.mover | bb.empty) & ~flips;
+            table.store(mover, empty, sq == last ? -20 : 10, Long.bitCount(empty), -1, TranspositionTable.EXACT);
+        }
+
+        for (int nThreads : new int[]{1, 4}) {
+            final EndgameSolver.Result result = new EndgameSolver(nThreads, table).solve(bb.mover, bb.empty);
+            assertEquals(20, result.score);
+            assertEquals(last, result.bestMove);
+        }
+    }
+
+    public void testNodeStats() {
+        final CQPosition pos = randomPosition(new Random(5), 12);
+        final EndgameSolver.Result result = new EndgameSolver(2).solve(pos);
+        final NodeStatsResponse nodeStats = result.toNodeStats(7);
+        assertEquals(7, nodeStats.pong);
+        assertEquals(result.nNodes, nodeStats.nNodes);
+        assertEquals(result.tElapsed, nodeStats.tElapsed);
+    }
+
+    private static void checkBestMove(EndgameSolver solver, CBitBoard bb, EndgameSolver.Result result) {
+        if (result.bestMove < 0) {
+            assertEquals(0, Mobility.calcMoves(bb.mover, bb.empty));
+            return;
+        }
+        final long flips = Mobility.calcFlips(bb.mover, bb.empty, result.bestMove);
+        assertTrue(flips != 0);
+        final long empty = bb.empty & ~(1L << result.bestMove);
+        final long mover = ~(bb.mover | bb.empty) & ~flips;
+        assertEquals(result.score, -solver.solve(mover, empty).score);
+    }
+
+    private static int minimax(long mover, long empty, boolean passed) {
+        long moves = Mobility.calcMoves(mover, empty);
+        final long enemy = ~(mover | empty);
+        if (moves == 0) {
+            if (passed) {
+                final int net = Long.bitCount(mover) - Long.bitCount(enemy);
+                final int nEmpty = Long.bitCount(empty);
+                return net > 0 ? net + nEmpty : net < 0 ? net - nEmpty : 0;
+            }
+            return -minimax(enemy, empty, true);
+        }
+        int best = -65;
+        while (moves != 0) {
+            final int sq = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+            final long flips = Mobility.calcFlips(mover, empty, sq);
+            final long newEmpty = empty & ~(1L << sq);
+            best = Math.max(best, -minimax(enemy & ~flips, newEmpty, false));
+        }
+        return best;
+    }
+
+    /**
+     * @return a position reached by random legal moves with nEmpty empty squares, or fewer if the game ended early.
+     */
+    static CQPosition randomPosition(Random random, int nEmpty) {
+        final CQPosition pos = new CQPosition();
+        while (pos.NEmpty() > nEmpty) {
+            long moves = pos.CalcMovesAndPass();
+            if (moves == 0) {
+                break;
+            }
+            for (int n = random.nextInt(Long.bitCount(moves)); n > 0; n--) {
+                moves &= moves - 1;
+            }
+            pos.MakeMove(Long.numberOfTrailingZeros(moves));
+        }
+        return pos;
+    }
+}
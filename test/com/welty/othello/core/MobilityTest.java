@@ -17,6 +17,8 @@ package com.welty.othello.core;
 
 import junit.framework.TestCase;
 
+import java.util.Random;
+
 /**
  * Created by IntelliJ IDEA.
  * User: HP_Administrator
@@ -44,4 +46,74 @@ public class MobilityTest extends TestCase {
         board = new CBitBoard("*OOOOOO- -------- -------- -------- -------- -------- -------- --------", true);
         assertEquals(0x80L, Mobility.calcMoves(board.getMover(), board.getEmpty()));
     }
+
+    public void testCalcFlips() {
+        CBitBoard board = new CBitBoard("---------------------------O*------*O---------------------------", true);
+        // F5 flips E5
+        assertEquals(1L << Utils.E5, Mobility.calcFlips(board.getMover(), board.getEmpty(), Utils.F5));
+        // A1 flips nothing
+        assertEquals(0, Mobility.calcFlips(board.getMover(), board.getEmpty(), Utils.A1));
+
+        // test to ensure we don't wrap around
+        board = new CBitBoard("-------O *------- -------- -------- -------- -------- -------- --------", true);
+        assertEquals(0, Mobility.calcFlips(board.getMover(), board.getEmpty(), Utils.G1));
+
+        // Test the maximum number of enemy discs (6)
+        board = new CBitBoard("*OOOOOO- -------- -------- -------- -------- -------- -------- --------", true);
+        assertEquals(0x7EL, Mobility.calcFlips(board.getMover(), board.getEmpty(), Utils.H1));
+    }
+
+    /**
+     * Compare calcFlips with a square-by-square calculation in random games
+     */
+    public void testCalcFlipsMatchesSlowFlips() {
+        final Random random = new Random(1337);
+        for (int game = 0; game < 200; game++) {
+            final CBitBoard board = new CBitBoard(0, 0);
+            board.Initialize();
+            while (true) {
+                long moves = Mobility.calcMoves(board.getMover(), board.getEmpty());
+                if (moves == 0) {
+                    board.InvertColors();
+                    moves = Mobility.calcMoves(board.getMover(), board.getEmpty());
+                    if (moves == 0) {
+                        break;
+                    }
+                }
+                for (int sq = 0; sq < 64; sq++) {
+                    if (Utils.isSet(board.getEmpty(), sq)) {
+                        final long flips = Mobility.calcFlips(board.getMover(), board.getEmpty(), sq);
+                        assertEquals(slowFlips(board, sq), flips);
+                        assertEquals(Utils.isSet(moves, sq), flips != 0);
+                    }
+                }
+                int iMove = random.nextInt(Long.bitCount(moves));
+                while (iMove-- > 0) {
+                    moves &= moves - 1;
+                }
+                final int sq = Long.numberOfTrailingZeros(moves);
+                board.MakeMove(1L << sq, Mobility.calcFlips(board.getMover(), board.getEmpty(), sq));
+            }
+        }
+    }
+
+    private static long slowFlips(CBitBoard board, int sq) {
+        long result = 0;
+        for (int dRow = -1; dRow <= 1; dRow++) {
+            for (int dCol = -1; dCol <= 1; dCol++) {
+                long flips = 0;
+                int row = Utils.Row(sq) + dRow;
+                int col = Utils.Col(sq) + dCol;
+                while ((row & 7) == row && (col & 7) == col && board.isEnemySquare(Utils.Square(row, col))) {
+                    flips |= 1L << Utils.Square(row, col);
+                    row += dRow;
+                    col += dCol;
+                }
+                if ((row & 7) == row && (col & 7) == col && board.isMoverSquare(Utils.Square(row, col))) {
+                    result |= flips;
+                }
+            }
+        }
+        return result;
+    }
 }
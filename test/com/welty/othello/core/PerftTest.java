@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.core;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+public class PerftTest extends TestCase {
+    public void testStartPosition() {
+        final Perft single = new Perft(1);
+        final Perft multi = new Perft(3);
+        for (int depth = 0; depth <= 9; depth++) {
+            assertEquals(Perft.START_POSITION_COUNTS[depth], single.count(new CQPosition(), depth).nLeaves);
+            assertEquals(Perft.START_POSITION_COUNTS[depth], multi.count(new CQPosition(), depth).nLeaves);
+        }
+    }
+
+    /**
+     * Counts from midgame and endgame positions must match a simple recursive count, including passes and
+     * games that end early
+     */
+    public void testRandomPositions() {
+        final Random random = new Random(11);
+        final Perft single = new Perft(1);
+        final Perft multi = new Perft(2);
+        for (int i = 0; i < 20; i++) {
+            final CQPosition pos = EndgameSolverTest.randomPosition(random, 4 + random.nextInt(40));
+            final int depth = Math.min(5, pos.NEmpty() + 2);
+            final long expected = countLeaves(pos, depth);
+            assertEquals(pos.toString(), expected, single.count(pos, depth).nLeaves);
+            assertEquals(pos.toString(), expected, multi.count(pos, depth).nLeaves);
+        }
+    }
+
+    private static long countLeaves(CQPosition pos, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        final CQPosition next = new CQPosition(pos);
+        final long moves = next.CalcMovesAndPass();
+        if (moves == 0) {
+            return 1;
+        }
+        if (next.BlackMove() != pos.BlackMove()) {
+            // passed
+            return countLeaves(next, depth - 1);
+        }
+        long nLeaves = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            if (((moves >>> sq) & 1) != 0) {
+                final CQPosition child = new CQPosition(pos);
+                child.MakeMove(sq);
+                nLeaves += countLeaves(child, depth - 1);
+            }
+        }
+        return nLeaves;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.core;
+
+import junit.framework.TestCase;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+public class PositionMapTest extends TestCase {
+    public void testGetPut() {
+        final PositionMap map = new PositionMap();
+        final CBitBoard start = new CQPosition().BitBoard();
+        assertEquals(0, map.size());
+        assertFalse(map.containsKey(start.mover, start.empty));
+        assertEquals(-1, map.get(start, -1));
+
+        map.put(start, 3);
+        assertEquals(1, map.size());
+        assertTrue(map.containsKey(start.mover, start.empty));
+        assertEquals(3, map.get(start, -1));
+        // same discs, other player to move
+        assertFalse(map.containsKey(~(start.mover | start.empty), start.empty));
+
+        map.put(start, 5);
+        assertEquals(1, map.size());
+        assertEquals(5, map.get(start, -1));
+
+        map.clear();
+        assertEquals(0, map.size());
+        assertEquals(-1, map.get(start, -1));
+    }
+
+    /**
+     * Positions with no empties or no mover discs must be storable even though they look like unused slots in part
+     */
+    public void testExtremePositions() {
+        final PositionMap map = new PositionMap();
+        map.put(0, 0, 1);
+        map.put(-1L, 0, 2);
+        map.put(0, -1L, 3);
+        assertEquals(3, map.size());
+        assertEquals(1, map.get(0, 0, -1));
+        assertEquals(2, map.get(-1L, 0, -1));
+        assertEquals(3, map.get(0, -1L, -1));
+    }
+
+    /**
+     * Positions that differ only on the bottom row must get different low bits, since tables index by the low bits
+     */
+    public void testHashMixesHighSquares() {
+        final Set<Integer> indices = new HashSet<>();
+        for (int sq = 56; sq < 64; sq++) {
+            indices.add(PositionMap.hash(1L << sq, 0) & 0xFFFF);
+            indices.add(PositionMap.hash(0, 1L << sq) & 0xFFFF);
+        }
+        assertEquals(16, indices.size());
+    }
+
+    public void testImpossiblePosition() {
+        try {
+            new PositionMap().put(1, 1, 0);
+            fail("impossible positions can't be stored");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * The map must agree with a HashMap as it grows
+     */
+    public void testMatchesHashMap() {
+        final Random random = new Random(7);
+        final PositionMap map = new PositionMap(1);
+        final Map<CBitBoard, Integer> expected = new HashMap<>();
+        final CBitBoard[] keys = new CBitBoard[5000];
+        for (int i = 0; i < keys.length; i++) {
+            final long empty = random.nextLong();
+            keys[i] = new CBitBoard(random.nextLong() & ~empty, empty);
+        }
+        for (int i = 0; i < 20000; i++) {
+            final CBitBoard key = keys[random.nextInt(keys.length)];
+            map.put(key, i);
+            expected.put(key, i);
+        }
+        assertEquals(expected.size(), map.size());
+        for (CBitBoard key : keys) {
+            final Integer value = expected.get(key);
+            assertEquals(value == null ? -1 : value, map.get(key, -1));
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.core;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.welty.othello.core.TranspositionTable.*;
+
+public class TranspositionTableTest extends TestCase {
+    public void testStoreFind() {
+        final TranspositionTable table = new TranspositionTable(1024);
+        final CBitBoard start = new CQPosition().BitBoard();
+        assertEquals(MISS, table.find(start));
+
+        table.store(start, -12, 20, 37, LOWER);
+        long data = table.find(start);
+        assertEquals(-12, value(data));
+        assertEquals(20, depth(data));
+        assertEquals(37, bestMove(data));
+        assertEquals(LOWER, bound(data));
+
+        table.store(start, 64, 255, -1, EXACT);
+        data = table.find(start);
+        assertEquals(64, value(data));
+        assertEquals(255, depth(data));
+        assertEquals(-1, bestMove(data));
+        assertEquals(EXACT, bound(data));
+
+        // full board with no mover discs is a legal key, and isn't confused with unused entries
+        assertEquals(MISS, table.find(0, 0));
+        table.store(0, 0, -64, 0, -1, EXACT);
+        assertEquals(-64, value(table.find(0, 0)));
+
+        table.clear();
+        assertEquals(MISS, table.find(start));
+        assertEquals(MISS, table.find(0, 0));
+    }
+
+    public void testIllegalArguments() {
+        try {
+            new TranspositionTable(1000);
+            fail("size must be a power of 2");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        final TranspositionTable table = new TranspositionTable(2);
+        try {
+            table.store(0, 0, 0, 256, 0, EXACT);
+            fail("depth must fit in a byte");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            table.store(0, 0, 0, 0, 0, 0);
+            fail("bound is required");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * With a single bucket, a new position replaces the shallower of the two entries
+     */
+    public void testReplacement() {
+        final TranspositionTable table = new TranspositionTable(2);
+        table.store(1, 0, 1, 10, 0, EXACT);
+        table.store(2, 0, 2, 5, 0, EXACT);
+        table.store(3, 0, 3, 7, 0, EXACT);
+        assertEquals(1, value(table.find(1, 0)));
+        assertEquals(MISS, table.find(2, 0));
+        assertEquals(3, value(table.find(3, 0)));
+
+        // storing an existing position replaces its own entry even if it is the deeper one
+        table.store(1, 0, 4, 1, 0, EXACT);
+        assertEquals(4, value(table.find(1, 0)));
+        assertEquals(3, value(table.find(3, 0)));
+    }
+
+    /**
+     * Concurrent writers to a small table must never produce an entry with data from a different position
+     */
+    public void testConcurrentWriters() throws InterruptedException {
+        final TranspositionTable table = new TranspositionTable(64);
+        final AtomicInteger nErrors = new AtomicInteger();
+        final Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final long seed = t;
+            threads[t] = new Thread() {
+                @Override public void run() {
+                    final Random random = new Random(seed);
+                    for (int i = 0; i < 200000; i++) {
+                        final long empty = random.nextInt(256);
+                        final long mover = (long) random.nextInt(256) << 8;
+                        table.store(mover, empty, expectedValue(mover, empty), random.nextInt(256)
+                                , (int) (empty & 63), EXACT);
+                        final long data = table.find(mover ^ 0x100, empty);
+                        if (data != MISS && (value(data) != expectedValue(mover ^ 0x100, empty)
+                                || bestMove(data) != (empty & 63))) {
+                            nErrors.incrementAndGet();
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, nErrors.get());
+    }
+
+    private static int expectedValue(long mover, long empty) {
+        return (int) (mover * 31 + empty);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.database;
+
+import com.welty.othello.core.CMinimalReflection;
+import com.welty.othello.protocol.EnginePool;
+import com.welty.othello.protocol.StubEngine;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+public class BatchAnalyzerTest extends TestCase {
+    public void testAddPositions() {
+        final Set<CMinimalReflection> positions = new LinkedHashSet<>();
+        // all first moves are reflections of each other
+        for (String move : new String[]{"F5", "E6", "D3", "C4"}) {
+            BatchAnalyzer.addPositions(positions, StubEngine.game(move), 59);
+        }
+        assertEquals(1, positions.size());
+
+        positions.clear();
+        BatchAnalyzer.addPositions(positions, StubEngine.game("F5", "D6"), 58);
+        BatchAnalyzer.addPositions(positions, StubEngine.game("F5", "F6"), 58);
+        BatchAnalyzer.addPositions(positions, StubEngine.game("F5", "F4"), 58);
+        // reflection of F5 D6
+        BatchAnalyzer.addPositions(positions, StubEngine.game("E6", "F4"), 58);
+        assertEquals(3, positions.size());
+
+        // game is too short
+        positions.clear();
+        BatchAnalyzer.addPositions(positions, StubEngine.game("F5"), 58);
+        assertEquals(0, positions.size());
+    }
+
+    public void testAnalyze() throws IOException {
+        final Set<CMinimalReflection> positions = new LinkedHashSet<>();
+        for (String first : new String[]{"F5", "E6"}) {
+            for (String second : new String[]{"D6", "F6", "F4"}) {
+                for (String third : new String[]{"C3", "C4", "C5", "C6", "E3", "F3", "G3", "G4", "G5", "G6"}) {
+                    try {
+                        BatchAnalyzer.addPositions(positions, StubEngine.game(first, second, third), 57);
+                    } catch (IllegalArgumentException e) {
+                        // illegal move; skip this game
+                    }
+                }
+            }
+        }
+        assertTrue(positions.size() > 5);
+
+        final File resultsFile = File.createTempFile("BatchAnalyzerTest", ".txt");
+        assertTrue(resultsFile.delete());
+        try (EnginePool pool = new EnginePool(StubEngine.command(), 2, 10)) {
+            final BatchAnalyzer analyzer = new BatchAnalyzer(pool, 2);
+            BatchAnalyzer.Summary summary = analyzer.analyze(positions, resultsFile);
+            assertEquals(positions.size(), summary.nSearched);
+            assertEquals(0, summary.nAlreadyDone);
+
+            // one line per position, in order, each with the stub engine's eval for that position
+            final List<String> lines = Files.readAllLines(resultsFile.toPath(), StandardCharsets.UTF_8);
+            assertEquals(positions.size(), lines.size());
+            final Set<Double> evals = new HashSet<>();
+            int i = 0;
+            for (CMinimalReflection position : positions) {
+                final String board = position.GetSBoard(true);
+                // positions are searched with the mover as black
+                final double eval = StubEngine.discDifferential(board + "*");
+                assertEquals(board + " " + eval, lines.get(i++));
+                evals.add(eval);
+            }
+            assertTrue(evals.size() > 1);
+
+            // resume: nothing left to search
+            summary = analyzer.analyze(positions, resultsFile);
+            assertEquals(0, summary.nSearched);
+            assertEquals(positions.size(), summary.nAlreadyDone);
+
+            // a run interrupted while writing the last line searches that position again
+            try (RandomAccessFile raf = new RandomAccessFile(resultsFile, "rw")) {
+                raf.setLength(raf.length() - 4);
+            }
+            summary = analyzer.analyze(positions, resultsFile);
+            assertEquals(1, summary.nSearched);
+            assertEquals(positions.size() - 1, summary.nAlreadyDone);
+            summary = analyzer.analyze(positions, resultsFile);
+            assertEquals(0, summary.nSearched);
+
+            // a line cut off in the middle of its eval still parses, but must be searched again and replaced
+            final List<String> before = Files.readAllLines(resultsFile.toPath(), StandardCharsets.UTF_8);
+            final String last = before.get(before.size() - 1);
+            try (RandomAccessFile raf = new RandomAccessFile(resultsFile, "rw")) {
+                raf.setLength(raf.length() - 3);
+            }
+            final String cut = last.substring(0, last.length() - 2);
+            Double.parseDouble(cut.substring(cut.indexOf(' ') + 1));
+            assertEquals(positions.size() - 1, BatchAnalyzer.readResults(resultsFile).size());
+            summary = analyzer.analyze(positions, resultsFile);
+            assertEquals(1, summary.nSearched);
+            assertEquals(before, Files.readAllLines(resultsFile.toPath(), StandardCharsets.UTF_8));
+        } finally {
+            assertTrue(resultsFile.delete());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.database;
+
+import junit.framework.TestCase;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+public class GgsGameSelectorTest extends TestCase {
+    private static final String BO = "BO[8 ---------------------------O*------*O--------------------------- *]B[f5]W[d6]";
+
+    private static String game(int i, String type, int blackRating, String result) {
+        return "(;GM[Othello]PC[GGS/os]PB[b" + i + "]PW[w" + i + "]RB[" + blackRating + "]RW[2000.5]TY[" + type
+                + "]RE[" + result + "]" + BO + ";)";
+    }
+
+    /**
+     * Create an archive with enough matches to span many batches.
+     *
+     * @return archive text, one match per line
+     */
+    private static String archive(int nMatches) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < nMatches; i++) {
+            switch (i % 4) {
+                case 0:
+                    sb.append("1 ").append(game(i, "8", 2100, "+4.000"));
+                    break;
+                case 1:
+                    sb.append("1 ").append(game(i, "8", 1500, "-2.000"));
+                    break;
+                case 2:
+                    sb.append("2 ").append(game(i, "s8", 2100, "+4.000")).append(game(i + 1, "s8", 2100, "-6.000"));
+                    break;
+                case 3:
+                    sb.append("1 ").append(game(i, "8r20", 2100, "+4.000"));
+                    break;
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    public void testSelect() throws IOException {
+        final int nMatches = 1001;
+        final String archive = archive(nMatches);
+
+        final StringWriter expected = new StringWriter();
+        for (String line : archive.split("\n")) {
+            for (OthelloGame game : new OthelloMatch(line).games) {
+                if (GgsGameSelector.isSelected(game)) {
+                    expected.append(game.toString()).append(System.lineSeparator());
+                }
+            }
+        }
+
+        for (int nThreads = 1; nThreads <= 4; nThreads += 3) {
+            final StringWriter text = new StringWriter();
+            final GgsGameSelector.Summary summary;
+            try (BufferedWriter out = new BufferedWriter(text)) {
+                summary = new GgsGameSelector(nThreads).select(new BufferedReader(new StringReader(archive)), out);
+            }
+            assertEquals(expected.toString(), text.toString());
+            assertEquals(nMatches + nMatches / 4, summary.nGames);
+            assertEquals(4 * (nMatches / 4) + 1, summary.nStandard);
+            assertEquals(3 * (nMatches / 4) + 1, summary.nSelected);
+            assertEquals(2 * (nMatches / 4) + 1, summary.countByResult.get(4));
+            assertEquals(nMatches / 4, summary.countByResult.get(-6));
+        }
+    }
+
+    public void testCorruptMatch() throws IOException {
+        final String archive = archive(2000) + "3 " + game(0, "8", 2100, "+4.000") + "\n" + archive(2000);
+        final GgsGameSelector selector = new GgsGameSelector(3);
+        try {
+            selector.select(new BufferedReader(new StringReader(archive)), new BufferedWriter(new StringWriter()));
+            fail("should throw");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -18,6 +18,8 @@ package com.welty.othello.gdk;
 import com.welty.othello.c.CReader;
 import junit.framework.TestCase;
 
+import java.util.ArrayList;
+
 /**
  * Test COsGame class
  */
@@ -184,4 +186,37 @@ public class COsGameTest extends TestCase {
         }
     }
 
+
+    public void testPosAtMove() {
+        final COsGame game = COsGame.ofLogbook("+d3-c3+c4-e3+c2-b3+d2-e1+d1-c1+f4-d6+e6-g4+b2-f6+d7-c8+e7-d8+f3-f5+g5-h4+h6-f2+f7-h5+g6-c6+c5-c7+b6-b5+b4-e8+h3-g3+h2-e2+h7-g2+b1-a1+h1-a2+a3-g7+f8-h8+g8-a4+g1-f1+a6-a5+a7-a8+b8-b7: -04 10");
+        checkPositions(game);
+
+        // positions returned are copies, so changing them doesn't change the game
+        game.PosAtMove(10).board.setPiece(0, 0, COsBoard.BLACK);
+        checkPositions(game);
+
+        game.Undo(5);
+        checkPositions(game);
+        game.append(new OsMoveListItem(game.PosAtMove(game.nMoves()).board.getMoves(true).get(0)));
+        checkPositions(game);
+
+        game.reflect(3);
+        checkPositions(game);
+    }
+
+    /**
+     * Check that game positions (in descending order, so that the cache is filled before it is read)
+     * match positions calculated by replaying moves
+     */
+    private static void checkPositions(COsGame game) {
+        for (int i = game.nMoves(); i >= 0; i--) {
+            final ArrayList<OsMoveListItem> moves = new ArrayList<>();
+            for (int j = 0; j < i; j++) {
+                moves.add(game.getMli(j));
+            }
+            assertEquals(game.calcPosition(moves).toString(), game.PosAtMove(i).toString());
+        }
+        assertEquals(game.PosAtMove(game.nMoves()).toString(), game.getPos().toString());
+        assertEquals(game.getPos().toString(), new COsGame(game, game.nMoves()).getPos().toString());
+    }
 }
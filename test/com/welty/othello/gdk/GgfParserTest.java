@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.gdk;
+
+import junit.framework.TestCase;
+
+import java.nio.charset.StandardCharsets;
+
+public class GgfParserTest extends TestCase {
+    private static final String GAME = "(;GM[Othello]PC[NBoard]PB[Chris]PW[Ntest2]RE[-12.00:r]TY[8]" +
+            "BO[8 -------- -------- -------- ---O*--- ---*O--- -------- -------- -------- *]" +
+            "B[F5//1.0] W[d6/-2.5/3.1]\nB[pa]W[c3];)";
+
+    public void testTags() {
+        final GgfParser parser = parser(GAME);
+
+        assertTrue(parser.next());
+        assertTrue(parser.tagIs('G', 'M'));
+        assertEquals("Othello", parser.value());
+
+        assertTrue(parser.next());
+        assertTrue(parser.tagIs('P', 'C'));
+        assertFalse(parser.tagIs('P', 'B'));
+        assertFalse(parser.isMoveTag());
+
+        assertTrue(parser.next());
+        assertTrue(parser.tagIs('P', 'B'));
+        assertTrue(parser.valueEquals("Chris"));
+        assertFalse(parser.valueEquals("Chri"));
+        assertFalse(parser.valueEquals("Chriss"));
+
+        assertTrue(parser.next());
+        assertTrue(parser.next());
+        assertTrue(parser.tagIs('R', 'E'));
+        assertEquals(-12, parser.valueAsInt(0));
+
+        assertTrue(parser.next());
+        assertEquals(8, parser.valueAsInt(0));
+
+        assertTrue(parser.next());
+        assertTrue(parser.tagIs('B', 'O'));
+        assertTrue(parser.valueEqualsIgnoringWhitespace("8---------------------------O*------*O---------------------------*"));
+        assertFalse(parser.valueEqualsIgnoringWhitespace("8---------------------------O*------*O---------------------------O"));
+        assertFalse(parser.valueEqualsIgnoringWhitespace("8---------------------------O*------*O---------------------------"));
+
+        final int[] expected = {5 + 4 * 8, 3 + 5 * 8, -1, 2 + 2 * 8};
+        for (int sq : expected) {
+            assertTrue(parser.next());
+            assertTrue(parser.isMoveTag());
+            assertFalse(parser.tagIs('B', 'O'));
+            assertEquals(sq, parser.moveSquare());
+        }
+        assertFalse(parser.next());
+        assertEquals(GAME.length(), parser.position());
+    }
+
+    public void testValueAsInt() {
+        assertEquals(17, valueAsInt("+17"));
+        assertEquals(-3, valueAsInt(" -3.5"));
+        assertEquals(0, valueAsInt("0"));
+        assertEquals(99, valueAsInt("?"));
+        assertEquals(99, valueAsInt(""));
+        assertEquals(99, valueAsInt("-"));
+        assertEquals(99, valueAsInt("99999999999"));
+    }
+
+    private static int valueAsInt(String value) {
+        final GgfParser parser = parser("(;RE[" + value + "];)");
+        assertTrue(parser.next());
+        return parser.valueAsInt(99);
+    }
+
+    public void testIllegalMove() {
+        for (String move : new String[]{"", "i1", "a9", "a0", "x"}) {
+            final GgfParser parser = parser("(;B[" + move + "];)");
+            assertTrue(parser.next());
+            try {
+                parser.moveSquare();
+                fail("should throw for " + move);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    public void testCorrupt() {
+        checkCorrupt("GM[Othello];)");
+        checkCorrupt("(;GM[Othello]");
+        checkCorrupt("(;GM[Othello;)");
+        checkCorrupt("(;GM[Othello]PB;)");
+        checkCorrupt("(;GM[Othello];");
+        checkCorrupt("(;[Othello];)");
+    }
+
+    private static void checkCorrupt(String game) {
+        try {
+            final GgfParser parser = parser(game);
+            //noinspection StatementWithEmptyBody
+            while (parser.next()) {
+            }
+            fail("should throw for " + game);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testReuse() {
+        final byte[] data = ("  (;PB[a];)(;PB[bc];)").getBytes(StandardCharsets.ISO_8859_1);
+        final GgfParser parser = new GgfParser();
+        parser.reset(data, 0, 11);
+        assertTrue(parser.next());
+        assertEquals("a", parser.value());
+        assertFalse(parser.next());
+
+        parser.reset(data, 11, data.length);
+        assertTrue(parser.next());
+        assertEquals("bc", parser.value());
+        assertFalse(parser.next());
+    }
+
+    private static GgfParser parser(String game) {
+        final GgfParser parser = new GgfParser();
+        final byte[] data = game.getBytes(StandardCharsets.ISO_8859_1);
+        parser.reset(data, 0, data.length);
+        return parser;
+    }
+}
@@ -16,8 +16,12 @@
 package com.welty.othello.gdk;
 
 import com.welty.othello.c.CReader;
+import com.welty.othello.core.CQPosition;
 import junit.framework.TestCase;
 
+import java.util.ArrayList;
+import java.util.Random;
+
 /**
  * Test COsBoard
  */
@@ -109,4 +113,64 @@ public class OsBoardTest extends TestCase {
             // expected
         }
     }
+
+    /**
+     * Moves, flips and passes on 8x8 boards must match CQPosition throughout random games
+     */
+    public void testMatchesCQPosition() {
+        final Random random = new Random(1);
+        for (int iGame = 0; iGame < 50; iGame++) {
+            final COsBoard board = new COsBoard();
+            board.initialize(OsBoardType.BT_8x8);
+            final CQPosition pos = new CQPosition();
+            while (true) {
+                assertEquals(pos.GetSBoard(), board.getText().getText());
+                final long moves = pos.CalcMovesAndPass();
+                if (moves == 0) {
+                    assertEquals(2, board.nPass());
+                    assertTrue(board.isGameOver());
+                    break;
+                }
+                if (pos.BlackMove() != board.isBlackMove()) {
+                    assertEquals(1, board.nPass());
+                    assertTrue(board.isMoveLegal(OsMove.PASS));
+                    board.update(OsMove.PASS);
+                }
+                assertEquals(0, board.nPass());
+                final ArrayList<OsMove> boardMoves = board.getMoves(true);
+                assertEquals(Long.bitCount(moves), boardMoves.size());
+                for (OsMove move : boardMoves) {
+                    assertTrue(((moves >>> (move.row() * 8 + move.col())) & 1) != 0);
+                }
+                final OsMove move = boardMoves.get(random.nextInt(boardMoves.size()));
+                board.update(move);
+                pos.MakeMove(move.row() * 8 + move.col());
+            }
+        }
+    }
+
+    /**
+     * Changing squares directly must keep move generation in sync with the board
+     */
+    public void testSetPiece() {
+        final COsBoard osBoard = new COsBoard();
+        osBoard.initialize(OsBoardType.BT_8x8);
+        osBoard.setPiece(3, 3, COsBoard.EMPTY);
+        osBoard.setPiece(5, 5, COsBoard.BLACK);
+        final COsBoard reloaded = board(osBoard.toString());
+        assertEquals(reloaded.getMoves(true).toString(), osBoard.getMoves(true).toString());
+        assertEquals(reloaded.getPieceCounts(), osBoard.getPieceCounts());
+        assertEquals(3, osBoard.getPieceCounts().nBlack);
+        assertEquals(0, osBoard.nFlipped(4, 4, true));
+        assertEquals(1, osBoard.nFlipped(3, 3, true));
+        assertEquals(1, osBoard.nFlipped(2, 4, false));
+
+        try {
+            osBoard.update(new OsMove("a1"));
+            fail("a1 flips nothing");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(reloaded.toString(), osBoard.toString());
+    }
 }
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.protocol;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class BatchingResponseHandlerTest extends TestCase {
+    public void testDeliversInOrder() throws InterruptedException {
+        final List<NBoardResponse> received = Collections.synchronizedList(new ArrayList<NBoardResponse>());
+        final BatchingResponseHandler handler = new BatchingResponseHandler(new ResponseHandler() {
+            @Override public void handle(NBoardResponse response) {
+                received.add(response);
+            }
+        }, "test");
+        final List<NBoardResponse> sent = new ArrayList<>();
+        for (int i = 0; i < 3 * BatchingResponseHandler.MAX_BATCH; i++) {
+            final PongResponse response = new PongResponse(i);
+            sent.add(response);
+            handler.handle(response);
+        }
+        handler.shutdown();
+        handler.awaitTermination();
+        assertEquals(sent, received);
+    }
+
+    public void testDelegateExceptionDoesNotStopDispatch() throws InterruptedException {
+        final List<NBoardResponse> received = Collections.synchronizedList(new ArrayList<NBoardResponse>());
+        final BatchingResponseHandler handler = new BatchingResponseHandler(new ResponseHandler() {
+            @Override public void handle(NBoardResponse response) {
+                if (((PongResponse) response).pong == 1) {
+                    throw new IllegalStateException("test exception, please ignore");
+                }
+                received.add(response);
+            }
+        }, "test");
+        final PongResponse first = new PongResponse(0);
+        final PongResponse last = new PongResponse(2);
+        handler.handle(first);
+        handler.handle(new PongResponse(1));
+        handler.handle(last);
+        handler.shutdown();
+        handler.awaitTermination();
+        assertEquals(2, received.size());
+        assertSame(first, received.get(0));
+        assertSame(last, received.get(1));
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.protocol;
+
+import com.welty.othello.gdk.COsGame;
+import com.welty.othello.gdk.OsMoveListItem;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class EnginePoolTest extends TestCase {
+    private static final String[] MOVES = {"F5", "F6", "E6", "F4", "G5", "E7", "E3", "G6", "D6", "C4"};
+
+    /**
+     * @return a game with the first nMoves of MOVES. The stub engine's eval for the game is nMoves.
+     */
+    private static COsGame game(int nMoves) {
+        return StubEngine.game(Arrays.copyOf(MOVES, nMoves));
+    }
+
+    public void testSearch() throws Exception {
+        try (EnginePool pool = new EnginePool(StubEngine.command(), 3, 10)) {
+            assertEquals(3, pool.nEngines());
+            final List<Future<MoveResponse>> futures = new ArrayList<>();
+            final int nRequests = 50;
+            for (int i = 0; i < nRequests; i++) {
+                futures.add(pool.submit(game(i % MOVES.length)));
+            }
+            for (int i = 0; i < nRequests; i++) {
+                final OsMoveListItem mli = futures.get(i).get(30, TimeUnit.SECONDS).mli;
+                assertEquals("F5", mli.move.toString());
+                assertEquals((double) (i % MOVES.length), mli.getEval());
+            }
+            assertEquals(0, pool.nPending());
+            assertEquals(1000L * nRequests, pool.nNodes());
+            assertTrue(pool.nodesPerSecond() > 0);
+        }
+    }
+
+    public void testEngineWritesToStderr() throws Exception {
+        // far more than a pipe buffer holds; the engine would block if its stderr were not read.
+        try (EnginePool pool = new EnginePool(StubEngine.command("200000"), 1, 10)) {
+            for (int i = 0; i < 5; i++) {
+                assertEquals((double) i, pool.submit(game(i)).get(30, TimeUnit.SECONDS).mli.getEval());
+            }
+        }
+    }
+
+    public void testEngineTerminated() throws Exception {
+        final File crashFile = File.createTempFile("EnginePoolTest", ".crash");
+        assertTrue(crashFile.delete());
+        try (EnginePool pool = new EnginePool(StubEngine.command(), 2, 10)) {
+            final String crashGame = game(3).toString().replace("PC[]", "PC[crash:" + crashFile.getPath() + "]");
+            // the first engine to search the position terminates; the position is then searched by the other engine.
+            assertEquals(3.0, pool.submit(new COsGame(crashGame)).get(30, TimeUnit.SECONDS).mli.getEval());
+            assertEquals(1, pool.nEngines());
+            assertEquals(2.0, pool.submit(game(2)).get(30, TimeUnit.SECONDS).mli.getEval());
+        } finally {
+            assertTrue(crashFile.delete());
+        }
+    }
+
+    public void testClose() throws IOException {
+        final EnginePool pool = new EnginePool(StubEngine.command(), 1, 10);
+        pool.close();
+        try {
+            pool.submit(game(0));
+            fail("closed pool should not accept requests");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    public void testCancel() throws Exception {
+        try (EnginePool pool = new EnginePool(StubEngine.command(), 1, 10)) {
+            final List<Future<MoveResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                futures.add(pool.submit(game(i % MOVES.length)));
+            }
+            final Future<MoveResponse> last = futures.get(futures.size() - 1);
+            assertTrue(last.cancel(false));
+            assertTrue(last.isCancelled());
+            assertTrue(last.isDone());
+            try {
+                last.get();
+                fail("cancelled request should have no result");
+            } catch (CancellationException e) {
+                // expected
+            }
+            for (int i = 0; i < futures.size() - 1; i++) {
+                assertEquals((double) (i % MOVES.length), futures.get(i).get(30, TimeUnit.SECONDS).mli.getEval());
+            }
+        }
+    }
+}
@@ -107,6 +107,22 @@ public class ResponseParserTest extends TestCase {
 //        parser.parse()
     }
 
+    public void testSearchHintWithDrawValues() {
+        parser.handle("search E3 4.5,-1.25 0 24%W");
+        verify(responseHandler).handle(new HintResponse(0, false, "E3", new Value(4.5f, -1.25f), 0, new Depth("24%W"), ""));
+    }
+
+    public void testEdaxMoveResponse() {
+        parser.handle("=== F5  1.50 \t 3.2");
+        verify(responseHandler).handle(new MoveResponse(0, new OsMoveListItem("F5/1.50/3.2")));
+    }
+
+    public void testHandleBytes() {
+        final byte[] data = "xxsearch E3 4 0 3\nxx".getBytes();
+        parser.handle(data, 2, data.length - 3);
+        verify(responseHandler).handle(new HintResponse(0, false, "E3", new Value(4), 0, new Depth(3), ""));
+    }
+
     public void testNodestats() {
         parser.handle("nodestats 24 0.00");
         verify(responseHandler).handle(new NodeStatsResponse(0, 24, 0.0));
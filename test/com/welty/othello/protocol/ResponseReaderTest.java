@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.protocol;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class ResponseReaderTest extends TestCase {
+    private static class RecordingHandler implements ResponseHandler {
+        final List<NBoardResponse> responses = Collections.synchronizedList(new ArrayList<NBoardResponse>());
+
+        @Override public void handle(NBoardResponse response) {
+            responses.add(response);
+        }
+    }
+
+    private static List<NBoardResponse> read(String text) {
+        final RecordingHandler handler = new RecordingHandler();
+        final ResponseParser parser = new ResponseParser(handler, "test");
+        new ResponseReader(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), parser).run();
+        return handler.responses;
+    }
+
+    public void testRead() {
+        final StringBuilder longName = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            longName.append((char) ('a' + i % 26));
+        }
+        final List<NBoardResponse> responses = read("pong 3\r\n" +
+                "search F5 1.50,-2 0 20%W hello there\n" +
+                "\n" +
+                "book d3 -0.5 1234 36\n" +
+                "nodestats 123456789 1.25\n" +
+                "set myname " + longName + "\n" +
+                "analysis 12 -3.25");
+
+        final PongResponse pong = (PongResponse) responses.get(0);
+        assertEquals(3, pong.pong);
+
+        final HintResponse search = (HintResponse) responses.get(1);
+        assertEquals(3, search.pong);
+        assertFalse(search.book);
+        assertEquals("F5", search.pv);
+        assertEquals(1.5f, search.eval.drawSeekingValue);
+        assertEquals(-2f, search.eval.drawAvoidingValue);
+        assertEquals(20, search.depth.depth);
+        assertTrue(search.depth.isProbableSolve());
+        assertEquals(" hello there", search.freeformText);
+
+        final HintResponse book = (HintResponse) responses.get(2);
+        assertTrue(book.book);
+        assertEquals(-0.5f, book.eval.drawSeekingValue);
+        assertEquals(-0.5f, book.eval.drawAvoidingValue);
+        assertEquals(1234, book.nGames);
+        assertEquals(36, book.depth.depth);
+        assertEquals("", book.depth.suffix);
+        assertEquals("", book.freeformText);
+
+        final NodeStatsResponse nodeStats = (NodeStatsResponse) responses.get(3);
+        assertEquals(123456789L, nodeStats.nNodes);
+        assertEquals(1.25, nodeStats.tElapsed);
+
+        assertTrue(responses.get(4) instanceof NameChangedResponse);
+
+        final AnalysisResponse analysis = (AnalysisResponse) responses.get(5);
+        assertEquals(12, analysis.moveNumber);
+        assertEquals(-3.25, analysis.eval);
+
+        assertTrue(responses.get(6) instanceof StatusChangedResponse);
+        assertTrue(responses.get(7) instanceof EngineTerminatedResponse);
+        assertEquals(8, responses.size());
+    }
+
+    public void testErrors() {
+        final List<NBoardResponse> responses = read("search F5 1,2,3 0 4\nnodestats x 1\nbook F5 1 0\n");
+        assertEquals(5, responses.size());
+        for (int i = 0; i < 3; i++) {
+            assertTrue(responses.get(i) instanceof ErrorResponse);
+        }
+    }
+
+    public void testBatching() throws InterruptedException {
+        final RecordingHandler handler = new RecordingHandler();
+        final BatchingResponseHandler batching = new BatchingResponseHandler(handler, "test");
+        final ResponseParser parser = new ResponseParser(batching, "test");
+
+        final int nLines = 10000;
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < nLines; i++) {
+            text.append("nodestats ").append(i).append(" 0.5\n");
+        }
+        new ResponseReader(new ByteArrayInputStream(text.toString().getBytes(StandardCharsets.UTF_8)), parser).start().join();
+        batching.shutdown();
+        batching.awaitTermination();
+
+        final List<NBoardResponse> responses = handler.responses;
+        assertEquals(nLines + 2, responses.size());
+        for (int i = 0; i < nLines; i++) {
+            assertEquals(i, ((NodeStatsResponse) responses.get(i)).nNodes);
+        }
+        assertTrue(responses.get(nLines + 1) instanceof EngineTerminatedResponse);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.protocol;
+
+import com.welty.othello.gdk.COsGame;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A minimal NBoard engine for testing engine pools.
+ * <p/>
+ * On "go" it replies with nodestats and the move F5. The eval is the disc differential of the game's starting board
+ * (BO) for the side to move, plus the number of moves in the game, so that tests can tell which position a response
+ * belongs to. If the game's place (PC) is "crash:filename" and the file can be created, the engine exits without
+ * replying.
+ * <p/>
+ * If an argument is given, the engine writes that many bytes of progress to stderr before each reply, as Ntest does.
+ */
+public class StubEngine {
+    private static final String START = "(;GM[Othello]PC[]PB[]PW[]RE[?]TI[0]TY[8]BO[8 ---------------------------O*------*O--------------------------- *]";
+
+    private static final Pattern MOVE = Pattern.compile("\\][BW]\\[");
+    private static final Pattern BOARD = Pattern.compile("BO\\[([^\\]]*)\\]");
+    private static final Pattern CRASH = Pattern.compile("PC\\[crash:([^\\]]*)\\]");
+
+    /**
+     * @param args arguments passed to the engine
+     * @return a command that runs the stub engine in a new JVM with the current class path
+     */
+    public static ProcessBuilder command(String... args) {
+        final String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        final List<String> command = new ArrayList<>(Arrays.asList(java, "-cp", System.getProperty("java.class.path"), StubEngine.class.getName()));
+        command.addAll(Arrays.asList(args));
+        return new ProcessBuilder(command);
+    }
+
+    /**
+     * @return a game from the standard start position with the given moves, black moving first
+     */
+    public static COsGame game(String... moves) {
+        final StringBuilder sb = new StringBuilder(START);
+        for (int i = 0; i < moves.length; i++) {
+            sb.append(i % 2 == 0 ? "B[" : "W[").append(moves[i]).append(']');
+        }
+        return new COsGame(sb.append(";)").toString());
+    }
+
+    /**
+     * @param board board text: 64 squares followed by the side to move, using '*' for black and 'O' for white.
+     *              Whitespace is ignored.
+     * @return number of discs of the side to move minus number of discs of the opponent
+     */
+    public static int discDifferential(String board) {
+        final String text = board.replaceAll("\\s", "");
+        final char mover = text.charAt(text.length() - 1);
+        int net = 0;
+        for (int i = text.length() - 65; i < text.length() - 1; i++) {
+            final char c = text.charAt(i);
+            if (c == '*' || c == 'O') {
+                net += c == mover ? 1 : -1;
+            }
+        }
+        return net;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        final int nErrorBytes = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+        final BufferedReader in = new BufferedReader(new InputStreamReader(System.in, "UTF-8"));
+        String game = "";
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.startsWith("ping ")) {
+                System.out.println("pong " + line.substring(5).trim());
+            } else if (line.startsWith("set game ")) {
+                game = line.substring(9);
+            } else if (line.equals("go")) {
+                final Matcher crash = CRASH.matcher(game);
+                if (crash.find() && new File(crash.group(1)).createNewFile()) {
+                    System.exit(1);
+                }
+                final Matcher board = BOARD.matcher(game);
+                int eval = board.find() ? discDifferential(board.group(1)) : 0;
+                for (Matcher m = MOVE.matcher(game); m.find(); ) {
+                    eval++;
+                }
+                for (int i = 0; i < nErrorBytes; i++) {
+                    System.err.print(i % 64 == 63 ? '\n' : 's');
+                }
+                System.err.flush();
+                Thread.sleep(5);
+                System.out.println("nodestats 1000 0.005");
+                System.out.println("=== F5/" + eval + ".00/0.005");
+            } else if (line.equals("quit")) {
+                break;
+            }
+            System.out.flush();
+        }
+    }
+}
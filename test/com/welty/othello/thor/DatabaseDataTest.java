@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.thor;
+
+import com.welty.othello.gdk.COsGame;
+import junit.framework.TestCase;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+
+public class DatabaseDataTest extends TestCase {
+    public void testLoadFromDirectory() throws IOException {
+        final File dir = File.createTempFile("DatabaseDataTest", "");
+        assertTrue(dir.delete());
+        assertTrue(dir.mkdir());
+        final ArrayList<File> files = new ArrayList<>();
+        try {
+            // files are written out of order; games must be loaded in file name order
+            final Random random = new Random(7);
+            final int[] years = {2003, 2001, 2002, 2000};
+            final int[] nGames = {40, 1, 0, 300};
+            for (int i = 0; i < years.length; i++) {
+                final File file = new File(dir, "WTH_" + years[i] + ".wtb");
+                ThorTest.writeThorGamesFile(file, ThorPositionIndexTest.randomGames(random, nGames[i]), years[i]);
+                files.add(file);
+            }
+
+            final DatabaseData data = new DatabaseData();
+            final int[] nChanges = new int[1];
+            data.addListener(new DatabaseData.Listener() {
+                @Override public void databaseChanged() {
+                    nChanges[0]++;
+                }
+            });
+            data.loadFromDirectory(dir, Mockito.mock(IndeterminateProgressTracker.class));
+
+            assertEquals(1, nChanges[0]);
+            assertEquals(341, data.NGames());
+            assertEquals(2000, data.getGameYear(0));
+            assertEquals(2000, data.getGameYear(299));
+            assertEquals(2001, data.getGameYear(300));
+            assertEquals(2003, data.getGameYear(301));
+            assertEquals(2003, data.getGameYear(340));
+        } finally {
+            for (File file : files) {
+                assertTrue(file.delete());
+            }
+            assertTrue(dir.delete());
+        }
+    }
+
+    public void testSnapshot() throws IOException {
+        final File dir = File.createTempFile("DatabaseDataTest", "");
+        assertTrue(dir.delete());
+        assertTrue(dir.mkdir());
+        try {
+            final File wtb = new File(dir, "WTH_2000.wtb");
+            ThorTest.writeThorGamesFile(wtb, ThorPositionIndexTest.randomGames(new Random(11), 50), 2000);
+            try (FileWriter out = new FileWriter(new File(dir, "games.ggf"))) {
+                out.write(GGF_GAMES);
+            }
+            final File snapshot = new File(dir, "test.snapshot");
+
+            // first load decodes the files and writes the snapshot
+            final DatabaseData decoded = new DatabaseData();
+            final CountingTracker decodedTracker = new CountingTracker();
+            decoded.loadFromDirectory(dir, decodedTracker, snapshot);
+            assertEquals(52, decodedTracker.n);
+            assertTrue(snapshot.isFile());
+
+            // second load reads the snapshot
+            final DatabaseData restored = new DatabaseData();
+            final CountingTracker restoredTracker = new CountingTracker();
+            restored.loadFromDirectory(dir, restoredTracker, snapshot);
+            assertEquals(0, restoredTracker.n);
+            assertEquals(decoded.NGames(), restored.NGames());
+            for (int i = 0; i < decoded.NGames(); i++) {
+                for (int field = 0; field < 6; field++) {
+                    assertEquals(decoded.GameItemText(i, field), restored.GameItemText(i, field));
+                }
+                assertEquals(decoded.GameFromIndex(i).toString(), restored.GameFromIndex(i).toString());
+            }
+
+            // changing a source file makes the snapshot stale
+            ThorTest.writeThorGamesFile(wtb, ThorPositionIndexTest.randomGames(new Random(12), 10), 2000);
+            assertTrue(wtb.setLastModified(wtb.lastModified() + 2000));
+            final DatabaseData reloaded = new DatabaseData();
+            final CountingTracker reloadedTracker = new CountingTracker();
+            reloaded.loadFromDirectory(dir, reloadedTracker, snapshot);
+            assertEquals(12, reloadedTracker.n);
+            assertEquals(12, reloaded.NGames());
+
+            // the snapshot was replaced while the earlier databases were still loaded from it
+            final DatabaseData fromNewSnapshot = new DatabaseData();
+            final CountingTracker newSnapshotTracker = new CountingTracker();
+            fromNewSnapshot.loadFromDirectory(dir, newSnapshotTracker, snapshot);
+            assertEquals(0, newSnapshotTracker.n);
+            assertEquals(12, fromNewSnapshot.NGames());
+            assertEquals(decoded.NGames(), restored.NGames());
+        } finally {
+            final File[] files = dir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    assertTrue(file.delete());
+                }
+            }
+            assertTrue(dir.delete());
+        }
+    }
+
+    /**
+     * Games whose file has changed since they were loaded are rebuilt from their moves
+     */
+    public void testGgfFileChanged() throws IOException {
+        final File dir = File.createTempFile("DatabaseDataTest", "");
+        assertTrue(dir.delete());
+        assertTrue(dir.mkdir());
+        final File ggf = new File(dir, "games.ggf");
+        try {
+            try (FileWriter out = new FileWriter(ggf)) {
+                out.write(GGF_GAMES);
+            }
+            final DatabaseData data = new DatabaseData();
+            data.loadFromDirectory(dir, Mockito.mock(IndeterminateProgressTracker.class));
+            assertEquals(2, data.NGames());
+            final COsGame loaded = data.GameFromIndex(1);
+            assertEquals("Ntest2", loaded.getBlackPlayer().name);
+
+            try (FileWriter out = new FileWriter(ggf)) {
+                out.write("\n\n" + GGF_GAMES);
+            }
+            assertTrue(ggf.setLastModified(ggf.lastModified() + 2000));
+            final COsGame rebuilt = data.GameFromIndex(1);
+            assertEquals("Ntest2", rebuilt.getBlackPlayer().name);
+            assertEquals("Chris", rebuilt.getWhitePlayer().name);
+            assertEquals("GGS/os", rebuilt.sPlace);
+            assertEquals(loaded.pos.board.toString(), rebuilt.pos.board.toString());
+            data.clearGames();
+        } finally {
+            assertTrue(ggf.delete());
+            assertTrue(dir.delete());
+        }
+    }
+
+    public void testDefaultSnapshotFile() {
+        final File dir = new File("thor");
+        final File snapshot = DatabaseData.defaultSnapshotFile(dir);
+        // the database directory may be read-only
+        assertFalse(dir.getAbsoluteFile().equals(snapshot.getAbsoluteFile().getParentFile()));
+        assertEquals(snapshot, DatabaseData.defaultSnapshotFile(new File(dir.getAbsolutePath())));
+        assertFalse(snapshot.equals(DatabaseData.defaultSnapshotFile(new File("thor2"))));
+    }
+
+    private static final String GGF_GAMES = "(;GM[Othello]PC[NBoard]DT[2004-11-24 13:47:34 GMT]PB[Chris]PW[Ntest2]RE[-12]TI[0]TY[8]BO[8 ---------------------------O*------*O--------------------------- *]B[F5]W[D6];)\n" +
+            "(;GM[Othello]PC[GGS/os]DT[2005-01-02 10:00:00 GMT]PB[Ntest2]PW[Chris]RE[+4]TI[0]TY[8]BO[8 ---------------------------O*------*O--------------------------- *]B[F5]W[F6]B[E6];)\n";
+
+    private static class CountingTracker implements IndeterminateProgressTracker {
+        int n;
+
+        @Override public void increment() {
+            n++;
+        }
+
+        @Override public void update() {
+        }
+
+        @Override public void close() {
+        }
+    }
+}
@@ -17,10 +17,17 @@ package com.welty.othello.thor;
 
 import com.welty.othello.c.CReader;
 import junit.framework.TestCase;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
 import org.mockito.Mockito;
 
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 
+import static com.welty.othello.core.Utils.A1;
+import static com.welty.othello.core.Utils.F5;
+import static com.welty.othello.core.Utils.F6;
+
 /**
  * Created by IntelliJ IDEA.
  * User: HP_Administrator
@@ -30,7 +37,7 @@ import java.util.ArrayList;
  */
 public class GgfGameTextTest extends TestCase {
 
-    public void testGgfGameText() {
+    public void testGgfGameText() throws IOException {
         {
             String data = "(;GM[Othello]PC[NBoard]DT[2004-11-24 13:47:34 GMT]PB[Chris]PW[Ntest2]RE[-12]TI[0]TY[8]BO[8 ---------------------------O*------*O--------------------------- *]B[F5]W[D6];)";
             GgfGameText gt = checkGameEqualsData(data);
@@ -79,11 +86,11 @@ public class GgfGameTextTest extends TestCase {
         }
     }
 
-    private static GgfGameText checkGameEqualsData(String data) {
+    private static GgfGameText checkGameEqualsData(String data) throws IOException {
         final GgfGameText.StringLoc stringLoc = new GgfGameText.StringLoc(data);
         GgfGameText gt = new GgfGameText(stringLoc);
         assertEquals(stringLoc.loc, -1);
-        assertEquals(gt.m_text, data);
+        assertEquals(gt.getText(), data);
         assertEquals(gt.GetText(0), "Chris");
         assertEquals(gt.GetText(1), "Ntest2");
         assertEquals(gt.m_nResult, -12);
@@ -92,13 +99,13 @@ public class GgfGameTextTest extends TestCase {
         return gt;
     }
 
-    public void testMultipleFiles() {
+    public void testMultipleFiles() throws IOException {
         final String data = "(;GM[Othello]PC[]PB[HP_Administrator]PW[HP_Administrator]RE[?]TI[0//0]TY[8]BO[8 ---------------------------O*------*O--------------------------- *]B[F5]W[D6]B[C3];)\n" +
                 "(;GM[Othello]PC[]PB[Ntest2]PW[Ntest2]RE[18.0]TI[0//0]TY[8]BO[8 ---------------------------O*------*O--------------------------- *]B[F5/-1.39]W[D6/0.98]B[C4/-1.34/0.016]W[D3/1.29]B[C3/-1.30]W[F4/1.13]B[E6/-0.51/0.015]W[B3/0.25]B[F3/-0.76]W[C5/1.79]B[D2/-1.82]W[E3/3.04]B[E2/-1.89]W[F1/1.99]B[E1/-0.52]W[D1/1.31]B[B4/-0.78]W[A3/1.19]B[B6/-1.89]W[B5/2.94/0.016]B[C6/-2.71/0.015]W[F2/2.85/0.015]B[A5/-1.83]W[A6/0.37]B[A4/1.71]W[G3/-0.31]B[C2/0.35/0.015]W[G5/0.57]B[G4/2.58]W[D7/-0.20]B[H3/2.26/0.015]W[F7/-0.03]B[H6/2.25]W[F6/-1.43]B[C1/0.46]W[B1/-0.92]B[B2/-1.12]W[C7/6.09]B[E8/-7.01]W[D8/7.71]B[E7/-8.83]W[A1/7.30]B[A2/-8.36]W[H5/5.20]B[F8/-4.95]W[H4/6.66]B[C8/-7.67]W[G7/18.00/0.687]B[G6/-18.00]W[G8/18.00]B[H8/-18.00]W[H7/18.00]B[G2/-18.00/0.015]W[G1/18.00]B[A7]W[A8/18.00]B[PA]W[B7/18.00]B[B8]W[H1/18.00]B[H2];)";
         final ArrayList<GgfGameText> texts = GgfGameText.Load(new CReader(data), Mockito.mock(IndeterminateProgressTracker.class));
         assertEquals(2, texts.size());
         for (int i = 0; i < 2; i++) {
-            assertTrue(texts.get(i).m_text.startsWith("(;GM[Othello]"));
+            assertTrue(texts.get(i).getText().startsWith("(;GM[Othello]"));
         }
     }
 
@@ -108,6 +115,109 @@ public class GgfGameTextTest extends TestCase {
         assertEquals("", texts.get(0).DT());
     }
 
+    public void testLoadFile() throws IOException {
+        final String[] games = {
+                "(;GM[Othello]PC[NBoard]DT[2004-11-24 13:47:34 GMT]PB[Chris]PW[Ntest2]RE[-12]TI[0]TY[8]BO[8 ---------------------------O*------*O--------------------------- *]B[F5]W[D6];)",
+                "(;GM[Othello]PC[GGS/os]DT[2005-01-02 10:00:00 GMT]PB[Ntest2]PW[Chris]RE[+4]TI[0]TY[8]BO[8 ---------------------------O*------*O--------------------------- *]B[F5]W[F6]B[E6];)"
+        };
+        // enough games that some cross the boundary between blocks read from the file
+        final int nGames = 2000;
+        final File file = File.createTempFile("GgfGameTextTest", ".ggf");
+        try {
+            try (FileWriter out = new FileWriter(file)) {
+                for (int i = 0; i < nGames; i++) {
+                    out.write(games[i % 2]);
+                    out.write(i % 3 == 0 ? "\r\n" : "\n");
+                }
+            }
+            final ArrayList<GgfGameText> texts = GgfGameText.Load(file, Mockito.mock(IndeterminateProgressTracker.class));
+            assertEquals(nGames, texts.size());
+            for (int i = 0; i < nGames; i++) {
+                final GgfGameText text = texts.get(i);
+                assertEquals(games[i % 2], text.getText());
+                assertEquals(i % 2 == 0 ? "Chris" : "Ntest2", text.PB());
+                assertEquals(i % 2 == 0 ? -12 : 4, text.m_nResult);
+            }
+            // the player names are shared between games
+            assertSame(texts.get(0).PB(), texts.get(1).PW());
+            assertEquals(F6, texts.get(1).Moves()[1]);
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    public void testFileChanged() throws IOException {
+        final String game = "(;GM[Othello]PC[GGS/os]PB[Ntest2]PW[Chris]RE[+4]TY[8]BO[8 ---------------------------O*------*O--------------------------- *]B[F5]W[F6]B[E6];)\n";
+        final File file = File.createTempFile("GgfGameTextTest", ".ggf");
+        try {
+            try (FileWriter out = new FileWriter(file)) {
+                out.write(game);
+                out.write(game);
+            }
+            final ArrayList<GgfGameText> texts = GgfGameText.Load(file, Mockito.mock(IndeterminateProgressTracker.class));
+            assertEquals(2, texts.size());
+            assertEquals(game.trim(), texts.get(1).getText());
+
+            try (FileWriter out = new FileWriter(file)) {
+                out.write("\n" + game);
+            }
+            assertTrue(file.setLastModified(file.lastModified() + 2000));
+            try {
+                texts.get(1).getText();
+                fail("the text is no longer at the game's location in the file");
+            } catch (GameFileChangedException e) {
+                assertTrue(e.getMessage().contains(file.toString()));
+            }
+            // header fields and moves are still available
+            assertEquals("Ntest2", texts.get(1).PB());
+            assertEquals(F6, texts.get(1).Moves()[1]);
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    public void testLoadBz2File() throws IOException {
+        final String game = "(;GM[Othello]PC[GGS/os]PB[Ntest2]PW[Chris]RE[+4]TY[8]BO[8 ---------------------------O*------*O--------------------------- *]B[F5]W[F6]B[E6];)";
+        final int nGames = 5000;
+        final File file = File.createTempFile("GgfGameTextTest", ".ggf.bz2");
+        try {
+            try (Writer out = new OutputStreamWriter(new BZip2CompressorOutputStream(new FileOutputStream(file), 1), StandardCharsets.ISO_8859_1)) {
+                for (int i = 0; i < nGames; i++) {
+                    out.write(game);
+                    out.write('\n');
+                }
+            }
+            final ArrayList<GgfGameText> texts = GgfGameText.Load(file, Mockito.mock(IndeterminateProgressTracker.class));
+            assertEquals(nGames, texts.size());
+            for (GgfGameText text : texts) {
+                assertEquals(game, text.getText());
+                assertEquals(4, text.m_nResult);
+            }
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    public void testMoves() throws IOException {
+        final String data = "  (;GM[Othello]PB[Chris]PW[Ntest2]RE[+4]TY[8]BO[8 ---------------------------O*------*O--------------------------- *]B[F5/1.0]W[PA]B[a1];)";
+        final byte[] bytes = data.getBytes(StandardCharsets.ISO_8859_1);
+        final GgfGameText gt = new GgfGameText(bytes, 2, bytes.length - 2, null, 0);
+        assertEquals(data.substring(2), gt.getText());
+        assertEquals("", gt.DT());
+        assertEquals(4, gt.m_nResult);
+
+        // passes are skipped, and the illegal move A1 is kept even though it is not used for the opening code
+        final byte[] moves = gt.Moves();
+        assertEquals(F5, moves[0]);
+        assertEquals(A1, moves[1]);
+        assertEquals(-2, moves[2]);
+        assertEquals(new GgfGameText(data.substring(2), null, 0).m_openingCode, gt.m_openingCode);
+        assertEquals(ThorOpeningMap.OpeningCode(F5, (byte) -2), gt.m_openingCode);
+
+        // bad moves in a standard game are an error
+        testConstructorThrows("(;GM[Othello]TY[8]BO[8 ---------------------------O*------*O--------------------------- *]B[F9];)");
+    }
+
     private void testConstructorThrows(String s) {
         try {
             new GgfGameText(new GgfGameText.StringLoc(s));
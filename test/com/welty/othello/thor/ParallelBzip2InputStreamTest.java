@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.thor;
+
+import junit.framework.TestCase;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+public class ParallelBzip2InputStreamTest extends TestCase {
+    /**
+     * @return data that compresses somewhat, like game text
+     */
+    private static byte[] data(int length, long seed) {
+        final Random random = new Random(seed);
+        final byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) ('a' + random.nextInt(random.nextBoolean() ? 4 : 26));
+        }
+        return data;
+    }
+
+    /**
+     * Compress data using the smallest block size, so that even small inputs have many blocks
+     */
+    private static byte[] compress(byte[] data) throws IOException {
+        return compress(data, 1);
+    }
+
+    /**
+     * @param blockSize block size, in units of 100kB
+     */
+    private static byte[] compress(byte[] data, int blockSize) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (BZip2CompressorOutputStream bz = new BZip2CompressorOutputStream(out, blockSize)) {
+            bz.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] decompress(byte[] compressed, int nThreads) throws IOException {
+        return readAll(new ParallelBzip2InputStream(new ByteArrayInputStream(compressed), nThreads));
+    }
+
+    private static byte[] readAll(InputStream stream) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = stream) {
+            final byte[] buffer = new byte[1000];
+            int n;
+            while ((n = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, n);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    public void testDecompress() throws IOException {
+        for (int length : new int[]{0, 1, 1000, 1000000}) {
+            final byte[] data = data(length, length);
+            final byte[] compressed = compress(data);
+            for (int nThreads = 1; nThreads <= 4; nThreads += 3) {
+                assertTrue(Arrays.equals(data, decompress(compressed, nThreads)));
+            }
+        }
+    }
+
+    public void testReadByte() throws IOException {
+        final byte[] data = data(1000, 1);
+        try (InputStream in = new ParallelBzip2InputStream(new ByteArrayInputStream(compress(data)), 2)) {
+            for (byte b : data) {
+                assertEquals(b & 0xFF, in.read());
+            }
+            assertEquals(-1, in.read());
+        }
+    }
+
+    public void testConcatenatedStreams() throws IOException {
+        final byte[] a = data(300000, 1);
+        final byte[] b = data(200000, 2);
+        final ByteArrayOutputStream both = new ByteArrayOutputStream();
+        both.write(compress(a));
+        both.write(compress(b));
+
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(a);
+        expected.write(b);
+        assertTrue(Arrays.equals(expected.toByteArray(), decompress(both.toByteArray(), 3)));
+    }
+
+    /**
+     * Each block is decoded with the block size from the header of its own stream
+     */
+    public void testConcatenatedBlockSizes() throws IOException {
+        final byte[] a = data(250000, 1);
+        final byte[] b = data(100000, 2);
+        final byte[] c = data(150000, 3);
+        final ByteArrayOutputStream all = new ByteArrayOutputStream();
+        all.write(compress(a, 1));
+        all.write(compress(b, 9));
+        all.write(compress(c, 4));
+
+        final Set<Character> blockSizes = Collections.synchronizedSet(new HashSet<Character>());
+        final InputStream in = new ParallelBzip2InputStream(new ByteArrayInputStream(all.toByteArray()), 2) {
+            @Override byte[] decode(byte[] stream) throws IOException {
+                blockSizes.add((char) stream[3]);
+                return super.decode(stream);
+            }
+        };
+
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(a);
+        expected.write(b);
+        expected.write(c);
+        assertTrue(Arrays.equals(expected.toByteArray(), readAll(in)));
+        assertEquals(new HashSet<>(Arrays.asList('1', '9', '4')), blockSizes);
+    }
+
+    /**
+     * Once decompression has failed, reads keep failing rather than reporting end of file
+     */
+    public void testFailureIsRepeated() throws IOException {
+        final byte[] compressed = compress(data(1000000, 3));
+        compressed[compressed.length / 2] ^= 0x10;
+        try (InputStream in = new ParallelBzip2InputStream(new ByteArrayInputStream(compressed), 2)) {
+            final byte[] buffer = new byte[1000];
+            IOException failure = null;
+            try {
+                while (in.read(buffer) >= 0) {
+                    // keep reading until the damaged block
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+            assertNotNull(failure);
+            for (int i = 0; i < 2; i++) {
+                try {
+                    in.read();
+                    fail("read after a failure should throw");
+                } catch (IOException e) {
+                    assertSame(failure, e);
+                }
+            }
+        }
+    }
+
+    public void testCorrupt() throws IOException {
+        final byte[] compressed = compress(data(1000000, 3));
+        checkThrows("truncated", Arrays.copyOf(compressed, compressed.length / 2));
+
+        final byte[] damaged = compressed.clone();
+        damaged[compressed.length / 2] ^= 0x10;
+        checkThrows("damaged", damaged);
+
+        checkThrows("not bzip2", data(1000, 4));
+    }
+
+    private static void checkThrows(String msg, byte[] compressed) {
+        try {
+            decompress(compressed, 2);
+            fail("should throw: " + msg);
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.thor;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static com.welty.othello.core.Utils.*;
+
+public class ThorGameStoreTest extends TestCase {
+    private static final byte STOP = (byte) -2;
+
+    public void testAddAndGet() {
+        final ThorGameStore store = new ThorGameStore(1);
+        store.add(new ThorGameInternal(3, 4, 5, 40, 38, new byte[]{F5, D6, STOP}, 2009, 7));
+        store.add(new ThorGameInternal(64, F5, STOP));
+        assertEquals(2, store.size());
+
+        checkFirstGame(store);
+        assertEquals(64, store.nBlackDiscs(1));
+        assertEquals(F5, store.move(1, 0));
+        assertEquals(STOP, store.move(1, 1));
+    }
+
+    public void testWriteAndRead() throws IOException {
+        final ThorGameStore store = new ThorGameStore();
+        store.add(new ThorGameInternal(3, 4, 5, 40, 38, new byte[]{F5, D6, STOP}, 2009, 7));
+        for (int i = 0; i < 100; i++) {
+            store.add(new ThorGameInternal(i % 65, F5, F6, STOP));
+        }
+
+        final File file = File.createTempFile("games", ".tgs");
+        try {
+            store.write(file);
+            final ThorGameStore loaded = ThorGameStore.read(file);
+            assertEquals(store.size(), loaded.size());
+            checkFirstGame(loaded);
+            assertEquals(99 % 65, loaded.nBlackDiscs(100));
+            assertEquals(F6, loaded.move(100, 1));
+
+            // the store can still be added to
+            loaded.add(new ThorGameInternal(32, D3, STOP));
+            assertEquals(store.size() + 1, loaded.size());
+            checkFirstGame(loaded);
+            assertEquals(D3, loaded.move(store.size(), 0));
+            // the file is not locked by the store, so it can be replaced (this fails on Windows if it is mapped)
+            assertTrue(file.delete());
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static void checkFirstGame(ThorGameStore store) {
+        assertEquals(3, store.iTournament(0));
+        assertEquals(4, store.iBlackPlayer(0));
+        assertEquals(5, store.iWhitePlayer(0));
+        assertEquals(40, store.nBlackDiscs(0));
+        assertEquals(2009, store.year(0));
+        assertEquals(7, store.openingCode(0));
+        final byte[] moves = new byte[ThorGameStore.MOVES_PER_GAME];
+        store.getMoves(0, moves);
+        assertEquals(F5, moves[0]);
+        assertEquals(D6, moves[1]);
+        assertEquals(STOP, moves[2]);
+        assertEquals(STOP, moves[59]);
+        assertEquals(Arrays.toString(moves), Arrays.toString(store.get(0).moves));
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.thor;
+
+import com.welty.othello.c.CReader;
+import com.welty.othello.core.CQPosition;
+import com.welty.othello.gdk.COsBoard;
+import com.welty.othello.gdk.COsGame;
+import com.welty.othello.gdk.OsClock;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import static com.welty.othello.core.Utils.*;
+
+public class ThorPositionIndexTest extends TestCase {
+    private static final byte STOP = (byte) -2;
+
+    public void testEmptyIndex() {
+        final ThorPositionIndex index = new ThorPositionIndex(new ThorGameStore());
+        assertEquals(0, index.nPostings());
+        assertEquals(0, index.find(startBoard()).index.size());
+    }
+
+    public void testStartPosition() {
+        final ArrayList<ThorGameInternal> games = new ArrayList<>();
+        games.add(new ThorGameInternal(32, F5, D6, STOP));
+        games.add(new ThorGameInternal(32, STOP));
+        final ThorPositionIndex index = new ThorPositionIndex(ThorGameStore.of(games));
+
+        final Thor.MatchingPositions matches = index.find(startBoard());
+        assertEquals(2, matches.index.size());
+        assertEquals(0, matches.index.get(0));
+        assertEquals(1, matches.index.get(1));
+    }
+
+    /**
+     * The index must return exactly what a scan of the games returns, for every position in the games
+     */
+    public void testMatchesScan() {
+        final ArrayList<ThorGameInternal> games = randomGames(new Random(42), 300);
+        final ThorPositionIndex index = new ThorPositionIndex(ThorGameStore.of(games));
+
+        for (ThorGameInternal game : games.subList(0, 30)) {
+            final CQPosition pos = new CQPosition();
+            for (int ply = 0; ply < 60 && game.moves[ply] >= 0; ply++) {
+                for (int sym = 0; sym < 8; sym++) {
+                    checkMatchesScan(games, index, pos.Symmetry(sym));
+                }
+                // the same discs with the other player to move only match games with a pass here
+                final CQPosition passed = new CQPosition(pos);
+                passed.Pass();
+                checkMatchesScan(games, index, passed);
+                pos.CalcMovesAndPass();
+                pos.MakeMove(game.moves[ply]);
+            }
+        }
+    }
+
+    private static void checkMatchesScan(ArrayList<ThorGameInternal> games, ThorPositionIndex index, CQPosition pos) {
+        final COsBoard board = new COsBoard(new CReader("8 " + pos.GetSBoard() + (pos.BlackMove() ? " *" : " O")));
+        final Thor.MatchingPositions expected = Thor.ThorFindMatchingPositions(games, board);
+        final Thor.MatchingPositions actual = index.find(board);
+        assertEquals(Arrays.toString(expected.index.toArray()), Arrays.toString(actual.index.toArray()));
+        assertEquals(Arrays.toString(expected.iReflections.toArray()), Arrays.toString(actual.iReflections.toArray()));
+    }
+
+    private static COsBoard startBoard() {
+        final COsGame game = new COsGame();
+        game.setToDefaultStartPosition(OsClock.DEFAULT, OsClock.DEFAULT);
+        return game.pos.board;
+    }
+
+    /**
+     * Generate games with random legal moves. Some games are stopped early.
+     */
+    static ArrayList<ThorGameInternal> randomGames(Random random, int nGames) {
+        final ArrayList<ThorGameInternal> games = new ArrayList<>();
+        for (int i = 0; i < nGames; i++) {
+            final byte[] moves = new byte[60];
+            Arrays.fill(moves, STOP);
+            final int length = random.nextInt(4) == 0 ? random.nextInt(20) : 60;
+            final CQPosition pos = new CQPosition();
+            for (int ply = 0; ply < length; ply++) {
+                long legal = pos.CalcMovesAndPass();
+                if (legal == 0) {
+                    break;
+                }
+                for (int n = random.nextInt(Long.bitCount(legal)); n > 0; n--) {
+                    legal &= legal - 1;
+                }
+                moves[ply] = (byte) Long.numberOfTrailingZeros(legal);
+                pos.MakeMove(moves[ply]);
+            }
+            games.add(new ThorGameInternal(random.nextInt(65), moves));
+        }
+        return games;
+    }
+}
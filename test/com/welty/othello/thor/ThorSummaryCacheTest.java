@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.thor;
+
+import com.welty.othello.c.CReader;
+import com.welty.othello.core.CQPosition;
+import com.welty.othello.gdk.COsBoard;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+public class ThorSummaryCacheTest extends TestCase {
+    /**
+     * A summary cached from one reflection of a position must equal the summary calculated for every reflection
+     */
+    public void testReflections() {
+        final ArrayList<ThorGameInternal> games = ThorPositionIndexTest.randomGames(new Random(17), 1000);
+        final ThorGameStore store = ThorGameStore.of(games);
+        final ThorPositionIndex index = new ThorPositionIndex(store);
+
+        for (ThorGameInternal game : games.subList(0, 20)) {
+            final CQPosition pos = new CQPosition();
+            for (int ply = 0; ply < 60 && game.moves[ply] >= 0; ply++) {
+                for (int cached = 0; cached < 8; cached++) {
+                    final ThorSummaryCache cache = new ThorSummaryCache(10);
+                    final COsBoard cachedBoard = board(pos.Symmetry(cached));
+                    assertNull(cache.get(cachedBoard));
+                    final Thor.MatchingPositions matches = index.find(cachedBoard);
+                    cache.put(cachedBoard, Thor.ThorSummarize(store, cachedBoard, matches.index, matches.iReflections), matches.index.size());
+
+                    for (int sym = 0; sym < 8; sym++) {
+                        final COsBoard board = board(pos.Symmetry(sym));
+                        final ThorSummary actual = cache.get(board);
+                        if (actual == null) {
+                            // symmetric positions are only cached in the orientation given
+                            assertTrue(isSymmetric(pos));
+                            assertFalse(board.equals(cachedBoard));
+                        } else {
+                            final Thor.MatchingPositions expected = index.find(board);
+                            assertEquals(text(Thor.ThorSummarize(store, board, expected.index, expected.iReflections)), text(actual));
+                        }
+                    }
+                }
+                pos.CalcMovesAndPass();
+                pos.MakeMove(game.moves[ply]);
+            }
+        }
+    }
+
+    public void testCapacity() {
+        final ThorSummaryCache cache = new ThorSummaryCache(2);
+        final CQPosition pos = new CQPosition();
+        final COsBoard[] boards = new COsBoard[3];
+        for (int i = 0; i < boards.length; i++) {
+            pos.MakeMove(Long.numberOfTrailingZeros(pos.CalcMovesAndPass()));
+            boards[i] = board(pos);
+            cache.put(boards[i], new ThorSummary(), 0);
+        }
+        assertEquals(2, cache.size());
+        assertNull(cache.get(boards[0]));
+        assertNotNull(cache.get(boards[2]));
+
+        cache.clear();
+        assertNull(cache.get(boards[2]));
+    }
+
+    private static boolean isSymmetric(CQPosition pos) {
+        for (int sym = 1; sym < 8; sym++) {
+            if (pos.BitBoard().Symmetry(sym).equals(pos.BitBoard())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static COsBoard board(CQPosition pos) {
+        return new COsBoard(new CReader("8 " + pos.GetSBoard() + (pos.BlackMove() ? " *" : " O")));
+    }
+
+    /**
+     * @return the contents of the summary as text, in move order
+     */
+    private static String text(ThorSummary summary) {
+        final int[] moves = summary.keys();
+        Arrays.sort(moves);
+        final StringBuilder sb = new StringBuilder();
+        for (int move : moves) {
+            final ThorSummaryData data = summary.get(move);
+            sb.append(move).append(':').append(data.nBlackWins).append('/').append(data.nWhiteWins)
+                    .append('/').append(data.getNPlayed()).append('/').append(data.getScore()).append(' ');
+        }
+        return sb.toString();
+    }
+}
@@ -15,6 +15,7 @@
 
 package com.welty.othello.thor;
 
+import com.welty.othello.c.CBinaryReader;
 import com.welty.othello.core.CBitBoard;
 import com.welty.othello.core.CMove;
 import com.welty.othello.core.CQPosition;
@@ -24,8 +25,19 @@ import com.welty.othello.gdk.OsMove;
 import com.welty.othello.gdk.OsMoveListItem;
 import gnu.trove.map.hash.TIntObjectHashMap;
 import junit.framework.TestCase;
-
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import static com.welty.othello.core.Utils.*;
 
@@ -175,6 +187,97 @@ public class ThorTest extends TestCase {
         TestCase.assertEquals(0, matchingPositions.index.get(0));
     }
 
+    public void testParallelFindMatchingPositions() {
+        final ArrayList<ThorGameInternal> games = ThorPositionIndexTest.randomGames(new Random(3), 2000);
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int iGame = 0; iGame < 5; iGame++) {
+                final COsGame game = new COsGame();
+                game.setToDefaultStartPosition(OsClock.DEFAULT, OsClock.DEFAULT);
+                final byte[] moves = games.get(iGame).moves;
+                for (int ply = 0; ply < 10 && moves[ply] >= 0; ply++) {
+                    final Thor.MatchingPositions expected = Thor.ThorFindMatchingPositions(games, game.pos.board);
+                    final Thor.MatchingPositions actual = Thor.ThorFindMatchingPositions(ThorGameStore.of(games), game.pos.board, pool);
+                    assertEquals(Arrays.toString(expected.index.toArray()), Arrays.toString(actual.index.toArray()));
+                    assertEquals(Arrays.toString(expected.iReflections.toArray()), Arrays.toString(actual.iReflections.toArray()));
+                    game.append(new OsMoveListItem(new CMove(moves[ply]).toOsMove()));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public void testThorLoadGameStore() throws IOException {
+        final ArrayList<ThorGameInternal> games = ThorPositionIndexTest.randomGames(new Random(5), 50);
+        // a game with an illegal move, which the loader replaces by -2
+        games.add(new ThorGameInternal(32, F5, A1, STOP));
+
+        final File file = File.createTempFile("ThorTest", ".wtb");
+        try {
+            writeThorGamesFile(file, games, 2013);
+            final ThorGameStore store = Thor.ThorLoadGameStore(file, Mockito.mock(IndeterminateProgressTracker.class));
+
+            // compare with the stream reader
+            final CBinaryReader is = new CBinaryReader(new FileInputStream(file));
+            final ThorHeader header = new ThorHeader(is);
+            assertEquals(games.size(), header.n1);
+            assertEquals(games.size(), store.size());
+            for (int i = 0; i < games.size(); i++) {
+                final ThorGameInternal expected = new ThorGameInternal(is, header.year);
+                final ThorGameInternal actual = store.get(i);
+                assertEquals(expected.iTournament, actual.iTournament);
+                assertEquals(expected.iBlackPlayer, actual.iBlackPlayer);
+                assertEquals(expected.iWhitePlayer, actual.iWhitePlayer);
+                assertEquals(expected.nBlackDiscs, actual.nBlackDiscs);
+                assertEquals(expected.nPerfectDiscs, actual.nPerfectDiscs);
+                assertEquals(2013, actual.year);
+                assertEquals(expected.openingCode, actual.openingCode);
+                assertEquals(Arrays.toString(expected.moves), Arrays.toString(actual.moves));
+            }
+            is.close();
+            assertEquals(STOP, store.move(games.size() - 1, 1));
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    public void testThorLoadGameStoreShortFile() throws IOException {
+        final File file = File.createTempFile("ThorTest", ".wtb");
+        try {
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                out.write(new byte[10]);
+            }
+            Thor.ThorLoadGameStore(file, Mockito.mock(IndeterminateProgressTracker.class));
+            fail("should throw");
+        } catch (IllegalArgumentException e) {
+            // expected
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    /**
+     * Write games to a file in Thor games database format. Game i has tournament i and players i+1 and i+2.
+     */
+    static void writeThorGamesFile(File file, List<ThorGameInternal> games, int year) throws IOException {
+        final ByteBuffer wtb = ByteBuffer.allocate(16 + 68 * games.size()).order(ByteOrder.LITTLE_ENDIAN);
+        wtb.put((byte) 20).put((byte) 14).put((byte) 3).put((byte) 9);
+        wtb.putInt(games.size()).putChar((char) 0).putChar((char) year);
+        wtb.put((byte) 8).put((byte) 0).put((byte) 22).put((byte) 0);
+        for (int i = 0; i < games.size(); i++) {
+            final ThorGameInternal game = games.get(i);
+            wtb.putChar((char) i).putChar((char) (i + 1)).putChar((char) (i + 2));
+            wtb.put(game.nBlackDiscs).put((byte) (i % 60));
+            for (byte mv : game.moves) {
+                wtb.put(mv < 0 ? 0 : (byte) (10 * (Row(mv) + 1) + Col(mv) + 1));
+            }
+        }
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(wtb.array());
+        }
+    }
+
     public static void testThorFindNextMoves() {
 
         for (int i = 0; i < 8; i++) {
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.timer.gobbler;
+
+import junit.framework.TestCase;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+public class StreamGobblerTest extends TestCase {
+    private static class Lines extends LineBufferedStreamGobbler {
+        final List<String> lines = Collections.synchronizedList(new ArrayList<String>());
+        boolean closed;
+
+        Lines(InputStream is) {
+            super(is);
+        }
+
+        @Override protected void handleLine(String line) {
+            lines.add(line);
+        }
+
+        @Override public void close() {
+            closed = true;
+        }
+    }
+
+    private static class Chars extends CharBufferedStreamGobbler {
+        final StringBuffer chars = new StringBuffer();
+
+        Chars(InputStream is) {
+            super(is);
+        }
+
+        @Override protected void handleChar(char c) {
+            chars.append(c);
+        }
+
+        @Override public void close() {
+        }
+    }
+
+    /**
+     * Returns one byte per read, so that lines are split across reads
+     */
+    private static class SlowInputStream extends FilterInputStream {
+        SlowInputStream(byte[] data) {
+            super(new ByteArrayInputStream(data));
+        }
+
+        @Override public int read(byte[] b, int off, int len) throws IOException {
+            return super.read(b, off, Math.min(len, 1));
+        }
+    }
+
+    public void testLinesMatchReadLine() throws IOException {
+        final String text = "first\r\nsecond\n\nthird\rfourth\r\r\nlast";
+        final Lines gobbler = new Lines(new SlowInputStream(text.getBytes()));
+        gobbler.run();
+        assertTrue(gobbler.closed);
+
+        final List<String> expected = new ArrayList<>();
+        final BufferedReader reader = new BufferedReader(new StringReader(text));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            expected.add(line);
+        }
+        assertEquals(expected, gobbler.lines);
+    }
+
+    public void testChars() {
+        final Chars gobbler = new Chars(new SlowInputStream("ss\nsx".getBytes()));
+        gobbler.run();
+        assertEquals("ss\nsx", gobbler.chars.toString());
+    }
+
+    public void testSharedReader() throws Exception {
+        final String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        final int nProcesses = 4;
+        final List<Process> processes = new ArrayList<>();
+        final List<Lines> outputs = new ArrayList<>();
+        final List<Chars> errors = new ArrayList<>();
+        for (int i = 0; i < nProcesses; i++) {
+            final Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    Printer.class.getName(), Integer.toString(i)).start();
+            final Lines output = new Lines(process.getInputStream());
+            final Chars error = new Chars(process.getErrorStream());
+            output.start(process);
+            error.start(process);
+            processes.add(process);
+            outputs.add(output);
+            errors.add(error);
+        }
+        for (int i = 0; i < nProcesses; i++) {
+            assertEquals(0, processes.get(i).waitFor());
+            outputs.get(i).join();
+            errors.get(i).join();
+            final List<String> lines = outputs.get(i).lines;
+            assertEquals(Printer.N_LINES, lines.size());
+            for (int j = 0; j < Printer.N_LINES; j++) {
+                assertEquals(i + " " + j, lines.get(j));
+            }
+            assertTrue(outputs.get(i).closed);
+            assertEquals(Printer.errorText(i), errors.get(i).chars.toString());
+        }
+    }
+
+    /**
+     * A child process can hold a stream open after its parent exits. The gobbler must finish without a read that
+     * blocks the shared thread.
+     */
+    public void testExitedProcessWithOpenStream() throws Exception {
+        final CountDownLatch closed = new CountDownLatch(1);
+        // returns its data, then blocks until closed, like a pipe that is still open
+        final InputStream open = new ByteArrayInputStream("line 1\nline 2\n".getBytes()) {
+            @Override public synchronized int read(byte[] b, int off, int len) {
+                if (available() == 0) {
+                    try {
+                        closed.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return -1;
+                }
+                return super.read(b, off, len);
+            }
+
+            @Override public void close() {
+                closed.countDown();
+            }
+        };
+        final Lines gobbler = new Lines(open);
+        final Thread joiner = new Thread(new Runnable() {
+            @Override public void run() {
+                try {
+                    gobbler.join();
+                } catch (InterruptedException e) {
+                    // test fails below
+                }
+            }
+        });
+        try {
+            joiner.start();
+            gobbler.start(new ExitedProcess());
+            joiner.join(10000);
+            assertFalse("gobbler should finish", joiner.isAlive());
+            assertEquals(Arrays.asList("line 1", "line 2"), gobbler.lines);
+            assertTrue(gobbler.closed);
+        } finally {
+            open.close();
+            joiner.interrupt();
+        }
+    }
+
+    /**
+     * A process that has already exited
+     */
+    private static class ExitedProcess extends Process {
+        @Override public OutputStream getOutputStream() {
+            return new ByteArrayOutputStream();
+        }
+
+        @Override public InputStream getInputStream() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override public InputStream getErrorStream() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override public int waitFor() {
+            return 0;
+        }
+
+        @Override public int exitValue() {
+            return 0;
+        }
+
+        @Override public void destroy() {
+        }
+    }
+
+    /**
+     * Process used by the shared reader test
+     */
+    public static class Printer {
+        static final int N_LINES = 1000;
+
+        static String errorText(int id) {
+            final StringBuilder sb = new StringBuilder();
+            for (int j = 0; j < 20; j++) {
+                sb.append("s");
+            }
+            return sb.append(id).toString();
+        }
+
+        public static void main(String[] args) throws InterruptedException {
+            final int id = Integer.parseInt(args[0]);
+            for (int j = 0; j < N_LINES; j++) {
+                System.out.println(id + " " + j);
+                if (j % 100 == 0) {
+                    Thread.sleep(1);
+                }
+            }
+            System.err.print(errorText(id));
+        }
+    }
+}
@@ -39,4 +39,17 @@ public class OthelloTimerTest extends TestCase {
         assertTrue(OthelloTimer.isBad(""));
         assertFalse(OthelloTimer.isBad("FooBar"));
     }
+
+    public void testGetInt() {
+        assertEquals(3, OthelloTimer.getInt("3", "trials", 2));
+        assertEquals(0, OthelloTimer.getInt("0", "warmup runs", 0));
+        for (String bad : new String[]{"1", "x", ""}) {
+            try {
+                OthelloTimer.getInt(bad, "trials", 2);
+                fail("should throw");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
 }
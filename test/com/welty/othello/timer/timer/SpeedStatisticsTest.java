@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2014 Chris Welty.
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This file is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * For the license, see <http://www.gnu.org/licenses/gpl.html>.
+ */
+
+package com.welty.othello.timer.timer;
+
+import junit.framework.TestCase;
+
+public class SpeedStatisticsTest extends TestCase {
+    public void testStatistics() {
+        final SpeedStatistics stats = new SpeedStatistics();
+        assertTrue(Double.isNaN(stats.mean()));
+
+        stats.add(10);
+        assertEquals(10., stats.mean(), 1e-10);
+        assertTrue(Double.isNaN(stats.stdDev()));
+        assertTrue(Double.isNaN(stats.confidenceHalfWidth()));
+
+        stats.add(12);
+        stats.add(14);
+        stats.add(16);
+        assertEquals(4, stats.n());
+        assertEquals(13., stats.mean(), 1e-10);
+        // sample variance = (9+1+1+9)/3
+        assertEquals(Math.sqrt(20 / 3.), stats.stdDev(), 1e-10);
+        assertEquals(3.182 * Math.sqrt(20 / 3.) / 2, stats.confidenceHalfWidth(), 1e-10);
+    }
+
+    public void testT95() {
+        assertEquals(12.706, SpeedStatistics.t95(1));
+        assertEquals(2.042, SpeedStatistics.t95(30));
+        assertEquals(2.042, SpeedStatistics.t95(39));
+        assertEquals(2.021, SpeedStatistics.t95(40));
+        assertEquals(1.980, SpeedStatistics.t95(1000));
+    }
+
+    public void testEfficiency() {
+        assertEquals(1., SpeedStatistics.efficiency(10, 1, 10), 1e-10);
+        assertEquals(0.75, SpeedStatistics.efficiency(30, 4, 10), 1e-10);
+    }
+}